@@ -0,0 +1,153 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * A file of analysis results (best move, score and depth) keyed by the Zobrist hash of a position (see Zobrist).
+ * The file is memory-mapped and cut into fixed slots of two longs, so a result is read straight from the
+ * mapping without deserialization and survives a restart of the program.
+ * Slots are read and written without locks: the first long of a slot is the key xored with the data, so a slot
+ * torn by two threads writing at once no longer matches its key and reads as a miss.
+ * The header records the Zobrist version and key fingerprint, and a file written with other keys is refused,
+ * since its positions would be read as other positions.
+ * @author: Nhien Phan
+ */
+public class AnalysisCache implements AutoCloseable {
+  // returned by probe when the position is not in the cache
+  public static final long MISS = 0L;
+  // marks the start of a cache file
+  private static final long MAGIC = 0x43484553534B4559L;
+  // the header holds the magic number, the number of slots, the Zobrist version and the Zobrist fingerprint
+  private static final int HEADER_BYTES = 64;
+  private static final int SLOTS_OFFSET = 8;
+  private static final int VERSION_OFFSET = 12;
+  private static final int FINGERPRINT_OFFSET = 16;
+  private static final int SLOT_BYTES = 16;
+  // the offset added to a score so it is stored as a positive number
+  private static final int SCORE_OFFSET = 1 << 23;
+
+  // the file and its mapping
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  // the number of slots minus one (the number of slots is a power of two)
+  private final int slotMask;
+
+  /*
+   * Constructor, open a cache file or create it if it does not exist
+   * @param file: the path of the file
+   * @param slots: the number of slots, a power of two (must match the file if it already exists)
+   */
+  public AnalysisCache(Path file, int slots) throws IOException {
+    if (slots <= 0 || Integer.bitCount(slots) != 1 || slots > (Integer.MAX_VALUE - HEADER_BYTES) / SLOT_BYTES) {
+      throw new IllegalArgumentException("The number of slots must be a power of two below 2^27: " + slots);
+    }
+    this.slotMask = slots - 1;
+    this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+    long size = HEADER_BYTES + (long) slots * SLOT_BYTES;
+    long oldSize = channel.size();
+    if (oldSize != 0 && oldSize != size) {
+      channel.close();
+      throw new IOException(file + " is not an analysis cache of " + slots + " slots");
+    }
+    this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    buffer.order(ByteOrder.nativeOrder());
+    if (oldSize == 0) {
+      buffer.putLong(0, MAGIC);
+      buffer.putInt(SLOTS_OFFSET, slots);
+      buffer.putInt(VERSION_OFFSET, Zobrist.VERSION);
+      buffer.putLong(FINGERPRINT_OFFSET, Zobrist.FINGERPRINT);
+    } else if (buffer.getLong(0) != MAGIC || buffer.getInt(SLOTS_OFFSET) != slots) {
+      channel.close();
+      throw new IOException(file + " is not an analysis cache of " + slots + " slots");
+    } else if (buffer.getInt(VERSION_OFFSET) != Zobrist.VERSION
+                 || buffer.getLong(FINGERPRINT_OFFSET) != Zobrist.FINGERPRINT) {
+      channel.close();
+      throw new IOException(file + " was written with other Zobrist keys (version " + buffer.getInt(VERSION_OFFSET)
+                              + ", fingerprint " + Long.toHexString(buffer.getLong(FINGERPRINT_OFFSET))
+                              + ", expected " + Zobrist.VERSION + " and " + Long.toHexString(Zobrist.FINGERPRINT)
+                              + "), delete it to start a new cache");
+    }
+  }
+
+  /*
+   * Return the packed result stored for a position, or MISS
+   * @param key: the Zobrist hash of the position
+   */
+  public long probe(long key) {
+    int offset = offset(key);
+    long check = buffer.getLong(offset);
+    long data = buffer.getLong(offset + 8);
+    return data != MISS && (check ^ data) == key ? data : MISS;
+  }
+
+  /*
+   * Store the result of an analysis, unless the slot holds a deeper analysis of the same position
+   * @param key: the Zobrist hash of the position
+   * @param move: the best move (see PackedMove)
+   * @param score: the score of the best move for the side to play
+   * @param depth: the depth searched (0 to 255)
+   */
+  public void store(long key, int move, int score, int depth) {
+    int offset = offset(key);
+    long old = probe(key);
+    if (old != MISS && depth(old) > depth) return;
+    long data = pack(move, score, depth);
+    buffer.putLong(offset + 8, data);
+    buffer.putLong(offset, key ^ data);
+  }
+
+  /** Return the best move of a packed result */
+  public static int move(long data) {
+    return (int) data;
+  }
+
+  /** Return the score of a packed result */
+  public static int score(long data) {
+    return (int) ((data >>> 32) & 0xFFFFFF) - SCORE_OFFSET;
+  }
+
+  /** Return the depth of a packed result */
+  public static int depth(long data) {
+    return (int) (data >>> 56);
+  }
+
+  /** Return the number of slots of the cache */
+  public int getSlots() {
+    return slotMask + 1;
+  }
+
+  /** Write the results stored so far to the disk */
+  public void force() {
+    buffer.force();
+  }
+
+  /** Write the results to the disk and close the file */
+  public void close() throws IOException {
+    buffer.force();
+    channel.close();
+  }
+
+  /*
+   * Pack a result: the move in bits 0-31, the score in bits 32-55 and the depth in bits 56-63
+   * @param move: the best move
+   * @param score: the score
+   * @param depth: the depth
+   */
+  private static long pack(int move, int score, int depth) {
+    if (depth < 0 || depth > 255 || score <= -SCORE_OFFSET || score >= SCORE_OFFSET) {
+      throw new IllegalArgumentException("Cannot store score " + score + " at depth " + depth);
+    }
+    return (move & 0xFFFFFFFFL) | ((long) (score + SCORE_OFFSET) << 32) | ((long) depth << 56);
+  }
+
+  /*
+   * Return the byte offset of the slot of a key
+   * @param key: the Zobrist hash of the position
+   */
+  private int offset(long key) {
+    return HEADER_BYTES + ((int) key & slotMask) * SLOT_BYTES;
+  }
+}
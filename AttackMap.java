@@ -0,0 +1,163 @@
+/*
+ * A map of the squares attacked by each side of a board.
+ * The board calls squareChanged after every addPiece and removePiece, and only the pieces whose attacks can
+ * depend on the changed squares generate their moves again.  Asking if a square is attacked is then a single array lookup
+ * instead of calling isLegalMove on every piece of the board.
+ * @author: Nhien Phan
+ */
+public class AttackMap {
+  // the board the pieces are on
+  private final ChessBoard board;
+  // the number of columns of the board
+  private final int numColumns;
+  // the squares attacked by the piece on each square, as a bit set of two longs (enough for 90 squares)
+  private final long[][] attacksFrom;
+  // the side of the piece whose attacks are stored for each square
+  private final int[] attackSide;
+  // the number of pieces of each side attacking each square
+  private final int[][] attackCount;
+  // buffer for the moves of one piece
+  private final int[] moveBuffer = new int[MoveGenerator.MAX_MOVES];
+  // the squares changed since the attacks were last brought up to date, as a bit set of two longs
+  private final long[] changed = new long[2];
+
+  /*
+   * Constructor
+   * @param board: the board to keep the attacks of
+   */
+  public AttackMap(ChessBoard board) {
+    this.board = board;
+    this.numColumns = board.numColumns();
+    int numSquares = board.numRows() * numColumns;
+    this.attacksFrom = new long[numSquares][2];
+    this.attackSide = new int[numSquares];
+    this.attackCount = new int[ChessGame.Side.values().length][numSquares];
+  }
+
+  /*
+   * Check if a square is attacked by a piece of one side
+   * @param row: the row of the square
+   * @param column: the column of the square
+   * @param side: the attacking side
+   */
+  public boolean isAttacked(int row, int column, ChessGame.Side side) {
+    flush();
+    return attackCount[side.ordinal()][row * numColumns + column] > 0;
+  }
+
+  /*
+   * Check if a square is attacked by a piece of any side other than the given one
+   * @param row: the row of the square
+   * @param column: the column of the square
+   * @param side: the side that is defending the square
+   */
+  public boolean isThreatened(int row, int column, ChessGame.Side side) {
+    flush();
+    int square = row * numColumns + column;
+    for (int i = 0; i < attackCount.length; i++) {
+      if (i != side.ordinal() && attackCount[i][square] > 0) return true;
+    }
+    return false;
+  }
+
+  /*
+   * Record that a piece was added to or removed from a square.
+   * The squares are collected and the attacks are brought up to date once, on the next question,
+   * so a move that removes and adds several pieces only checks the pieces around it once.
+   * @param row: the row of the square
+   * @param column: the column of the square
+   */
+  public void squareChanged(int row, int column) {
+    int square = row * numColumns + column;
+    changed[square >>> 6] |= 1L << (square & 63);
+  }
+
+  /** Check again the attacks of every piece that depends on a changed square */
+  private void flush() {
+    if ((changed[0] | changed[1]) == 0) return;
+    for (int i = 0; i < board.numRows(); i++) {
+      for (int j = 0; j < numColumns; j++) {
+        if (dependsOnChanged(i, j)) {
+          update(i, j);
+        }
+      }
+    }
+    changed[0] = 0L;
+    changed[1] = 0L;
+  }
+
+  /*
+   * Check if the attacks of a square must be checked again because of the changed squares
+   * @param row: the row of the square
+   * @param column: the column of the square
+   */
+  private boolean dependsOnChanged(int row, int column) {
+    for (int i = 0; i < changed.length; i++) {
+      long bits = changed[i];
+      while (bits != 0) {
+        int square = (i << 6) + Long.numberOfTrailingZeros(bits);
+        int changedRow = square / numColumns;
+        int changedColumn = square % numColumns;
+        if ((row == changedRow && column == changedColumn) || dependsOn(row, column, changedRow, changedColumn)) {
+          return true;
+        }
+        bits &= bits - 1;
+      }
+    }
+    return false;
+  }
+
+  /*
+   * Check if the attacks of the piece on a square can change when another square changes.
+   * Sliding pieces and cannons look along rows, columns and diagonals, every other piece looks at most
+   * two squares away, and the xiangqi king looks along its own and the two next columns for the other king.
+   * @param row: the row of the attacking piece
+   * @param column: the column of the attacking piece
+   * @param changedRow: the row of the square that changed
+   * @param changedColumn: the column of the square that changed
+   */
+  private boolean dependsOn(int row, int column, int changedRow, int changedColumn) {
+    int rowDistance = Math.abs(row - changedRow);
+    int columnDistance = Math.abs(column - changedColumn);
+    if (row == changedRow || column == changedColumn || rowDistance == columnDistance) return true;
+    if (rowDistance <= 2 && columnDistance <= 2) return true;
+    return columnDistance <= 1 && board.getPiece(row, column) instanceof XiangqiKingPiece;
+  }
+
+  /*
+   * Check the attacks of the piece on a square again
+   * @param row: the row of the square
+   * @param column: the column of the square
+   */
+  private void update(int row, int column) {
+    int square = row * numColumns + column;
+    long[] attacks = attacksFrom[square];
+    // take away the attacks counted for the piece that was on this square
+    int oldSide = attackSide[square];
+    for (int i = 0; i < attacks.length; i++) {
+      long bits = attacks[i];
+      while (bits != 0) {
+        attackCount[oldSide][(i << 6) + Long.numberOfTrailingZeros(bits)]--;
+        bits &= bits - 1;
+      }
+      attacks[i] = 0L;
+    }
+    
+    ChessPiece piece = board.getPiece(row, column);
+    if (piece == null) return;
+    // count the squares the piece on this square can capture on
+    int side = piece.getSide().ordinal();
+    attackSide[square] = side;
+    // a pawn attacks the squares it could capture on, not the squares it moves to
+    int count = piece instanceof PawnPiece ? ((PawnPiece) piece).generateAttacks(moveBuffer, 0)
+      : piece.generateMoves(moveBuffer, 0);
+    for (int i = 0; i < count; i++) {
+      int target = PackedMove.toRow(moveBuffer[i]) * numColumns + PackedMove.toColumn(moveBuffer[i]);
+      // promotions write the same target more than once
+      if ((attacks[target >>> 6] & (1L << (target & 63))) == 0) {
+        attacks[target >>> 6] |= 1L << (target & 63);
+        attackCount[side][target]++;
+      }
+    }
+  }
+}
@@ -109,19 +109,31 @@ public class BishopPiece extends ChessPiece implements DiagonalMove {
     return moveDiagonal(this.getChessBoard(), row, column);
   }
   
+  /*
+   * Write the packed moves of this bishop into a buffer without allocating (see PackedMove)
+   * @param moves: the buffer to write the moves into
+   * @param count: the number of moves already in the buffer
+   */
+  public int generateMoves(int[] moves, int count) {
+    count = addSlidingMoves(moves, count, 1, -1);
+    count = addSlidingMoves(moves, count, -1, 1);
+    count = addSlidingMoves(moves, count, -1, -1);
+    return addSlidingMoves(moves, count, 1, 1);
+  }
+  
   /*
    * Check if this move is a legal move (return true if it is legal (false if illegal)
    * @param toRow: the destination's row
    * @param toColumn: the destination's column
    */
   public boolean isLegalMove(int toRow, int toColumn) {
-    Cell targetSquare = new Cell(toRow, toColumn);
-    move(this.getChessBoard(), this.getRow(), this.getColumn());
-    for (Cell possibleMove : possibleMoves) {
-      if ((possibleMove.compareTo(targetSquare) == 0) && (super.isLegalMove(toRow, toColumn))) return true;
-    }
-    return false;
+    // the bishop moves along a diagonal over empty cells
+    return toRow != this.getRow()
+      && Math.abs(toRow - this.getRow()) == Math.abs(toColumn - this.getColumn())
+      && canLandOn(toRow, toColumn)
+      && countPiecesBetween(toRow, toColumn) == 0;
   }
+
   
   /*
    * Check if this move is a legal non-capture move (return true if it is legal (false if illegal)
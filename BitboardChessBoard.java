@@ -0,0 +1,169 @@
+/*
+ * A headless european chess board that stores the position as 64-bit bitboards.
+ * Bit (row * 8 + column) of a bitboard is set when that square holds a piece of the bitboard.
+ * @author: Nhien Phan
+ */
+public class BitboardChessBoard extends HeadlessChessBoard {
+  // one bitboard for each side and each type of piece
+  private final long[][] pieceBitboards = new long[ChessGame.Side.values().length][EuropeanPieceType.values().length];
+  // one bitboard for all pieces of each side
+  private final long[] sideBitboards = new long[ChessGame.Side.values().length];
+  // all occupied squares
+  private long occupied;
+  
+  // the squares a knight or a king can reach from each square
+  static final long[] KNIGHT_ATTACKS = stepMasks(new int[] {-2, -2, -1, -1, 1, 1, 2, 2}, new int[] {-1, 1, -2, 2, -2, 2, -1, 1});
+  static final long[] KING_ATTACKS = stepMasks(new int[] {-1, -1, -1, 0, 0, 1, 1, 1}, new int[] {-1, 0, 1, -1, 1, -1, 0, 1});
+  // the directions of the rook lines then the bishop lines
+  static final int[] LINE_ROW = {-1, 1, 0, 0, -1, -1, 1, 1};
+  static final int[] LINE_COLUMN = {0, 0, -1, 1, -1, 1, -1, 1};
+
+  /*
+   * Constructor
+   * @param gameRules: the rules of the game played on this board
+   */
+  public BitboardChessBoard(ChessGame gameRules) {
+    super(gameRules, 8, 8);
+  }
+
+  /*
+   * Return the bit index of a square
+   * @param row: the row of the square
+   * @param column: the column of the square
+   */
+  public static int square(int row, int column) {
+    return (row << 3) | column;
+  }
+
+  /*
+   * Return the bitboard of one type of piece of one side
+   * @param side: the side of the pieces
+   * @param type: the type of the pieces
+   */
+  public long getPieces(ChessGame.Side side, EuropeanPieceType type) {
+    return pieceBitboards[sideIndex(side)][type.ordinal()];
+  }
+
+  /*
+   * Return the bitboard of all pieces of one side
+   * @param side: the side of the pieces
+   */
+  public long getPieces(ChessGame.Side side) {
+    return sideBitboards[sideIndex(side)];
+  }
+
+  /** Return the bitboard of all occupied squares */
+  public long getOccupied() {
+    return occupied;
+  }
+
+  /** Return the phase of the full set of european pieces */
+  public int getMaxPhase() {
+    return PieceSquareTables.EUROPEAN_MAX_PHASE;
+  }
+
+  /*
+   * Check if a square is attacked by a piece of a side
+   * @param row: the row of the square
+   * @param col: the column of the square
+   * @param side: the attacking side
+   */
+  public boolean isAttackedBy(int row, int col, ChessGame.Side side) {
+    long[] pieces = pieceBitboards[sideIndex(side)];
+    int square = square(row, col);
+    if ((KNIGHT_ATTACKS[square] & pieces[EuropeanPieceType.N.ordinal()]) != 0
+          || (KING_ATTACKS[square] & pieces[EuropeanPieceType.K.ordinal()]) != 0) {
+      return true;
+    }
+    // a pawn attacks forward diagonally, so it stands one row behind the square
+    int pawnRow = side == ChessGame.Side.NORTH ? row + 1 : row - 1;
+    long pawns = pieces[EuropeanPieceType.P.ordinal()];
+    if (pawnRow >= 0 && pawnRow < 8
+          && ((col > 0 && (pawns & (1L << square(pawnRow, col - 1))) != 0)
+                || (col < 7 && (pawns & (1L << square(pawnRow, col + 1))) != 0))) {
+      return true;
+    }
+    // the first piece on each line
+    long queens = pieces[EuropeanPieceType.Q.ordinal()];
+    long straight = pieces[EuropeanPieceType.R.ordinal()] | queens;
+    long diagonal = pieces[EuropeanPieceType.B.ordinal()] | queens;
+    for (int i = 0; i < LINE_ROW.length; i++) {
+      long sliders = i < 4 ? straight : diagonal;
+      if (sliders == 0) continue;
+      int r = row + LINE_ROW[i];
+      int c = col + LINE_COLUMN[i];
+      while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+        long bit = 1L << square(r, c);
+        if ((occupied & bit) != 0) {
+          if ((sliders & bit) != 0) return true;
+          break;
+        }
+        r += LINE_ROW[i];
+        c += LINE_COLUMN[i];
+      }
+    }
+    return false;
+  }
+  
+  /*
+   * Build the masks of the squares reached by one step of a piece from each square
+   * @param rowSteps: the row change of each step
+   * @param columnSteps: the column change of each step
+   */
+  private static long[] stepMasks(int[] rowSteps, int[] columnSteps) {
+    long[] masks = new long[64];
+    for (int square = 0; square < 64; square++) {
+      for (int i = 0; i < rowSteps.length; i++) {
+        int r = (square >> 3) + rowSteps[i];
+        int c = (square & 7) + columnSteps[i];
+        if (r >= 0 && r < 8 && c >= 0 && c < 8) {
+          masks[square] |= 1L << square(r, c);
+        }
+      }
+    }
+    return masks;
+  }
+  
+  /*
+   * Set the bits of the piece's square
+   * @param piece: the piece added
+   * @param row: the row of the piece
+   * @param col: the column of the piece
+   */
+  protected void pieceAdded(ChessPiece piece, int row, int col) {
+    long bit = 1L << square(row, col);
+    int side = sideIndex(piece.getSide());
+    EuropeanPieceType type = EuropeanPieceType.of(piece);
+    // pieces that are not european pieces (such as the dummy of the king) still block the square
+    if (type != null) {
+      pieceBitboards[side][type.ordinal()] |= bit;
+      addMaterial(piece.getSide(), type.value);
+      addPieceSquare(piece.getSide(), PieceSquareTables.europeanMidgame(type, piece.getSide(), row, col),
+                     PieceSquareTables.europeanEndgame(type, piece.getSide(), row, col),
+                     PieceSquareTables.EUROPEAN_PHASE[type.ordinal()]);
+    }
+    sideBitboards[side] |= bit;
+    occupied |= bit;
+  }
+
+  /*
+   * Clear the bits of the piece's square
+   * @param piece: the piece removed
+   * @param row: the row the piece was on
+   * @param col: the column the piece was on
+   */
+  protected void pieceRemoved(ChessPiece piece, int row, int col) {
+    long bit = ~(1L << square(row, col));
+    int side = sideIndex(piece.getSide());
+    EuropeanPieceType type = EuropeanPieceType.of(piece);
+    if (type != null) {
+      pieceBitboards[side][type.ordinal()] &= bit;
+      addMaterial(piece.getSide(), -type.value);
+      addPieceSquare(piece.getSide(), -PieceSquareTables.europeanMidgame(type, piece.getSide(), row, col),
+                     -PieceSquareTables.europeanEndgame(type, piece.getSide(), row, col),
+                     -PieceSquareTables.EUROPEAN_PHASE[type.ordinal()]);
+    }
+    sideBitboards[side] &= bit;
+    occupied &= bit;
+  }
+}
@@ -120,19 +120,73 @@ public class CannonPiece extends ChessPiece implements VerticalMove, HorizontalM
     return possibleMoves;
   }
   
+  /*
+   * Write the packed moves of this cannon into a buffer without allocating (see PackedMove)
+   * @param moves: the buffer to write the moves into
+   * @param count: the number of moves already in the buffer
+   */
+  public int generateMoves(int[] moves, int count) {
+    // check if this is the only piece between two xiangqi king
+    boolean pinned = super.kingFacingKing();
+    count = addCannonMoves(moves, count, -1, 0, !pinned);
+    count = addCannonMoves(moves, count, 1, 0, !pinned);
+    if (pinned) {
+      return count;
+    }
+    count = addCannonMoves(moves, count, 0, -1, true);
+    return addCannonMoves(moves, count, 0, 1, true);
+  }
+  
+  /*
+   * Write the cannon moves in one direction: every empty cell up to the first piece,
+   * and the capture of the first piece after that screen if it belongs to the other side
+   * @param moves: the buffer to write the moves into
+   * @param count: the number of moves already in the buffer
+   * @param rowStep: the row change of the direction
+   * @param columnStep: the column change of the direction
+   * @param capture: whether the capture move is included
+   */
+  private int addCannonMoves(int[] moves, int count, int rowStep, int columnStep, boolean capture) {
+    int row = this.getRow() + rowStep;
+    int column = this.getColumn() + columnStep;
+    // non-capture moves over empty cells
+    while (onBoard(row, column) && !getChessBoard().hasPiece(row, column)) {
+      count = addMove(moves, count, row, column);
+      row += rowStep;
+      column += columnStep;
+    }
+    if (!capture) {
+      return count;
+    }
+    // jump the screen and look for the piece to capture
+    row += rowStep;
+    column += columnStep;
+    while (onBoard(row, column)) {
+      if (getChessBoard().hasPiece(row, column)) {
+        return addMove(moves, count, row, column);
+      }
+      row += rowStep;
+      column += columnStep;
+    }
+    return count;
+  }
+  
   /*
    * Check if this move is a legal move (return true if it is legal (false if illegal)
    * @param toRow: the destination's row
    * @param toColumn: the destination's column
    */
   public boolean isLegalMove(int toRow, int toColumn) {
-    Cell targetSquare = new Cell(toRow, toColumn);
-    move(this.getChessBoard(), this.getRow(), this.getColumn());
-    for (Cell possibleMove : possibleMoves) {
-      if (possibleMove.compareTo(targetSquare) == 0 && super.isLegalMove(toRow, toColumn)) return true;
-    }
-    return false;
+    if (toRow != this.getRow() && toColumn != this.getColumn()) return false;
+    if (!canLandOn(toRow, toColumn)) return false;
+    // if this is the only piece between two xiangqi king, it can only move along its column without capturing
+    if (toColumn != this.getColumn() && super.kingFacingKing()) return false;
+    int between = countPiecesBetween(toRow, toColumn);
+    // move over empty cells, or capture by jumping exactly one piece
+    if (!getChessBoard().hasPiece(toRow, toColumn)) return between == 0;
+    return between == 1 && !super.kingFacingKing();
   }
+
   
   /*
    * Check if this move is a legal non-capture move (return true if it is legal (false if illegal)
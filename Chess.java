@@ -5,6 +5,8 @@
 public class Chess implements ChessGame {
   // store the side to move this turn
   ChessGame.Side properSide = ChessGame.Side.NORTH;
+  // the Zobrist key of the side to move (Zobrist.SIDE_KEY when SOUTH is to move)
+  private long turnHash = 0L;
   
   /*
    * Check if it is legal to place a given piece (the correct turn for that side to play)
@@ -51,6 +53,24 @@ public class Chess implements ChessGame {
     return false;
   }
   
+  /*
+   * Handle the move of a piece already found legal (see LegalMoveCache), without asking the piece again
+   * return true since the move is made
+   * @param piece: the piece to move
+   * @param toRow: the row of the piece's destination
+   * @param toColumn: the column of the piece's destination
+   */
+  public boolean makeLegalMove(ChessPiece piece, int toRow, int toColumn) {
+    // a king moving two cells is a castle move
+    if (piece instanceof KingPiece && Math.abs(toColumn - piece.getColumn()) == 2) {
+      ((KingPiece) piece).castle(toRow, toColumn);
+    } else {
+      piece.moveDone(toRow, toColumn);
+    }
+    changeTurn();
+    return true;
+  }
+  
   /*
    * Check if the player can change selection of piece
    * return true in this case since assumption is not tournament chess (which you have to move the piece you touch)
@@ -90,8 +110,29 @@ public class Chess implements ChessGame {
   
   ;
   
+  /** Return the side which is allowed to play this turn */
+  public ChessGame.Side getProperSide() {
+    return properSide;
+  }
+  
+  /** Return the Zobrist key of the side to move, to be xored into a position hash */
+  public long getTurnHash() {
+    return turnHash;
+  }
+  
+  /*
+   * Set the side which is allowed to play (used when a position is copied)
+   * @param side: the side to play
+   */
+  void setProperSide(ChessGame.Side side) {
+    if (side != properSide) {
+      changeTurn();
+    }
+  }
+  
   /** Change the side which is allowed to play after a move is made */
-  private void changeTurn() {
+  void changeTurn() {
+    turnHash ^= Zobrist.SIDE_KEY;
     if (properSide == ChessGame.Side.SOUTH) {
       properSide = ChessGame.Side.NORTH;
     } else {
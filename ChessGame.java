@@ -24,6 +24,19 @@ public interface ChessGame {
      */
     boolean makeMove(ChessPiece piece, int toRow, int toColumn);
 
+    /**
+     * Moves a piece to a new position when the move is already known to be legal, for example because it was
+     * found in the moves of a <tt>LegalMoveCache</tt>.  Rules may skip checking the move again.
+     *
+     * @param piece    the piece to move
+     * @param toRow    the row of the square the piece is moving to
+     * @param toColumn the column of the square the piece is moving to
+     * @return true if the move was made, false if the move was not made
+     */
+    default boolean makeLegalMove(ChessPiece piece, int toRow, int toColumn) {
+        return makeMove(piece, toRow, toColumn);
+    }
+
     /**
      * Returns whether a user can choose a different piece from the one selected or if they have to move the selected piece.
      * If this method returns false, then the <tt>legalPieceToPlay</tt> method must not return true if that piece has no
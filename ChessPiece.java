@@ -16,6 +16,8 @@ public class ChessPiece {
   // row and column stores the position of the piece
   private int row;
   private int column;
+  // the piece code of this piece (see PackedMove), -1 until it is first asked for
+  private int pieceCode = -1;
   
   // constructor
   public ChessPiece(ChessGame.Side side, String label, ChessBoard board) {
@@ -30,6 +32,21 @@ public class ChessPiece {
     return true;
   }
   
+  /*
+   * Set first move status (only the pieces that keep track of their first move store it)
+   * @param status: true if the piece has not moved
+   */
+  public void setFirstMoveStatus(boolean status) {
+  }
+  
+  /** Return the piece code of this piece (see PackedMove), worked out once from its type */
+  public int getPieceCode() {
+    if (pieceCode < 0) {
+      pieceCode = PackedMove.typeCode(this);
+    }
+    return pieceCode;
+  }
+  
   /** Return the side of this piece */
   public ChessGame.Side getSide() {
     return this.side;
@@ -120,10 +137,118 @@ public class ChessPiece {
     return null;
   }
   
+  /*
+   * Write the packed moves of this piece into a buffer without allocating (see PackedMove)
+   * The pieces override this with their own move rules, the default checks isLegalMove on every cell.
+   * @param moves: the buffer to write the moves into
+   * @param count: the number of moves already in the buffer
+   * return the number of moves in the buffer after the moves of this piece are added
+   */
+  public int generateMoves(int[] moves, int count) {
+    for (int i = 0; i < getChessBoard().numRows(); i++) {
+      for (int j = 0; j < getChessBoard().numColumns(); j++) {
+        if ((i != this.row || j != this.column) && this.isLegalMove(i, j)) {
+          count = addMove(moves, count, i, j);
+        }
+      }
+    }
+    return count;
+  }
+  
+  /*
+   * Write the move of this piece to a cell into a buffer, unless a piece of the same side is on that cell
+   * @param moves: the buffer to write the move into
+   * @param count: the number of moves already in the buffer
+   * @param toRow: the destination's row
+   * @param toColumn: the destination's column
+   */
+  protected int addMove(int[] moves, int count, int toRow, int toColumn) {
+    ChessPiece target = board.getPiece(toRow, toColumn);
+    if (target == null) {
+      moves[count] = PackedMove.encode(this.row, this.column, toRow, toColumn, 0, 0, 0);
+    } else if (target.getSide() != this.side) {
+      moves[count] = PackedMove.encode(this.row, this.column, toRow, toColumn,
+                                       PackedMove.CAPTURE, 0, PackedMove.pieceCode(target));
+    } else {
+      return count;
+    }
+    return count + 1;
+  }
+  
+  /*
+   * Write the moves of this piece sliding in one direction until it reaches a piece or the border of the board
+   * @param moves: the buffer to write the moves into
+   * @param count: the number of moves already in the buffer
+   * @param rowStep: the row change of the direction
+   * @param columnStep: the column change of the direction
+   */
+  protected int addSlidingMoves(int[] moves, int count, int rowStep, int columnStep) {
+    int toRow = this.row + rowStep;
+    int toColumn = this.column + columnStep;
+    while (onBoard(toRow, toColumn)) {
+      count = addMove(moves, count, toRow, toColumn);
+      // stop at the first piece
+      if (board.hasPiece(toRow, toColumn)) {
+        break;
+      }
+      toRow += rowStep;
+      toColumn += columnStep;
+    }
+    return count;
+  }
+  
+  /*
+   * Check if this piece may end a move on a cell: the cell is on the board and has no piece of the same side
+   * @param toRow: the destination's row
+   * @param toColumn: the destination's column
+   */
+  protected boolean canLandOn(int toRow, int toColumn) {
+    if (!onBoard(toRow, toColumn)) return false;
+    ChessPiece target = board.getPiece(toRow, toColumn);
+    return target == null || target.getSide() != this.side;
+  }
+  
+  /*
+   * Count the pieces between this piece and a cell on the same row, column or diagonal
+   * return -1 if the cell is not on a row, column or diagonal of this piece
+   * @param toRow: the row of the cell
+   * @param toColumn: the column of the cell
+   */
+  protected int countPiecesBetween(int toRow, int toColumn) {
+    int rowDistance = toRow - this.row;
+    int columnDistance = toColumn - this.column;
+    if ((rowDistance == 0 && columnDistance == 0)
+          || (rowDistance != 0 && columnDistance != 0 && Math.abs(rowDistance) != Math.abs(columnDistance))) {
+      return -1;
+    }
+    int rowStep = Integer.signum(rowDistance);
+    int columnStep = Integer.signum(columnDistance);
+    int count = 0;
+    for (int i = this.row + rowStep, j = this.column + columnStep; i != toRow || j != toColumn; i += rowStep, j += columnStep) {
+      if (board.hasPiece(i, j)) {
+        count++;
+      }
+    }
+    return count;
+  }
+  
+  /*
+   * Check if a cell is inside the board of this piece
+   * @param row: the row of the cell
+   * @param column: the column of the cell
+   */
+  protected boolean onBoard(int row, int column) {
+    return row >= 0 && row < board.numRows() && column >= 0 && column < board.numColumns();
+  }
+  
   /*
    * Check if this is the only piece between two xiangqi kings
    */
   public boolean kingFacingKing() {
+    // the headless boards know where the kings are
+    if (board instanceof HeadlessChessBoard) {
+      return kingFacingKing((HeadlessChessBoard) board);
+    }
     // count the empty rows in the column of this piece
     int countRows = 0;
     // int count the number of kings in column
@@ -142,4 +267,26 @@ public class ChessPiece {
     }
     return false;
   }
+  
+  /*
+   * Check if this is the only piece between two xiangqi kings, using the king squares of a headless board
+   * @param headless: the board of this piece
+   */
+  private boolean kingFacingKing(HeadlessChessBoard headless) {
+    int south = headless.getKingSquare(ChessGame.Side.SOUTH);
+    int north = headless.getKingSquare(ChessGame.Side.NORTH);
+    int columns = headless.numColumns();
+    if (south < 0 || north < 0 || south % columns != this.column || north % columns != this.column
+          || !(headless.getPiece(south / columns, this.column) instanceof XiangqiKingPiece)
+          || !(headless.getPiece(north / columns, this.column) instanceof XiangqiKingPiece)) {
+      return false;
+    }
+    int low = Math.min(south, north) / columns;
+    int high = Math.max(south, north) / columns;
+    if (this.row <= low || this.row >= high) return false;
+    for (int i = low + 1; i < high; i++) {
+      if (i != this.row && headless.hasPiece(i, this.column)) return false;
+    }
+    return true;
+  }
 }
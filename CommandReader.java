@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * Reads the command lines of an engine protocol (see Uci) from a stream and splits them into tokens without
+ * allocating: the bytes of a line stay in one buffer and a token is only its start and end in it, compared and
+ * parsed in place.  The buffers grow when a line is longer than any before, and are kept for the next lines, so
+ * a long list of moves costs no garbage once the buffers are large enough.
+ * @author: Nhien Phan
+ */
+public class CommandReader {
+  // the stream the commands come from
+  private final InputStream in;
+  // the bytes read from the stream and not yet taken into a line
+  private final byte[] input = new byte[8192];
+  private int inputPosition;
+  private int inputEnd;
+  // the bytes of the current line
+  private byte[] line = new byte[1024];
+  private int lineLength;
+  // the start and the end of each token of the current line
+  private int[] starts = new int[64];
+  private int[] ends = new int[64];
+  private int tokens;
+
+  /*
+   * Constructor
+   * @param in: the stream the commands come from
+   */
+  public CommandReader(InputStream in) {
+    this.in = in;
+  }
+
+  /** Read the next line that has a token and split it, return false at the end of the stream */
+  public boolean nextLine() throws IOException {
+    do {
+      if (!readLine()) return false;
+      split();
+    } while (tokens == 0);
+    return true;
+  }
+
+  /** Return the number of tokens of the current line */
+  public int tokenCount() {
+    return tokens;
+  }
+
+  /*
+   * Check if a token is a word
+   * @param token: the index of the token
+   * @param word: the word
+   */
+  public boolean is(int token, String word) {
+    if (token >= tokens || ends[token] - starts[token] != word.length()) return false;
+    for (int i = 0; i < word.length(); i++) {
+      if (line[starts[token] + i] != word.charAt(i)) return false;
+    }
+    return true;
+  }
+
+  /*
+   * Return the index of the first token at or after a token that is a word (tokenCount if there is none)
+   * @param from: the index of the token to start at
+   * @param word: the word
+   */
+  public int find(int from, String word) {
+    for (int i = from; i < tokens; i++) {
+      if (is(i, word)) return i;
+    }
+    return tokens;
+  }
+
+  /*
+   * Return the number of bytes of a token
+   * @param token: the index of the token
+   */
+  public int length(int token) {
+    return ends[token] - starts[token];
+  }
+
+  /*
+   * Return a byte of a token
+   * @param token: the index of the token
+   * @param index: the index of the byte in the token
+   */
+  public int byteAt(int token, int index) {
+    return line[starts[token] + index];
+  }
+
+  /*
+   * Parse a token as a decimal number, return a default if it is not one
+   * @param token: the index of the token
+   * @param otherwise: the number returned for a token that is missing or not a number
+   */
+  public long number(int token, long otherwise) {
+    if (token >= tokens) return otherwise;
+    int i = starts[token];
+    boolean negative = line[i] == '-';
+    if (negative) i++;
+    if (i == ends[token]) return otherwise;
+    long value = 0;
+    for (; i < ends[token]; i++) {
+      int digit = line[i] - '0';
+      if (digit < 0 || digit > 9) return otherwise;
+      value = value * 10 + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  /*
+   * Check if the text of a run of tokens, with their spaces, is the same as bytes kept from an earlier line
+   * @param first: the index of the first token
+   * @param last: the index after the last token
+   * @param text: the bytes
+   * @param length: the number of bytes
+   */
+  public boolean sameText(int first, int last, byte[] text, int length) {
+    if (first >= last) return length == 0;
+    int start = starts[first];
+    int end = ends[last - 1];
+    return end - start == length && Arrays.equals(line, start, end, text, 0, length);
+  }
+
+  /*
+   * Return the number of bytes of the text of a run of tokens, with their spaces
+   * @param first: the index of the first token
+   * @param last: the index after the last token
+   */
+  public int textLength(int first, int last) {
+    return first >= last ? 0 : ends[last - 1] - starts[first];
+  }
+
+  /*
+   * Copy the text of a run of tokens, with their spaces, into a buffer, growing it when it is too small
+   * return the buffer holding the text
+   * @param first: the index of the first token
+   * @param last: the index after the last token
+   * @param text: the buffer
+   */
+  public byte[] copyText(int first, int last, byte[] text) {
+    int length = textLength(first, last);
+    byte[] copy = text.length < length ? new byte[length * 2] : text;
+    System.arraycopy(line, starts[first], copy, 0, length);
+    return copy;
+  }
+
+  /*
+   * Return the text of a run of tokens, with their spaces, as a string
+   * @param first: the index of the first token
+   * @param last: the index after the last token
+   */
+  public String text(int first, int last) {
+    if (first >= last) return "";
+    return new String(line, starts[first], ends[last - 1] - starts[first], StandardCharsets.US_ASCII);
+  }
+
+  /** Read the bytes of the next line into the line buffer, return false at the end of the stream */
+  private boolean readLine() throws IOException {
+    lineLength = 0;
+    while (true) {
+      if (inputPosition == inputEnd) {
+        inputEnd = in.read(input, 0, input.length);
+        inputPosition = 0;
+        if (inputEnd <= 0) {
+          inputEnd = 0;
+          return lineLength > 0;
+        }
+      }
+      byte next = input[inputPosition++];
+      if (next == '\n') return true;
+      if (lineLength == line.length) {
+        line = Arrays.copyOf(line, line.length * 2);
+      }
+      line[lineLength++] = next;
+    }
+  }
+
+  /** Split the line into tokens at spaces, tabs and carriage returns */
+  private void split() {
+    tokens = 0;
+    int i = 0;
+    while (i < lineLength) {
+      while (i < lineLength && line[i] <= ' ') i++;
+      if (i == lineLength) break;
+      if (tokens == starts.length) {
+        starts = Arrays.copyOf(starts, tokens * 2);
+        ends = Arrays.copyOf(ends, tokens * 2);
+      }
+      starts[tokens] = i;
+      while (i < lineLength && line[i] > ' ') i++;
+      ends[tokens++] = i;
+    }
+  }
+}
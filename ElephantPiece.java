@@ -93,20 +93,46 @@ public class ElephantPiece extends ChessPiece {
     }
   }
   
+  /*
+   * Write the packed moves of this elephant into a buffer without allocating (see PackedMove)
+   * @param moves: the buffer to write the moves into
+   * @param count: the number of moves already in the buffer
+   */
+  public int generateMoves(int[] moves, int count) {
+    // check if this is the only piece between two xiangqi king
+    if (super.kingFacingKing()) {
+      return count;
+    }
+    int from = XiangqiMasks.square(this.getRow(), this.getColumn());
+    for (int i = 0; i < 4; i++) {
+      int to = XiangqiMasks.ELEPHANT_TARGET[from][i];
+      int toRow = to / XiangqiMasks.COLUMNS;
+      int toColumn = to % XiangqiMasks.COLUMNS;
+      // the elephant stays on its side of the river and the eye must be empty
+      if (to >= 0 && XiangqiMasks.atHome(this.getSide(), toRow, toColumn)
+            && XiangqiMasks.isEmpty(getChessBoard(), XiangqiMasks.ELEPHANT_EYE[from][i])) {
+        count = addMove(moves, count, toRow, toColumn);
+      }
+    }
+    return count;
+  }
+  
   /*
    * Check if this move is a legal move (return true if it is legal (false if illegal)
    * @param toRow: the destination's row
    * @param toColumn: the destination's column
    */
   public boolean isLegalMove(int toRow, int toColumn) {
-    Cell targetSquare = new Cell(toRow, toColumn);
-    move(this.getChessBoard(), this.getRow(), this.getColumn());
-    for (Cell possibleMove : possibleMoves) {
-      if (possibleMove.compareTo(targetSquare) == 0
-            && isClearPath(toRow, toColumn)
-            && super.isLegalMove(toRow, toColumn)) return true;
-    }
-    return false;
+    int from = XiangqiMasks.square(this.getRow(), this.getColumn());
+    int to = XiangqiMasks.square(toRow, toColumn);
+    // the elephant moves two squares diagonally, over an empty eye, without crossing the river
+    return from >= 0
+      && XiangqiMasks.contains(XiangqiMasks.ELEPHANT_STEP_LOW[from], XiangqiMasks.ELEPHANT_STEP_HIGH[from], to)
+      && XiangqiMasks.atHome(this.getSide(), toRow, toColumn)
+      && XiangqiMasks.isEmpty(getChessBoard(), XiangqiMasks.elephantEye(from, to))
+      && (!getChessBoard().hasPiece(toRow, toColumn)
+            || getChessBoard().getPiece(toRow, toColumn).getSide() != this.getSide())
+      && !super.kingFacingKing();
   }
   
   /*
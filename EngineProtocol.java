@@ -0,0 +1,343 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/*
+ * The part of the engine protocols (UCI for european chess, see Uci, and UCCI for xiangqi, see Ucci) that does
+ * not depend on the game: reading the commands, keeping the game on a headless board and searching it.
+ * A "position" command is compared with the moves already on the board: only the new moves are played, after
+ * taking back the ones that differ, so a GUI sending the whole game before every move costs one move and not a
+ * replay.  Each move is matched against the moves the pieces generate and checked for legality before it is played.
+ * The commands are read and split without allocating (see CommandReader), and "go" searches on its own thread,
+ * so "isready" and "stop" are answered while the search runs.  The search sends an info line after each iteration
+ * and about once a second between them.
+ * The subclasses give the starting position, the coordinates of the squares and the greeting of their protocol.
+ * @author: Nhien Phan
+ */
+public abstract class EngineProtocol {
+  // the share of the clock spent on a move when the GUI does not send the moves to the next time control
+  private static final int MOVES_TO_GO = 30;
+  // the time kept back for the answer to reach the GUI, in milliseconds
+  private static final long MOVE_OVERHEAD = 20;
+  // the letter of each european piece code (see PackedMove.pieceCode) in a promotion
+  private static final String PROMOTIONS = "prnbqk";
+
+  // the commands and the answers
+  protected final CommandReader reader;
+  protected final PrintStream out;
+  // the engine and its move buffer
+  private final SearchEngine engine = new SearchEngine(0, 0);
+  private final int[] moveBuffer = new int[MoveGenerator.MAX_MOVES];
+  // the board of the game (null before the first position)
+  private HeadlessChessBoard board;
+  // the FEN text the game started from (empty for the start position) and its length
+  private byte[] startText = new byte[128];
+  private int startLength = -1;
+  // the moves played on the board since the start of the game
+  private int[] played = new int[256];
+  private int playedCount;
+  // the thread of the search in progress (null if there is none)
+  private Thread searcher;
+  // set when the GUI stops a search, which ends a "go infinite"
+  private boolean stopAsked;
+  // the start of the search in progress and the depth of its last info line, used by its thread only
+  private long searchStart;
+  private int reportedDepth;
+
+  /*
+   * Constructor
+   * @param in: the stream the commands come from
+   * @param out: the stream the answers go to
+   */
+  protected EngineProtocol(InputStream in, PrintStream out) {
+    this.reader = new CommandReader(in);
+    this.out = out;
+    engine.setProgress(this::report);
+  }
+
+  /** Answer the commands until "quit" or the end of the input */
+  public void run() throws IOException {
+    while (reader.nextLine()) {
+      if (greet()) {
+        // the greeting was answered by the subclass
+      } else if (reader.is(0, "isready")) {
+        out.println("readyok");
+      } else if (reader.is(0, "ucinewgame") || (reader.is(0, "setoption") && reader.is(1, "newgame"))) {
+        waitForSearch();
+        engine.clearTable();
+        board = null;
+      } else if (reader.is(0, "position")) {
+        waitForSearch();
+        position();
+      } else if (reader.is(0, "go")) {
+        waitForSearch();
+        go();
+      } else if (reader.is(0, "stop")) {
+        stopSearch();
+      } else if (reader.is(0, "quit")) {
+        break;
+      }
+    }
+    stopSearch();
+    quit();
+  }
+
+  /** Answer the greeting of the protocol if the command is one, return true if it was */
+  protected abstract boolean greet();
+
+  /** Say goodbye when the protocol ends, if the protocol does */
+  protected void quit() {
+  }
+
+  /** Return the FEN text of the starting position of the game */
+  protected abstract String startPosition();
+
+  /** Return the number of rows of the board of the game */
+  protected abstract int numRows();
+
+  /*
+   * Return the row of a rank character of a move, in the coordinates of the protocol
+   * @param rank: the character
+   */
+  protected abstract int row(int rank);
+
+  /*
+   * Return the rank character of a row, in the coordinates of the protocol
+   * @param row: the row
+   */
+  protected abstract char rank(int row);
+
+  /** Set up the position of a "position [startpos | fen <fen>] [moves <move> ...]" command */
+  private void position() {
+    int movesToken = reader.find(1, "moves");
+    int fenStart;
+    int fenEnd;
+    if (reader.is(1, "startpos")) {
+      fenStart = 2;
+      fenEnd = 2;
+    } else if (reader.is(1, "fen")) {
+      fenStart = 2;
+      fenEnd = movesToken;
+    } else {
+      return;
+    }
+    // a game from another starting position is set up again, the same game only gets its new moves
+    if (board == null || !reader.sameText(fenStart, fenEnd, startText, startLength)) {
+      try {
+        board = Fen.read(fenStart == fenEnd ? startPosition() : reader.text(fenStart, fenEnd));
+      } catch (IllegalArgumentException e) {
+        out.println("info string " + e.getMessage());
+        board = null;
+        return;
+      }
+      if (board.numRows() != numRows()) {
+        out.println("info string the position is not of the game of the protocol");
+        board = null;
+        return;
+      }
+      startText = reader.copyText(fenStart, fenEnd, startText);
+      startLength = reader.textLength(fenStart, fenEnd);
+      playedCount = 0;
+    }
+    int first = movesToken + 1;
+    int count = Math.max(reader.tokenCount() - first, 0);
+    int same = 0;
+    while (same < playedCount && same < count && matches(first + same, played[same])) {
+      same++;
+    }
+    while (playedCount > same) {
+      board.unmakeMove();
+      playedCount--;
+    }
+    for (int i = same; i < count; i++) {
+      int move = legalMove(first + i);
+      if (move == 0) {
+        out.println("info string illegal move " + reader.text(first + i, first + i + 1));
+        return;
+      }
+      board.makeMove(move);
+      if (playedCount == played.length) {
+        played = Arrays.copyOf(played, playedCount * 2);
+      }
+      played[playedCount++] = move;
+    }
+  }
+
+  /** Start the search of a "go" command on its own thread */
+  private void go() {
+    if (board == null) {
+      board = Fen.read(startPosition());
+      startLength = 0;
+      playedCount = 0;
+    }
+    boolean north = ((Chess) board.getGameRules()).getProperSide() == ChessGame.Side.NORTH;
+    // the clock of the side to play: wtime and winc in UCI, time and increment in UCCI
+    long time = reader.number(reader.find(1, north ? "wtime" : "btime") + 1, reader.number(reader.find(1, "time") + 1, -1));
+    long increment = reader.number(reader.find(1, north ? "winc" : "binc") + 1,
+                                   reader.number(reader.find(1, "increment") + 1, 0));
+    long movesToGo = reader.number(reader.find(1, "movestogo") + 1, MOVES_TO_GO);
+    long moveTime = reader.number(reader.find(1, "movetime") + 1, -1);
+    long depth = reader.number(reader.find(1, "depth") + 1, SearchEngine.MAX_PLY);
+    long nodes = reader.number(reader.find(1, "nodes") + 1, 0);
+    boolean infinite = reader.find(1, "infinite") < reader.tokenCount();
+    long budget = 0;
+    if (infinite) {
+      budget = 0;
+    } else if (moveTime > 0) {
+      budget = Math.max(moveTime - MOVE_OVERHEAD, 1);
+    } else if (time >= 0) {
+      long share = time / Math.max(movesToGo, 1) + increment / 2;
+      budget = Math.max(Math.min(share, time / 2) - MOVE_OVERHEAD, 1);
+    }
+    engine.setLimits(budget, Math.max(nodes, 0));
+    int maxDepth = (int) Math.max(Math.min(depth, SearchEngine.MAX_PLY - 1), 1);
+    synchronized (this) {
+      stopAsked = false;
+    }
+    searcher = new Thread(() -> search(maxDepth, infinite), "engine search");
+    searcher.start();
+  }
+
+  /*
+   * Search the board and send the best move, the info lines are sent by report while the search runs
+   * @param maxDepth: the deepest iteration to search
+   * @param infinite: true to hold the best move back until the GUI stops the search
+   */
+  private void search(int maxDepth, boolean infinite) {
+    searchStart = System.nanoTime();
+    reportedDepth = 0;
+    int move = engine.search(board, maxDepth);
+    // a position answered from the analysis cache runs no iteration
+    if (reportedDepth == 0) {
+      report(true);
+    }
+    if (infinite) {
+      synchronized (this) {
+        while (!stopAsked) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            break;
+          }
+        }
+      }
+    }
+    out.println("bestmove " + (move == 0 ? "0000" : moveText(move)));
+  }
+
+  /*
+   * Send an info line about the search in progress: the depth, score and principal variation of an iteration it
+   * finished, or the nodes searched so far, which keeps the GUI informed during a long iteration of "go infinite"
+   * @param iterationDone: true after an iteration, false between two iterations
+   */
+  private void report(boolean iterationDone) {
+    long millis = (System.nanoTime() - searchStart) / 1000000;
+    long nodes = engine.getNodes();
+    StringBuilder info = new StringBuilder("info");
+    if (iterationDone) {
+      reportedDepth = engine.getDepth();
+      int score = engine.getScore();
+      info.append(" depth ").append(reportedDepth);
+      if (Math.abs(score) >= SearchEngine.MATE - SearchEngine.MAX_PLY) {
+        int moves = (SearchEngine.MATE - Math.abs(score) + 1) / 2;
+        info.append(" score mate ").append(score > 0 ? moves : -moves);
+      } else {
+        info.append(" score cp ").append(score);
+      }
+    }
+    info.append(" nodes ").append(nodes).append(" nps ").append(nodes * 1000 / Math.max(millis, 1))
+      .append(" time ").append(millis);
+    if (iterationDone) {
+      info.append(" pv");
+      for (int pvMove : engine.getPrincipalVariation()) {
+        info.append(' ').append(moveText(pvMove));
+      }
+    }
+    out.println(info);
+  }
+
+  /** Stop the search in progress and wait for its best move */
+  private void stopSearch() {
+    synchronized (this) {
+      stopAsked = true;
+      notifyAll();
+    }
+    // a stop that comes before the search has started is asked again until the search ends
+    while (searcher != null && searcher.isAlive()) {
+      engine.stop();
+      try {
+        searcher.join(10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    waitForSearch();
+  }
+
+  /** Wait for the search in progress to send its best move */
+  private void waitForSearch() {
+    if (searcher == null) return;
+    try {
+      searcher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    searcher = null;
+  }
+
+  /*
+   * Check if a move token such as "e2e4", "e7e8q" or "h2e2" is a packed move (the letters may be capitals)
+   * @param token: the index of the token
+   * @param move: the packed move
+   */
+  private boolean matches(int token, int move) {
+    int length = reader.length(token);
+    if (length != 4 && length != 5) return false;
+    return PackedMove.fromColumn(move) == (reader.byteAt(token, 0) | 0x20) - 'a'
+      && PackedMove.fromRow(move) == row(reader.byteAt(token, 1))
+      && PackedMove.toColumn(move) == (reader.byteAt(token, 2) | 0x20) - 'a'
+      && PackedMove.toRow(move) == row(reader.byteAt(token, 3))
+      && promotion(move) == (length == 5 ? PROMOTIONS.indexOf(reader.byteAt(token, 4) | 0x20) + 1 : 0);
+  }
+
+  /*
+   * Return the legal move of the side to play written by a move token (0 if there is none)
+   * @param token: the index of the token
+   */
+  private int legalMove(int token) {
+    ChessGame.Side side = ((Chess) board.getGameRules()).getProperSide();
+    int count = MoveGenerator.generateMoves(board, side, moveBuffer);
+    for (int i = 0; i < count; i++) {
+      int move = moveBuffer[i];
+      if (matches(token, move)) {
+        return MoveGenerator.isLegal(board, side, move) ? move : 0;
+      }
+    }
+    return 0;
+  }
+
+  /*
+   * Return the piece code a move promotes to (0 if it is not a promotion)
+   * @param move: the packed move
+   */
+  private static int promotion(int move) {
+    return (PackedMove.flags(move) & PackedMove.PROMOTION) != 0 ? PackedMove.promotion(move) : 0;
+  }
+
+  /*
+   * Return a move in the coordinates of the protocol, such as "e2e4", "e7e8q" or "h2e2"
+   * @param move: the packed move
+   */
+  protected String moveText(int move) {
+    StringBuilder text = new StringBuilder(5)
+      .append((char) ('a' + PackedMove.fromColumn(move))).append(rank(PackedMove.fromRow(move)))
+      .append((char) ('a' + PackedMove.toColumn(move))).append(rank(PackedMove.toRow(move)));
+    if (promotion(move) != 0) {
+      text.append(PROMOTIONS.charAt(promotion(move) - 1));
+    }
+    return text.toString();
+  }
+}
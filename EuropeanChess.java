@@ -4,8 +4,12 @@
  */
 public class EuropeanChess extends Chess {
   
-  /** Main method to begin playing */ 
-  public static void main(String[] args) {
+  /** Main method to begin playing, or to play over UCI without a window when the argument is "uci" */ 
+  public static void main(String[] args) throws java.io.IOException {
+    if (args.length > 0 && args[0].equals("uci")) {
+      new Uci(System.in, System.out).run();
+      return;
+    }
     EuropeanChess ec = new EuropeanChess();
     EuropeanChessDisplay ecd = new EuropeanChessDisplay();
     SwingChessBoard board = new SwingChessBoard(ecd, ec);
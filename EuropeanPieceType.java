@@ -4,16 +4,56 @@
  */
 public enum EuropeanPieceType {
   
-  P("Pawn"),
-  R("Rook"),
-  N("Knight"),
-  B("Bishop"),
-  Q("Queen"),
-  K("King");
+  P("Pawn", 100),
+  R("Rook", 500),
+  N("Knight", 320),
+  B("Bishop", 330),
+  Q("Queen", 900),
+  K("King", 0);
   
   public final String name;
+  // the material value of the piece in hundredths of a pawn (the king is never traded)
+  public final int value;
   
-  EuropeanPieceType(String name) {
+  EuropeanPieceType(String name, int value) {
     this.name = name;
+    this.value = value;
+  }
+  
+  /*
+   * Create a new piece of this type
+   * @param side: the side of the piece
+   * @param board: the board the piece is on
+   */
+  public ChessPiece newPiece(ChessGame.Side side, ChessBoard board) {
+    switch (this) {
+      case P:
+        return new PawnPiece(side, name, board);
+      case R:
+        return new RookPiece(side, name, board);
+      case N:
+        return new KnightPiece(side, name, board);
+      case B:
+        return new BishopPiece(side, name, board);
+      case Q:
+        return new QueenPiece(side, name, board);
+      default:
+        return new KingPiece(side, name, board);
+    }
+  }
+  
+  /*
+   * Return the type of a european chess piece (null if the piece is not a european chess piece)
+   * @param piece: the piece to check
+   */
+  public static EuropeanPieceType of(ChessPiece piece) {
+    if (piece instanceof PawnPiece) return P;
+    if (piece instanceof RookPiece) return R;
+    // the xiangqi horse is also a knight
+    if (piece instanceof KnightPiece && !(piece instanceof HorsePiece)) return N;
+    if (piece instanceof BishopPiece) return B;
+    if (piece instanceof QueenPiece) return Q;
+    if (piece instanceof KingPiece) return K;
+    return null;
   }
 }
@@ -0,0 +1,235 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Reads positions written in Forsyth-Edwards Notation onto headless boards.
+ * The first rank of the text is row 0 of the board, where the SOUTH pieces start, and the file letters a, b, c, ...
+ * are columns 0, 1, 2, ...  Upper case pieces and the side "w" (or "r" in xiangqi) are the NORTH side, which
+ * plays first.  A text with ten ranks is read as a xiangqi position, with eight ranks as a european chess position.
+ * The en passant field is ignored because the rules of the project have no en passant capture.
+ * @author: Nhien Phan
+ */
+public final class Fen {
+  // the longest FEN text write makes: 90 squares and 9 slashes of a xiangqi board and the fields after them
+  static final int MAX_LENGTH = 128;
+  // the starting positions of both games
+  public static final String EUROPEAN_START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+  public static final String XIANGQI_START = "rnbakabnr/9/1c5c1/p1p1p1p1p/9/9/P1P1P1P1P/1C5C1/9/RNBAKABNR w - - 0 1";
+
+  // this class only holds static helpers
+  private Fen() {
+  }
+
+  /*
+   * Put the position of a FEN text on a new headless board, with new rules whose side to play is the side of the text
+   * @param fen: the FEN text
+   */
+  public static HeadlessChessBoard read(String fen) {
+    String[] fields = fen.trim().split("\\s+");
+    String[] ranks = fields[0].split("/");
+    boolean xiangqi = ranks.length == XiangqiMasks.ROWS;
+    if (!xiangqi && ranks.length != 8) {
+      throw new IllegalArgumentException("A FEN position needs 8 or 10 ranks: " + fen);
+    }
+    Chess rules = xiangqi ? new XiangqiChess() : new EuropeanChess();
+    HeadlessChessBoard board = xiangqi ? new XiangqiBitboardChessBoard(rules) : new BitboardChessBoard(rules);
+
+    for (int row = 0; row < ranks.length; row++) {
+      int column = 0;
+      for (char letter : ranks[row].toCharArray()) {
+        if (Character.isDigit(letter)) {
+          column += letter - '0';
+          continue;
+        }
+        ChessGame.Side side = Character.isUpperCase(letter) ? ChessGame.Side.NORTH : ChessGame.Side.SOUTH;
+        ChessPiece piece = xiangqi ? xiangqiPiece(letter, side, board) : europeanPiece(letter, side, board);
+        if (piece == null || column >= board.numColumns()) {
+          throw new IllegalArgumentException("Bad rank \"" + ranks[row] + "\" in FEN: " + fen);
+        }
+        // pieces only keep their first move status through the castle rights (set before the piece is hashed)
+        piece.setFirstMoveStatus(false);
+        board.addPiece(piece, row, column++);
+      }
+      if (column != board.numColumns()) {
+        throw new IllegalArgumentException("Bad rank \"" + ranks[row] + "\" in FEN: " + fen);
+      }
+    }
+
+    if (fields.length > 1 && fields[1].equals("b")) {
+      rules.setProperSide(ChessGame.Side.SOUTH);
+    } else {
+      rules.setProperSide(ChessGame.Side.NORTH);
+    }
+    if (!xiangqi && fields.length > 2) {
+      for (char right : fields[2].toCharArray()) {
+        switch (right) {
+          case 'K':
+            allowCastle(board, 7, 7);
+            break;
+          case 'Q':
+            allowCastle(board, 7, 0);
+            break;
+          case 'k':
+            allowCastle(board, 0, 7);
+            break;
+          case 'q':
+            allowCastle(board, 0, 0);
+            break;
+          default:
+            break;
+        }
+      }
+    }
+    return board;
+  }
+
+  /*
+   * Write the position of a board as a FEN text (no castle rights are written for pieces that moved)
+   * @param board: the board
+   * @param sideToPlay: the side to play
+   */
+  public static String write(ChessBoard board, ChessGame.Side sideToPlay) {
+    ByteBuffer text = ByteBuffer.allocate(MAX_LENGTH);
+    write(board, sideToPlay, text);
+    return new String(text.array(), 0, text.position(), StandardCharsets.US_ASCII);
+  }
+
+  /*
+   * Write the FEN text of a board as ASCII bytes at the position of a buffer, without allocating, for the answers
+   * of the servers (see JsonWriter.fen)
+   * @param board: the board
+   * @param sideToPlay: the side to play
+   * @param out: the buffer, with at least MAX_LENGTH bytes left
+   */
+  static void write(ChessBoard board, ChessGame.Side sideToPlay, ByteBuffer out) {
+    boolean xiangqi = board.numRows() == XiangqiMasks.ROWS;
+    for (int row = 0; row < board.numRows(); row++) {
+      int empty = 0;
+      for (int column = 0; column < board.numColumns(); column++) {
+        ChessPiece piece = board.getPiece(row, column);
+        char letter = piece == null ? 0 : letter(piece, xiangqi);
+        if (letter == 0) {
+          empty++;
+          continue;
+        }
+        if (empty > 0) {
+          out.put((byte) ('0' + empty));
+          empty = 0;
+        }
+        out.put((byte) (piece.getSide() == ChessGame.Side.NORTH ? Character.toUpperCase(letter) : letter));
+      }
+      if (empty > 0) {
+        out.put((byte) ('0' + empty));
+      }
+      if (row < board.numRows() - 1) {
+        out.put((byte) '/');
+      }
+    }
+    out.put((byte) ' ').put((byte) (sideToPlay == ChessGame.Side.NORTH ? 'w' : 'b')).put((byte) ' ');
+    int rights = 0;
+    for (int i = 0; i < 4 && !xiangqi; i++) {
+      // K, Q, k and q
+      if (castleRight(board, i < 2 ? 7 : 0, i % 2 == 0 ? 7 : 0)) {
+        out.put((byte) "KQkq".charAt(i));
+        rights++;
+      }
+    }
+    if (rights == 0) {
+      out.put((byte) '-');
+    }
+    for (int i = 0; i < " - 0 1".length(); i++) {
+      out.put((byte) " - 0 1".charAt(i));
+    }
+  }
+
+  /*
+   * Return the FEN letter of a piece in lower case (0 for a piece of neither game)
+   * @param piece: the piece
+   * @param xiangqi: true for a xiangqi board
+   */
+  private static char letter(ChessPiece piece, boolean xiangqi) {
+    if (xiangqi) {
+      XiangQiPieceType type = XiangQiPieceType.of(piece);
+      return type == null ? 0 : "kabnrcp".charAt(type.ordinal());
+    }
+    EuropeanPieceType type = EuropeanPieceType.of(piece);
+    return type == null ? 0 : "prnbqk".charAt(type.ordinal());
+  }
+
+  /*
+   * Mark the king of a home row and the rook of a corner as not moved
+   * @param board: the board
+   * @param row: the home row
+   * @param rookColumn: the column of the rook
+   */
+  static void allowCastle(ChessBoard board, int row, int rookColumn) {
+    ChessPiece king = board.getPiece(row, 4);
+    ChessPiece rook = board.getPiece(row, rookColumn);
+    if (king instanceof KingPiece && rook instanceof RookPiece && king.getSide() == rook.getSide()) {
+      // the pieces are put back so the hash of the board sees their new status
+      board.removePiece(row, 4);
+      board.removePiece(row, rookColumn);
+      king.setFirstMoveStatus(true);
+      rook.setFirstMoveStatus(true);
+      board.addPiece(king, row, 4);
+      board.addPiece(rook, row, rookColumn);
+    }
+  }
+
+  /*
+   * Check if the king of a home row can still castle with the rook of a corner
+   * @param board: the board
+   * @param row: the home row
+   * @param rookColumn: the column of the rook
+   */
+  static boolean castleRight(ChessBoard board, int row, int rookColumn) {
+    ChessPiece king = board.getPiece(row, 4);
+    ChessPiece rook = board.getPiece(row, rookColumn);
+    ChessGame.Side side = row == 7 ? ChessGame.Side.NORTH : ChessGame.Side.SOUTH;
+    return king instanceof KingPiece && rook instanceof RookPiece && king.getSide() == side && rook.getSide() == side
+      && king.getFirstMoveStatus() && rook.getFirstMoveStatus();
+  }
+
+  /*
+   * Create the european chess piece of a FEN letter (null if the letter is not a piece)
+   * @param letter: the letter
+   * @param side: the side of the piece
+   * @param board: the board of the piece
+   */
+  private static ChessPiece europeanPiece(char letter, ChessGame.Side side, ChessBoard board) {
+    int index = "prnbqk".indexOf(Character.toLowerCase(letter));
+    return index < 0 ? null : EuropeanPieceType.values()[index].newPiece(side, board);
+  }
+
+  /*
+   * Create the xiangqi piece of a FEN letter (null if the letter is not a piece).
+   * Both the letters of the common notation (a, b, n) and of the piece names (g, e, h) are read.
+   * @param letter: the letter
+   * @param side: the side of the piece
+   * @param board: the board of the piece
+   */
+  private static ChessPiece xiangqiPiece(char letter, ChessGame.Side side, ChessBoard board) {
+    switch (Character.toLowerCase(letter)) {
+      case 'k':
+        return XiangQiPieceType.X.newPiece(side, board);
+      case 'a':
+      case 'g':
+        return XiangQiPieceType.G.newPiece(side, board);
+      case 'b':
+      case 'e':
+        return XiangQiPieceType.E.newPiece(side, board);
+      case 'n':
+      case 'h':
+        return XiangQiPieceType.H.newPiece(side, board);
+      case 'r':
+        return XiangQiPieceType.R.newPiece(side, board);
+      case 'c':
+        return XiangQiPieceType.C.newPiece(side, board);
+      case 'p':
+      case 's':
+        return XiangQiPieceType.S.newPiece(side, board);
+      default:
+        return null;
+    }
+  }
+}
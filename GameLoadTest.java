@@ -0,0 +1,204 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * A load test of the game server (see GameServer), from the local machine.
+ * Every connection is a thread that opens its share of the games, half european and half xiangqi, then plays a
+ * move in each of its games in turn and times the answer.  The moves are sent at a steady rate over all the
+ * connections, 2000 a second by default (10000 casual games with a move every 5 seconds each), and each latency is
+ * timed from the moment its move was due, so a server falling behind is seen; a rate of 0 sends every move as soon
+ * as the last one is answered.  The moves go out and back with a knight or a horse
+ * of each side, so they are always legal and the client needs no board of its own.  At the end the test prints
+ * the moves answered a second and the percentiles of the latency, and the heap the games take when the server
+ * runs in the same process, which it does without a port.  The test fails (exit status 1) when a move was refused
+ * or the 99th percentile of the latency is over P99_TARGET_MS.
+ * Run with:
+ *   java GameLoadTest [games] [connections] [seconds] [moves a second] [port]
+ * @author: Nhien Phan
+ */
+public class GameLoadTest {
+  // the moves played in turn in a european game and in a xiangqi game, which bring the game back to its start
+  private static final String[] EUROPEAN_MOVES = {"g1f3", "g8f6", "f3g1", "f6g8"};
+  private static final String[] XIANGQI_MOVES = {"h0g2", "h9g7", "g2h0", "g7h9"};
+  // the 99th percentile of the latency of a move the server must stay under, in milliseconds
+  private static final double P99_TARGET_MS = 5;
+  // the seconds played before the moves are timed, so the server is compiled by then
+  private static final int WARM_UP_SECONDS = 3;
+
+  /*
+   * The games of one connection, and the latency of each move in nanoseconds
+   */
+  private static final class Client extends Thread {
+    private final Socket socket;
+    private final BufferedReader in;
+    private final OutputStream out;
+    // the number of each game, its kind and the number of moves played in it
+    private final long[] games;
+    private final boolean[] xiangqi;
+    private final int[] plies;
+    private long[] latencies = new long[1024];
+    private int count;
+    private int errors;
+    // the time to start timing the moves, the time to stop playing, and the nanoseconds between two moves of the
+    // connection (0 for no wait)
+    private volatile long measureFrom;
+    private volatile long deadline;
+    private volatile long interval;
+
+    // constructor, open the games of the connection
+    Client(int port, int gameCount, int firstGame) throws IOException {
+      this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+      socket.setTcpNoDelay(true);
+      this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+      this.out = socket.getOutputStream();
+      this.games = new long[gameCount];
+      this.xiangqi = new boolean[gameCount];
+      this.plies = new int[gameCount];
+      for (int i = 0; i < gameCount; i++) {
+        xiangqi[i] = (firstGame + i) % 2 == 1;
+        String answer = ask("new " + (xiangqi[i] ? "xiangqi" : "european"));
+        if (!answer.startsWith("ok ")) {
+          throw new IOException("the server did not open a game: " + answer);
+        }
+        games[i] = Long.parseLong(answer.substring(3));
+      }
+    }
+
+    // send a command and return its answer
+    private String ask(String command) throws IOException {
+      out.write((command + "\n").getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+      String answer = in.readLine();
+      if (answer == null) throw new IOException("the server closed the connection");
+      return answer;
+    }
+
+    @Override
+    public void run() {
+      try (Socket connection = socket) {
+        long due = System.nanoTime();
+        for (int i = 0; due < deadline; i = (i + 1) % games.length) {
+          String[] moves = xiangqi[i] ? XIANGQI_MOVES : EUROPEAN_MOVES;
+          // parkNanos, since Thread.sleep rounds a part of a millisecond up to a whole one
+          for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+            LockSupport.parkNanos(wait);
+          }
+          long start = interval == 0 ? System.nanoTime() : due;
+          due = interval == 0 ? System.nanoTime() : due + interval;
+          String answer = ask("move " + games[i] + " " + moves[plies[i] % moves.length]);
+          long latency = System.nanoTime() - start;
+          if (!answer.startsWith("ok ")) {
+            errors++;
+            continue;
+          }
+          plies[i]++;
+          if (start < measureFrom) continue;
+          if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+          }
+          latencies[count++] = latency;
+        }
+        connection.getOutputStream().write("quit\n".getBytes(StandardCharsets.US_ASCII));
+      } catch (IOException e) {
+        System.err.println("connection failed: " + e.getMessage());
+      }
+    }
+  }
+
+  /** Main method to run the load test */
+  public static void main(String[] args) throws Exception {
+    int gameCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int connections = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+    int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    double rate = args.length > 3 ? Double.parseDouble(args[3]) : 2000;
+    GameServer server = null;
+    int port;
+    long heapBefore = 0;
+    if (args.length > 4) {
+      port = Integer.parseInt(args[4]);
+    } else {
+      GameServer embedded = new GameServer(0, gameCount);
+      Thread serverThread = new Thread(embedded::serve, "game server");
+      serverThread.setDaemon(true);
+      serverThread.start();
+      server = embedded;
+      port = embedded.getPort();
+      heapBefore = usedHeap();
+    }
+
+    Client[] clients = new Client[connections];
+    int opened = 0;
+    for (int i = 0; i < connections; i++) {
+      int share = gameCount / connections + (i < gameCount % connections ? 1 : 0);
+      clients[i] = new Client(port, Math.max(share, 1), opened);
+      opened += Math.max(share, 1);
+    }
+    if (server != null) {
+      System.out.printf("%d games open, %.1f MB of heap (%.0f bytes a game, with the connections)%n",
+                        server.getSessionCount(), (usedHeap() - heapBefore) / 1e6,
+                        (double) (usedHeap() - heapBefore) / server.getSessionCount());
+    }
+
+    long start = System.nanoTime() + WARM_UP_SECONDS * 1_000_000_000L;
+    for (Client client : clients) {
+      client.measureFrom = start;
+      client.deadline = start + seconds * 1_000_000_000L;
+      client.interval = rate > 0 ? (long) (1e9 * connections / rate) : 0;
+      client.start();
+    }
+    int total = 0;
+    int errors = 0;
+    for (Client client : clients) {
+      client.join();
+      total += client.count;
+      errors += client.errors;
+    }
+    double elapsed = (System.nanoTime() - start) / 1e9;
+    long[] all = new long[total];
+    int index = 0;
+    for (Client client : clients) {
+      System.arraycopy(client.latencies, 0, all, index, client.count);
+      index += client.count;
+    }
+    Arrays.sort(all);
+    System.out.printf("%d connections, %d moves in %.1f s: %.0f moves/s, %d refused%n", connections, total, elapsed,
+                      total / elapsed, errors);
+    if (total > 0) {
+      System.out.printf("move ack (us): p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n", percentile(all, 0.5),
+                        percentile(all, 0.9), percentile(all, 0.99), percentile(all, 0.999), all[total - 1] / 1e3);
+    }
+    if (server != null) {
+      server.close();
+    }
+    boolean met = total > 0 && errors == 0 && percentile(all, 0.99) < P99_TARGET_MS * 1e3;
+    System.out.printf("p99 target of %.0f ms with no refused move: %s%n", P99_TARGET_MS, met ? "met" : "missed");
+    if (!met) {
+      System.exit(1);
+    }
+  }
+
+  // return the heap in use after a collection
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /*
+   * Return a percentile of sorted latencies in microseconds
+   * @param sorted: the latencies in nanoseconds, sorted
+   * @param fraction: the percentile as a fraction
+   */
+  private static double percentile(long[] sorted, double fraction) {
+    return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))] / 1e3;
+  }
+}
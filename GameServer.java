@@ -0,0 +1,213 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * A server hosting many games of european chess and xiangqi at once, without windows.
+ * Every game is a session kept in memory (see GameSession) and every connection is served by its own thread:
+ * a virtual thread when the JVM has them (Java 21 and later), otherwise a platform thread with a small stack.
+ * The protocol is one line per command and one line per answer, over a TCP socket of the local machine:
+ *   new european|xiangqi [<fen>]   ->  ok <game>
+ *   move <game> <move>             ->  ok <ply> [checkmate|stalemate]  or  error illegal move
+ *   position <game>                ->  ok <fen>
+ *   close <game>                   ->  ok
+ *   quit                           ->  the connection is closed
+ * Moves are written like "e2e4" or "e7e8q" for european chess and in ICCS coordinates like "h2e2" for xiangqi
+ * (see Uci and Ucci).  Other commands are answered with "error" and a reason.
+ * Run with:
+ *   java GameServer [port] [max games]
+ * @author: Nhien Phan
+ */
+public class GameServer implements AutoCloseable {
+  // the stack of a connection thread when there are no virtual threads
+  private static final long STACK_SIZE = 256 * 1024;
+  // the letter of each european piece code (see PackedMove.pieceCode) in a promotion
+  private static final String PROMOTIONS = "prnbqk";
+
+  // the socket the connections come to
+  private final ServerSocket serverSocket;
+  // the threads of the connections
+  private final ExecutorService connections;
+  // the games being played and the largest number of them
+  private final Map<Long, GameSession> sessions = new ConcurrentHashMap<>();
+  private final int maxSessions;
+  // the number of games kept or being made, taken before a game is made so the games never pass maxSessions
+  private final AtomicInteger reserved = new AtomicInteger();
+  // the number of the next game
+  private final AtomicLong nextId = new AtomicLong(1);
+
+  /*
+   * Constructor, listen on a port of the local machine
+   * @param port: the port (0 for any free port)
+   * @param maxSessions: the largest number of games kept at once
+   */
+  public GameServer(int port, int maxSessions) throws IOException {
+    if (maxSessions <= 0) {
+      throw new IllegalArgumentException("The server must keep at least one game: " + maxSessions);
+    }
+    this.maxSessions = maxSessions;
+    this.serverSocket = new ServerSocket();
+    serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+    this.connections = newConnectionExecutor();
+  }
+
+  /*
+   * Return an executor that runs every task on a new virtual thread, or on a new platform thread with a small
+   * stack when the JVM has no virtual threads.  The method is looked up by reflection so the server still
+   * compiles and runs on Java 17.
+   */
+  static ExecutorService newConnectionExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+      return Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(null, task, "game connection", STACK_SIZE);
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  /** Return the port the server listens on */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /** Return the number of games being played */
+  public int getSessionCount() {
+    return sessions.size();
+  }
+
+  /** Accept connections until the server is closed */
+  public void serve() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        connections.execute(() -> handle(socket));
+      } catch (IOException e) {
+        if (!serverSocket.isClosed()) {
+          System.err.println("accept failed: " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  /** Stop accepting connections and end the ones open */
+  public void close() throws IOException {
+    serverSocket.close();
+    connections.shutdownNow();
+  }
+
+  /*
+   * Answer the commands of a connection until it quits or closes
+   * @param socket: the socket of the connection
+   */
+  private void handle(Socket socket) {
+    try (Socket connection = socket) {
+      CommandReader reader = new CommandReader(connection.getInputStream());
+      GameSession.Workspace workspace = new GameSession.Workspace();
+      OutputStream out = new BufferedOutputStream(connection.getOutputStream(), 512);
+      while (reader.nextLine() && !reader.is(0, "quit")) {
+        out.write(answer(reader, workspace).getBytes(StandardCharsets.US_ASCII));
+        out.write('\n');
+        out.flush();
+      }
+    } catch (IOException e) {
+      // the client went away, its games stay for another connection
+    }
+  }
+
+  /*
+   * Carry out a command and return its answer
+   * @param reader: the reader holding the command
+   * @param workspace: the boards of the connection
+   */
+  String answer(CommandReader reader, GameSession.Workspace workspace) {
+    if (reader.is(0, "new")) {
+      boolean xiangqi = reader.is(1, "xiangqi");
+      if (!xiangqi && !reader.is(1, "european")) return "error the game must be european or xiangqi";
+      if (reserved.incrementAndGet() > maxSessions) {
+        reserved.decrementAndGet();
+        return "error the server is full";
+      }
+      // the slot is given back on every way out but a game kept, whatever the text of the position throws
+      boolean kept = false;
+      try {
+        String fen = reader.tokenCount() > 2 ? reader.text(2, reader.tokenCount())
+          : xiangqi ? Fen.XIANGQI_START : Fen.EUROPEAN_START;
+        PositionSnapshot start = PositionSnapshot.of(Fen.read(fen));
+        if (start.isXiangqi() != xiangqi) return "error the position is not of the game";
+        long id = nextId.getAndIncrement();
+        sessions.put(id, new GameSession(id, start));
+        kept = true;
+        return "ok " + id;
+      } catch (IllegalArgumentException e) {
+        return "error " + e.getMessage();
+      } finally {
+        if (!kept) {
+          reserved.decrementAndGet();
+        }
+      }
+    }
+    if (reader.is(0, "move") || reader.is(0, "position") || reader.is(0, "close")) {
+      GameSession session = sessions.get(reader.number(1, -1));
+      if (session == null) return "error no such game";
+      if (reader.is(0, "position")) {
+        PositionSnapshot position = session.getPosition();
+        return "ok " + Fen.write(workspace.load(position), position.getSideToPlay());
+      }
+      if (reader.is(0, "close")) {
+        if (sessions.remove(session.getId()) != null) {
+          reserved.decrementAndGet();
+        }
+        return "ok";
+      }
+      return move(session, reader, workspace);
+    }
+    return "error unknown command";
+  }
+
+  /*
+   * Play the move of a "move <game> <move>" command
+   * @param session: the game
+   * @param reader: the reader holding the command
+   * @param workspace: the boards of the connection
+   */
+  private static String move(GameSession session, CommandReader reader, GameSession.Workspace workspace) {
+    int length = reader.tokenCount() > 2 ? reader.length(2) : 0;
+    if (length != 4 && length != 5) return "error illegal move";
+    // ranks count from 1 in european chess and from 0 in xiangqi, both from the side of NORTH
+    int numRows = session.isXiangqi() ? XiangqiMasks.ROWS : 8;
+    int firstRank = session.isXiangqi() ? '0' : '1';
+    int promotion = length == 5 ? PROMOTIONS.indexOf(reader.byteAt(2, 4) | 0x20) + 1 : 0;
+    int outcome = session.move(workspace,
+                               numRows - 1 - (reader.byteAt(2, 1) - firstRank), (reader.byteAt(2, 0) | 0x20) - 'a',
+                               numRows - 1 - (reader.byteAt(2, 3) - firstRank), (reader.byteAt(2, 2) | 0x20) - 'a',
+                               promotion);
+    if (outcome == GameSession.ILLEGAL) return "error illegal move";
+    int result = GameSession.resultOf(outcome);
+    return "ok " + GameSession.plyOf(outcome)
+      + (result == GameSession.CHECKMATE ? " checkmate" : result == GameSession.STALEMATE ? " stalemate" : "");
+  }
+
+  /** Main method to run a server until the process is ended */
+  public static void main(String[] args) throws IOException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+    int maxSessions = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+    GameServer server = new GameServer(port, maxSessions);
+    System.out.println("game server on port " + server.getPort());
+    server.serve();
+  }
+}
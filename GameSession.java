@@ -0,0 +1,135 @@
+/*
+ * One game hosted by the game server (see GameServer), european chess or xiangqi.
+ * Between moves the game is only a packed snapshot of its position (see PositionSnapshot) and a few counters, so
+ * an idle game takes the same small memory however long it runs and thousands of games fit in one server.
+ * A move puts the snapshot on a headless board of the thread playing it (see Workspace), matches the move against
+ * the moves the pieces generate, checks it is legal, plays it and packs the new position.  The boards and the move
+ * buffer are made once per connection and reused for every game it plays.  The moves of a game are made one at a
+ * time, so two connections may play the same game.
+ * @author: Nhien Phan
+ */
+public class GameSession {
+  // the results of a move
+  public static final int ILLEGAL = -1;
+  public static final int PLAYING = 0;
+  public static final int CHECKMATE = 1;
+  public static final int STALEMATE = 2;
+
+  /*
+   * The boards and the move buffer a thread plays the moves of its games on, one board for each game.
+   * A workspace must only be used by one thread at a time.
+   */
+  public static final class Workspace {
+    private final HeadlessChessBoard european = new BitboardChessBoard(new EuropeanChess());
+    private final HeadlessChessBoard xiangqi = new XiangqiBitboardChessBoard(new XiangqiChess());
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+    /*
+     * Put a position on the board of its game and return the board
+     * @param position: the position
+     */
+    HeadlessChessBoard load(PositionSnapshot position) {
+      HeadlessChessBoard board = position.isXiangqi() ? xiangqi : european;
+      position.copyTo(board);
+      return board;
+    }
+  }
+
+  // the number of the game
+  private final long id;
+  // the position of the game
+  private PositionSnapshot position;
+  // the number of moves played and the result of the game so far (PLAYING until it ends)
+  private int ply;
+  private int result = PLAYING;
+
+  /*
+   * Constructor
+   * @param id: the number of the game
+   * @param start: the starting position of the game
+   */
+  public GameSession(long id, PositionSnapshot start) {
+    this.id = id;
+    this.position = start;
+  }
+
+  /** Return the number of the game */
+  public long getId() {
+    return id;
+  }
+
+  /** Check if the game is a xiangqi game */
+  public boolean isXiangqi() {
+    return position.isXiangqi();
+  }
+
+  /** Return the position of the game */
+  public synchronized PositionSnapshot getPosition() {
+    return position;
+  }
+
+  /** Return the number of moves played */
+  public synchronized int getPly() {
+    return ply;
+  }
+
+  /** Return the result of the game so far (PLAYING, CHECKMATE or STALEMATE) */
+  public synchronized int getResult() {
+    return result;
+  }
+
+  /*
+   * Play a move of the side to play if it is legal
+   * return ILLEGAL if the move is not legal or the game is over, otherwise the number of moves played after it
+   * and the result of the game after it, packed together (see plyOf and resultOf) so another connection playing
+   * the same game cannot come between them
+   * @param workspace: the board and the move buffer of the thread playing the move
+   * @param fromRow: the row the piece moves from
+   * @param fromColumn: the column the piece moves from
+   * @param toRow: the row the piece moves to
+   * @param toColumn: the column the piece moves to
+   * @param promotion: the code of the piece a pawn promotes to (0 if the move is not a promotion)
+   */
+  public synchronized int move(Workspace workspace, int fromRow, int fromColumn, int toRow, int toColumn,
+                                int promotion) {
+    if (result != PLAYING) return ILLEGAL;
+    HeadlessChessBoard board = workspace.load(position);
+    ChessGame.Side side = position.getSideToPlay();
+    int[] moves = workspace.moves;
+    int count = MoveGenerator.generateMoves(board, side, moves);
+    int move = 0;
+    for (int i = 0; i < count && move == 0; i++) {
+      int candidate = moves[i];
+      boolean promotes = (PackedMove.flags(candidate) & PackedMove.PROMOTION) != 0;
+      if (PackedMove.fromRow(candidate) == fromRow && PackedMove.fromColumn(candidate) == fromColumn
+          && PackedMove.toRow(candidate) == toRow && PackedMove.toColumn(candidate) == toColumn
+          && (promotes ? PackedMove.promotion(candidate) : 0) == promotion) {
+        move = candidate;
+      }
+    }
+    if (move == 0) return ILLEGAL;
+    if (!MoveGenerator.isLegal(board, side, move)) return ILLEGAL;
+    // the move is taken back once the position is packed, so the undo stack of the board stays empty
+    board.makeMove(move);
+    ChessGame.Side opponent = ((Chess) board.getGameRules()).getProperSide();
+    if (!MoveGenerator.hasLegalMove(board, opponent, moves)) {
+      // a side without legal moves is mated, or stalemated, which loses in xiangqi
+      result = board.isInCheck(opponent) || isXiangqi() ? CHECKMATE : STALEMATE;
+    }
+    position = PositionSnapshot.of(board, opponent);
+    board.unmakeMove();
+    ply++;
+    return ply << 2 | result;
+  }
+
+  /** Return the number of moves played after a move, from what move returned for it */
+  public static int plyOf(int outcome) {
+    return outcome >>> 2;
+  }
+
+  /** Return the result of the game after a move (PLAYING, CHECKMATE or STALEMATE), from what move returned for it */
+  public static int resultOf(int outcome) {
+    return outcome & 3;
+  }
+
+}
@@ -60,6 +60,32 @@ public class GuardPiece extends ChessPiece {
     return possibleMoves;
   }
   
+  /*
+   * Write the packed moves of this guard into a buffer without allocating (see PackedMove)
+   * @param moves: the buffer to write the moves into
+   * @param count: the number of moves already in the buffer
+   */
+  @Override
+  public int generateMoves(int[] moves, int count) {
+    // check if this is the only piece between two xiangqi king
+    if (super.kingFacingKing()) {
+      return count;
+    }
+    int from = XiangqiMasks.square(this.getRow(), this.getColumn());
+    for (int rowStep = -1; rowStep <= 1; rowStep += 2) {
+      for (int columnStep = -1; columnStep <= 1; columnStep += 2) {
+        int toRow = this.getRow() + rowStep;
+        int toColumn = this.getColumn() + columnStep;
+        if (XiangqiMasks.contains(XiangqiMasks.GUARD_STEP_LOW[from], XiangqiMasks.GUARD_STEP_HIGH[from],
+                                  XiangqiMasks.square(toRow, toColumn))
+              && XiangqiMasks.inPalace(this.getSide(), toRow, toColumn)) {
+          count = addMove(moves, count, toRow, toColumn);
+        }
+      }
+    }
+    return count;
+  }
+  
   /*
    * Check if this move is a legal move (return true if it is legal (false if illegal)
    * @param toRow: the destination's row
@@ -67,13 +93,15 @@ public class GuardPiece extends ChessPiece {
    */
   @Override
   public boolean isLegalMove(int toRow, int toColumn) {
-    Cell targetSquare = new Cell(toRow, toColumn);
-    move(this.getChessBoard(), this.getRow(), this.getColumn());
-    for (Cell possibleMove : possibleMoves) {
-      if ((possibleMove.compareTo(targetSquare) == 0)
-            && (super.isLegalMove(toRow, toColumn))) return true;
-    }
-    return false;
+    int from = XiangqiMasks.square(this.getRow(), this.getColumn());
+    int to = XiangqiMasks.square(toRow, toColumn);
+    // the guard steps one square diagonally and stays inside its own palace
+    return from >= 0
+      && XiangqiMasks.contains(XiangqiMasks.GUARD_STEP_LOW[from], XiangqiMasks.GUARD_STEP_HIGH[from], to)
+      && XiangqiMasks.inPalace(this.getSide(), toRow, toColumn)
+      && (!getChessBoard().hasPiece(toRow, toColumn)
+            || getChessBoard().getPiece(toRow, toColumn).getSide() != this.getSide())
+      && !super.kingFacingKing();
   }
   
   /*
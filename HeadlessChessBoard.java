@@ -0,0 +1,522 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/*
+ * A parent class for chess boards that only keep the pieces in memory.
+ * There is no window and no GUI thread, so the rules can run on machines without AWT or JavaFX.
+ * Subclasses are told about every piece added or removed so they can keep their own representation of the position.
+ * @author: Nhien Phan
+ */
+public abstract class HeadlessChessBoard implements ChessBoard {
+  // the chess pieces of game
+  private final ChessPiece[][] pieces;
+  // the chess game to play
+  private ChessGame gameRules;
+  // the squares attacked by each side
+  private final AttackMap attackMap;
+  // the Zobrist hash of the pieces on the board
+  private long pieceHash;
+  // the Zobrist hash of the pawns and soldiers alone, which changes far less often than the whole position
+  private long pawnHash;
+  // the square (row * numColumns + column) of the king of each side, -1 if the side has no king
+  private final int[] kingSquare = new int[ChessGame.Side.values().length];
+  // the material value of the pieces of each side
+  private final int[] material = new int[ChessGame.Side.values().length];
+  // the midgame and endgame scores of the pieces of each side, material and squares (see PieceSquareTables)
+  private final int[] midgame = new int[ChessGame.Side.values().length];
+  private final int[] endgame = new int[ChessGame.Side.values().length];
+  // the phase of the pieces on the board, high with the heavy pieces on and falling towards the endgame
+  private int phase;
+  // the hidden sums of the network that scores the board, null to score it by the piece-square tables
+  private NnueAccumulator accumulator;
+  // the squares changed by addPiece and removePiece since clearChanges, one bit per square (see WireProtocol)
+  private final long[] changes = new long[2];
+  
+  // the undo stack of makeMove: the move, the piece moved, the piece captured and the first move status of the piece moved
+  private int[] undoMove = new int[256];
+  private ChessPiece[] undoMoved = new ChessPiece[256];
+  private ChessPiece[] undoCaptured = new ChessPiece[256];
+  private boolean[] undoFirstMove = new boolean[256];
+  // the number of moves on the undo stack
+  private int ply;
+  // promoted pieces taken back by unmakeMove, kept to be used again (indexed by side and piece code)
+  private final ArrayDeque<ChessPiece>[] spares;
+
+  /*
+   * Constructor
+   * @param gameRules: the rules of the game played on this board
+   * @param numRows: the number of rows of the board
+   * @param numColumns: the number of columns of the board
+   */
+  public HeadlessChessBoard(ChessGame gameRules, int numRows, int numColumns) {
+    this.gameRules = gameRules;
+    this.pieces = new ChessPiece[numRows][numColumns];
+    this.attackMap = new AttackMap(this);
+    Arrays.fill(kingSquare, -1);
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ArrayDeque<ChessPiece>[] spares = new ArrayDeque[ChessGame.Side.values().length * 16];
+    this.spares = spares;
+  }
+
+  /**
+   * Returns the rules of the game.
+   *
+   * @return the rules of the game
+   */
+  public ChessGame getGameRules() {
+    return gameRules;
+  }
+
+  /**
+   * Changes the rules of the game
+   *
+   * @param newRules the new rules for the game
+   */
+  public void setGameRules(ChessGame newRules) {
+    this.gameRules = newRules;
+  }
+
+  /**
+   * Returns the number of rows in the board.
+   *
+   * @return the number of rows
+   */
+  public final int numRows() {
+    return pieces.length;
+  }
+
+  /**
+   * Returns the number of columns in the board.
+   *
+   * @return the number of columns
+   */
+  public final int numColumns() {
+    return pieces[0].length;
+  }
+
+  /**
+   * Adds a piece to the board at the desired location.  Any piece currently
+   * at that location is lost.
+   *
+   * @param piece the piece to add
+   * @param row   the row for the piece
+   * @param col   the column for the piece
+   */
+  public void addPiece(final ChessPiece piece, final int row, final int col) {
+    // forget the piece that is lost
+    if (pieces[row][col] != null) {
+      forget(pieces[row][col], row, col);
+    }
+    pieces[row][col] = piece;
+    piece.setLocation(row, col);
+    pieceHash ^= Zobrist.pieceKey(piece, row, col);
+    if (Zobrist.isPawn(piece)) {
+      pawnHash ^= Zobrist.pieceKey(piece, row, col);
+    }
+    if (accumulator != null) {
+      accumulator.pieceAdded(piece, row, col);
+    }
+    if (isKing(piece)) {
+      kingSquare[sideIndex(piece.getSide())] = row * numColumns() + col;
+    }
+    pieceAdded(piece, row, col);
+    attackMap.squareChanged(row, col);
+    changes[(row * numColumns() + col) >>> 6] |= 1L << (row * numColumns() + col);
+  }
+
+  /**
+   * Removes a piece from the board
+   *
+   * @param row the row of the piece
+   * @param col the column of the piece
+   * @return the piece removed of null if there was no piece at that square
+   */
+  public ChessPiece removePiece(final int row, final int col) {
+    ChessPiece save = pieces[row][col];
+    if (save != null) {
+      pieces[row][col] = null;
+      forget(save, row, col);
+      attackMap.squareChanged(row, col);
+      changes[(row * numColumns() + col) >>> 6] |= 1L << (row * numColumns() + col);
+    }
+    return save;
+  }
+
+  /*
+   * Return the squares changed by addPiece and removePiece since the last clearChanges, 64 to a long
+   * A square is set even if a later change put back what was on it.
+   * @param index: 0 for the squares 0 to 63 (row * numColumns + column), 1 for the squares 64 to 127
+   */
+  public long getChanges(int index) {
+    return changes[index];
+  }
+
+  /** Forget the changed squares */
+  public void clearChanges() {
+    changes[0] = 0;
+    changes[1] = 0;
+  }
+
+  /*
+   * Take a piece that leaves the board out of the hash, the kings and the subclass
+   * @param piece: the piece leaving
+   * @param row: the row the piece was on
+   * @param col: the column the piece was on
+   */
+  private void forget(ChessPiece piece, int row, int col) {
+    pieceHash ^= Zobrist.pieceKey(piece, row, col);
+    if (Zobrist.isPawn(piece)) {
+      pawnHash ^= Zobrist.pieceKey(piece, row, col);
+    }
+    if (accumulator != null) {
+      accumulator.pieceRemoved(piece, row, col);
+    }
+    if (isKing(piece) && kingSquare[sideIndex(piece.getSide())] == row * numColumns() + col) {
+      kingSquare[sideIndex(piece.getSide())] = -1;
+    }
+    pieceRemoved(piece, row, col);
+  }
+  
+  /**
+   * Returns true if there is a piece at a specific location of the board.
+   *
+   * @param row the row to examine
+   * @param col the column to examine
+   * @return true if there is a piece a this row and column and false
+   * if the square is empty
+   */
+  public boolean hasPiece(int row, int col) {
+    return (pieces[row][col] != null);
+  }
+
+  /**
+   * Returns the chess piece at a specific location on the board.
+   *
+   * @param row the row for the piece
+   * @param col the column for the piece
+   * @return the piece at the row and column or null if there is no piece there.
+   */
+  public ChessPiece getPiece(int row, int col) {
+    return pieces[row][col];
+  }
+
+  /**
+   * Returns true if a particular square is threatened by an opposing piece.
+   *
+   * @param row    the row of the square
+   * @param column the column of the square
+   * @param piece  a piece of the game
+   * @return true if the square can be attacked by a piece of an opposing side as the parameter piece
+   */
+  public boolean squareThreatened(int row, int column, ChessPiece piece) {
+    return attackMap.isThreatened(row, column, piece.getSide());
+  }
+
+  /*
+   * Make a packed move (see PackedMove) and push what is needed to take it back on the undo stack.
+   * The piece objects are moved, not created again, and the side to play of the rules is changed.
+   * The move is not checked, it should come from MoveGenerator.
+   * @param move: the packed move
+   */
+  public void makeMove(int move) {
+    int fromRow = PackedMove.fromRow(move);
+    int fromColumn = PackedMove.fromColumn(move);
+    int toRow = PackedMove.toRow(move);
+    int toColumn = PackedMove.toColumn(move);
+    ChessPiece piece = pieces[fromRow][fromColumn];
+    
+    if (ply == undoMove.length) {
+      growUndoStack();
+    }
+    undoMove[ply] = move;
+    undoMoved[ply] = piece;
+    undoCaptured[ply] = pieces[toRow][toColumn];
+    undoFirstMove[ply] = piece.getFirstMoveStatus();
+    ply++;
+    
+    if (pieces[toRow][toColumn] != null) {
+      removePiece(toRow, toColumn);
+    }
+    removePiece(fromRow, fromColumn);
+    if ((PackedMove.flags(move) & PackedMove.PROMOTION) != 0) {
+      addPiece(takeSpare(piece.getSide(), PackedMove.promotion(move)), toRow, toColumn);
+    } else {
+      // the first move status is set while the piece is off the board, so the hash sees the change
+      piece.setFirstMoveStatus(false);
+      addPiece(piece, toRow, toColumn);
+    }
+    // the rook jumps over the king
+    if ((PackedMove.flags(move) & PackedMove.CASTLE) != 0) {
+      ChessPiece rook = removePiece(toRow, toColumn == 6 ? 7 : 0);
+      rook.setFirstMoveStatus(false);
+      addPiece(rook, toRow, toColumn == 6 ? 5 : 3);
+    }
+    if (gameRules instanceof Chess) {
+      ((Chess) gameRules).changeTurn();
+    }
+  }
+  
+  /** Take back the last move made by makeMove */
+  public void unmakeMove() {
+    ply--;
+    int move = undoMove[ply];
+    ChessPiece piece = undoMoved[ply];
+    ChessPiece captured = undoCaptured[ply];
+    int toRow = PackedMove.toRow(move);
+    int toColumn = PackedMove.toColumn(move);
+    undoMoved[ply] = null;
+    undoCaptured[ply] = null;
+    
+    if ((PackedMove.flags(move) & PackedMove.CASTLE) != 0) {
+      ChessPiece rook = removePiece(toRow, toColumn == 6 ? 5 : 3);
+      rook.setFirstMoveStatus(true);
+      addPiece(rook, toRow, toColumn == 6 ? 7 : 0);
+    }
+    ChessPiece moved = removePiece(toRow, toColumn);
+    if (moved != piece) {
+      spareFor(moved).push(moved);
+    }
+    piece.setFirstMoveStatus(undoFirstMove[ply]);
+    addPiece(piece, PackedMove.fromRow(move), PackedMove.fromColumn(move));
+    if (captured != null) {
+      addPiece(captured, toRow, toColumn);
+    }
+    if (gameRules instanceof Chess) {
+      ((Chess) gameRules).changeTurn();
+    }
+  }
+  
+  /** Return the number of moves made by makeMove that can be taken back */
+  public int getPly() {
+    return ply;
+  }
+  
+  /*
+   * Return a piece to promote a pawn to, using a spare piece if there is one
+   * @param side: the side of the piece
+   * @param code: the piece code of the type (see PackedMove)
+   */
+  private ChessPiece takeSpare(ChessGame.Side side, int code) {
+    ArrayDeque<ChessPiece> spare = spares[side.ordinal() * 16 + code];
+    if (spare != null && !spare.isEmpty()) {
+      return spare.pop();
+    }
+    ChessPiece promoted = EuropeanPieceType.values()[code - 1].newPiece(side, this);
+    promoted.setFirstMoveStatus(false);
+    return promoted;
+  }
+  
+  /*
+   * Return the spare pieces of the side and type of a piece
+   * @param piece: the piece
+   */
+  private ArrayDeque<ChessPiece> spareFor(ChessPiece piece) {
+    int index = piece.getSide().ordinal() * 16 + PackedMove.pieceCode(piece);
+    if (spares[index] == null) {
+      spares[index] = new ArrayDeque<>();
+    }
+    return spares[index];
+  }
+  
+  // double the size of the undo stack
+  private void growUndoStack() {
+    undoMove = Arrays.copyOf(undoMove, ply * 2);
+    undoMoved = Arrays.copyOf(undoMoved, ply * 2);
+    undoCaptured = Arrays.copyOf(undoCaptured, ply * 2);
+    undoFirstMove = Arrays.copyOf(undoFirstMove, ply * 2);
+  }
+  
+  /** Return the Zobrist hash of the position: the pieces and the side to move of the rules */
+  public long getHash() {
+    if (gameRules instanceof Chess) {
+      return pieceHash ^ ((Chess) gameRules).getTurnHash();
+    }
+    return pieceHash;
+  }
+  
+  /** Return the Zobrist hash of the pawns and soldiers on the board (see Zobrist.pawnHash) */
+  public long getPawnHash() {
+    return pawnHash;
+  }
+  
+  /*
+   * Return the square (row * numColumns + column) of the king of a side, -1 if the side has no king
+   * @param side: the side of the king
+   */
+  public int getKingSquare(ChessGame.Side side) {
+    return kingSquare[sideIndex(side)];
+  }
+  
+  /*
+   * Check if the king of a side is attacked (a side without a king is always in check)
+   * @param side: the side of the king
+   */
+  public boolean isInCheck(ChessGame.Side side) {
+    int square = kingSquare[sideIndex(side)];
+    ChessGame.Side other = side == ChessGame.Side.NORTH ? ChessGame.Side.SOUTH : ChessGame.Side.NORTH;
+    return square < 0 || isAttackedBy(square / numColumns(), square % numColumns(), other);
+  }
+  
+  /*
+   * Check if a square is attacked by a piece of a side.  The subclasses look outward from the square
+   * for the pieces that could reach it, which is cheaper than bringing the attack map up to date after every move.
+   * @param row: the row of the square
+   * @param col: the column of the square
+   * @param side: the attacking side
+   */
+  public abstract boolean isAttackedBy(int row, int col, ChessGame.Side side);
+  
+  /*
+   * Return the material value of the pieces of a side (see EuropeanPieceType and XiangQiPieceType)
+   * @param side: the side of the pieces
+   */
+  public int getMaterial(ChessGame.Side side) {
+    return material[sideIndex(side)];
+  }
+  
+  /*
+   * Add to the material value of a side, called by the subclasses when a piece is added or removed
+   * @param side: the side of the piece
+   * @param value: the value to add (negative for a piece removed)
+   */
+  protected void addMaterial(ChessGame.Side side, int value) {
+    material[sideIndex(side)] += value;
+  }
+  
+  /*
+   * Return the midgame score of the pieces of a side, material and squares
+   * @param side: the side of the pieces
+   */
+  public int getMidgameScore(ChessGame.Side side) {
+    return midgame[sideIndex(side)];
+  }
+  
+  /*
+   * Return the endgame score of the pieces of a side, material and squares
+   * @param side: the side of the pieces
+   */
+  public int getEndgameScore(ChessGame.Side side) {
+    return endgame[sideIndex(side)];
+  }
+  
+  /** Return the phase of the pieces on the board (getMaxPhase for a full set, more after a promotion) */
+  public int getPhase() {
+    return phase;
+  }
+  
+  /** Return the phase of the full set of pieces of the game */
+  public abstract int getMaxPhase();
+  
+  /*
+   * Score the board with a network from now on, its hidden sums kept up to date as pieces are added and removed
+   * @param network: the network, for a board of this size (null to score by the piece-square tables again)
+   */
+  public void setNetwork(NnueNetwork network) {
+    if (network == null) {
+      accumulator = null;
+      return;
+    }
+    NnueAccumulator sums = new NnueAccumulator(network);
+    sums.refresh(this);
+    accumulator = sums;
+  }
+  
+  /** Return the hidden sums of the network that scores the board (null if there is none) */
+  public NnueAccumulator getAccumulator() {
+    return accumulator;
+  }
+  
+  /*
+   * Return the score of the board for a side.  With a network it is the output of the network; without one it is
+   * the midgame and endgame scores of the side less those of the other side, blended by the phase.  Both are
+   * kept up to date as pieces are added and removed, so this does not look at the pieces.
+   * @param side: the side to score for
+   */
+  public int evaluate(ChessGame.Side side) {
+    if (accumulator != null) {
+      return accumulator.evaluate(side);
+    }
+    int us = sideIndex(side);
+    int them = 1 - us;
+    return PieceSquareTables.taper(midgame[us] - midgame[them], endgame[us] - endgame[them], phase, getMaxPhase());
+  }
+  
+  /*
+   * Add to the scores of a side, called by the subclasses when a piece is added or removed
+   * @param side: the side of the piece
+   * @param midgameValue: the midgame value to add (negative for a piece removed)
+   * @param endgameValue: the endgame value to add (negative for a piece removed)
+   * @param phaseValue: the phase to add (negative for a piece removed)
+   */
+  protected void addPieceSquare(ChessGame.Side side, int midgameValue, int endgameValue, int phaseValue) {
+    midgame[sideIndex(side)] += midgameValue;
+    endgame[sideIndex(side)] += endgameValue;
+    phase += phaseValue;
+  }
+  
+  /*
+   * Copy the pieces of a board onto a new headless board with its own rules, so a position shown in a window
+   * can be searched without touching the window.  Pieces that belong to neither game are not copied.
+   * @param board: the board to copy
+   * @param sideToPlay: the side to play in the copy
+   */
+  public static HeadlessChessBoard copyOf(ChessBoard board, ChessGame.Side sideToPlay) {
+    boolean xiangqi = board.getGameRules() instanceof XiangqiChess || board.numRows() == XiangqiMasks.ROWS;
+    Chess rules = xiangqi ? new XiangqiChess() : new EuropeanChess();
+    rules.setProperSide(sideToPlay);
+    HeadlessChessBoard copy = xiangqi ? new XiangqiBitboardChessBoard(rules) : new BitboardChessBoard(rules);
+    for (int i = 0; i < board.numRows(); i++) {
+      for (int j = 0; j < board.numColumns(); j++) {
+        ChessPiece piece = board.getPiece(i, j);
+        ChessPiece pieceCopy = null;
+        if (xiangqi && XiangQiPieceType.of(piece) != null) {
+          pieceCopy = XiangQiPieceType.of(piece).newPiece(piece.getSide(), copy);
+        } else if (!xiangqi && EuropeanPieceType.of(piece) != null) {
+          pieceCopy = EuropeanPieceType.of(piece).newPiece(piece.getSide(), copy);
+        }
+        if (pieceCopy != null) {
+          pieceCopy.setFirstMoveStatus(piece.getFirstMoveStatus());
+          copy.addPiece(pieceCopy, i, j);
+        }
+      }
+    }
+    return copy;
+  }
+  
+  /** Return the squares attacked by each side */
+  public AttackMap getAttackMap() {
+    return attackMap;
+  }
+
+  /*
+   * Check if a piece is the king of either game
+   * @param piece: the piece to check
+   */
+  private static boolean isKing(ChessPiece piece) {
+    return piece instanceof KingPiece || piece instanceof XiangqiKingPiece;
+  }
+
+  /*
+   * Return the index used for a side in the arrays of the board
+   * @param side: the side of a piece
+   */
+  protected static int sideIndex(ChessGame.Side side) {
+    return side.ordinal();
+  }
+
+  /*
+   * Update the representation of the subclass after a piece is put on the board
+   * @param piece: the piece added
+   * @param row: the row of the piece
+   * @param col: the column of the piece
+   */
+  protected abstract void pieceAdded(ChessPiece piece, int row, int col);
+
+  /*
+   * Update the representation of the subclass after a piece is taken off the board
+   * @param piece: the piece removed
+   * @param row: the row the piece was on
+   * @param col: the column the piece was on
+   */
+  protected abstract void pieceRemoved(ChessPiece piece, int row, int col);
+}
@@ -66,6 +66,28 @@ public class HorsePiece extends KnightPiece {
     }
   }
   
+  /*
+   * Write the packed moves of this horse into a buffer without allocating (see PackedMove)
+   * @param moves: the buffer to write the moves into
+   * @param count: the number of moves already in the buffer
+   */
+  @Override
+  public int generateMoves(int[] moves, int count) {
+    // check if this is the only piece between two xiangqi king
+    if (super.kingFacingKing()) {
+      return count;
+    }
+    int from = XiangqiMasks.square(this.getRow(), this.getColumn());
+    for (int i = 0; i < 8; i++) {
+      int to = XiangqiMasks.HORSE_TARGET[from][i];
+      // the leg next to the horse must be empty
+      if (to >= 0 && XiangqiMasks.isEmpty(getChessBoard(), XiangqiMasks.HORSE_LEG[from][i])) {
+        count = addMove(moves, count, to / XiangqiMasks.COLUMNS, to % XiangqiMasks.COLUMNS);
+      }
+    }
+    return count;
+  }
+  
   /*
    * Check if this move is a legal move (return true if it is legal (false if illegal)
    * @param toRow: the destination's row
@@ -73,14 +95,15 @@ public class HorsePiece extends KnightPiece {
    */
   @Override
   public boolean isLegalMove(int toRow, int toColumn) {
-    Cell targetSquare = new Cell(toRow, toColumn);
-    move(this.getChessBoard(), this.getRow(), this.getColumn());
-    for (Cell possibleMove : possibleMoves) {
-      if (possibleMove.compareTo(targetSquare) == 0
-            && isClearPath(toRow, toColumn)
-            && super.isLegalMove(toRow, toColumn)) return true;
-    }
-    return false;
+    int from = XiangqiMasks.square(this.getRow(), this.getColumn());
+    int to = XiangqiMasks.square(toRow, toColumn);
+    // the horse jumps like a knight unless the leg next to it is blocked
+    return from >= 0
+      && XiangqiMasks.contains(XiangqiMasks.HORSE_STEP_LOW[from], XiangqiMasks.HORSE_STEP_HIGH[from], to)
+      && XiangqiMasks.isEmpty(getChessBoard(), XiangqiMasks.horseLeg(from, to))
+      && (!getChessBoard().hasPiece(toRow, toColumn)
+            || getChessBoard().getPiece(toRow, toColumn).getSide() != this.getSide())
+      && !super.kingFacingKing();
   }
   
   /*
@@ -29,6 +29,10 @@ public class JavaFXChessBoard extends Application implements ChessBoard {
   private ChessPiece[][] pieces;
   // the buttons on board
   private Button[][] squares;
+  // the squares attacked by each side
+  private AttackMap attackMap;
+  // the moves of the pieces in the current position
+  private LegalMoveCache legalMoves;
   
   /**
    * The method to launch the program.
@@ -76,6 +80,9 @@ public class JavaFXChessBoard extends Application implements ChessBoard {
     pieces = new ChessPiece[numRows][numColumns];
     // array of buttons
     squares = new Button[numRows][numColumns];
+    // the attacks are kept up to date as pieces are added and removed
+    attackMap = new AttackMap(this);
+    legalMoves = new LegalMoveCache(this);
     // how button react when click
     ButtonAction responder = new ButtonAction();
     // creat each button, put it in the array, and put it on the grid pane
@@ -143,6 +150,8 @@ public class JavaFXChessBoard extends Application implements ChessBoard {
     // set the piece on the board, tell the piece where it is, and then use the display rules to display the square
     pieces[row][col] = piece;
     piece.setLocation(row, col);
+    attackMap.squareChanged(row, col);
+    legalMoves.positionChanged();
     display.displayFilledSquare(squares[row][col], row, col, piece);
   }
   
@@ -157,6 +166,8 @@ public class JavaFXChessBoard extends Application implements ChessBoard {
     // remove the piece from the board, use the display rules to show an empty square,
     ChessPiece save = pieces[row][col];
     pieces[row][col] = null;
+    attackMap.squareChanged(row, col);
+    legalMoves.positionChanged();
     display.displayEmptySquare(squares[row][col], row, col);
     return save;
   }
@@ -193,14 +204,7 @@ public class JavaFXChessBoard extends Application implements ChessBoard {
    * @return true if the square can be attacked by a piece of an opposing side as the parameter piece
    */
   public boolean squareThreatened(int row, int column, ChessPiece piece) {
-    for (int i = 0; i < squares.length; i++) {
-      for (int j = 0; j < squares[i].length; j++) {
-        if (hasPiece(i, j) && getPiece(i, j).getSide() != piece.getSide() &&
-            getPiece(i, j).isLegalMove(row, column))
-          return true;
-      }
-    }
-    return false;
+    return attackMap.isThreatened(row, column, piece.getSide());
   }
   
   /*
@@ -229,38 +233,46 @@ public class JavaFXChessBoard extends Application implements ChessBoard {
         }
       }
       
-      // if there is no piece at on the cell that is first-clicked
-      if (firstPick && (!hasPiece(row, col) || !getGameRules().legalPieceToPlay(getPiece(row, col), row, col))) {}
+      // if there is no piece that can move on the cell that is first-clicked
+      if (firstPick && (!hasPiece(row, col) || !getGameRules().legalPieceToPlay(getPiece(row, col), row, col)
+                          || !legalMoves.hasMoves(row, col))) {}
       // if there is piece at on the cell that is first-clicked
       else if (firstPick && hasPiece(row, col)) {
         firstPick = false;
         // get piece location
         pieceRow = row;
         pieceCol = col;
-        // highlight the cell the piece is on
+        // highlight the cell the piece is on and the cells it can move to
         display.highlightSquare(true, squares[row][col], col, row, pieces[row][col]);
+        highlightDestinations(true);
       }
       // if this the second click
       else if (hasPiece(row, col)
                  // if the piece belongs to the side whose turn to play is legitimate
                    && getGameRules().legalPieceToPlay(getPiece(row, col), row, col)
                  // if the player can change piece selection
-                   && getGameRules().canChangeSelection(getPiece(row, col), row, col)) {
+                   && getGameRules().canChangeSelection(getPiece(row, col), row, col)
+                 // if the new piece can move
+                   && legalMoves.hasMoves(row, col)) {
         // process pick another piece
         // check if choose the square same as first pick
         if (row == pieceRow && col == pieceCol)
           return;
         
-        // unhighlight the cell of the old piece
+        // unhighlight the cell of the old piece and its destinations
         display.highlightSquare(false, squares[pieceRow][pieceCol], pieceCol, pieceRow, pieces[pieceRow][pieceCol]);
+        highlightDestinations(false);
         // hightlight the square of the new piece
         display.highlightSquare(true, squares[row][col], col, row, pieces[row][col]);
         // get piece location
         pieceRow = row;
         pieceCol = col;
-      } else {
-        // process move
-        boolean isMoved = getGameRules().makeMove(getPiece(pieceRow, pieceCol), row, col);
+        highlightDestinations(true);
+      } else if (legalMoves.isLegal(pieceRow, pieceCol, row, col)) {
+        // unhighlight the destinations while they still belong to this position
+        highlightDestinations(false);
+        // process move, the cache already checked it so it is made without asking the piece again
+        boolean isMoved = getGameRules().makeLegalMove(getPiece(pieceRow, pieceCol), row, col);
         
         // if a legitimate move was made
         if (isMoved && (row >= 3 && row <= 5) && ((col <= 2) || (col >= 7))) {
@@ -275,6 +287,20 @@ public class JavaFXChessBoard extends Application implements ChessBoard {
         }
       }
     }
+    
+    /*
+     * Highlight the cells the selected piece can move to, or unhighlight them
+     * @param highlight: true to highlight the cells, false to unhighlight them
+     */
+    private void highlightDestinations(boolean highlight) {
+      for (int i = 0; i < squares.length; i++) {
+        for (int j = 0; j < squares[i].length; j++) {
+          if (legalMoves.isLegal(pieceRow, pieceCol, i, j)) {
+            display.highlightSquare(highlight, squares[i][j], j, i, pieces[i][j]);
+          }
+        }
+      }
+    }
   }
   
 }
@@ -0,0 +1,170 @@
+import java.nio.ByteBuffer;
+
+/*
+ * Writes JSON text straight into a byte buffer without allocating, for answers written many times a second
+ * (see MoveValidationServer).  Names and String values are written as they are, so they must be ASCII text that
+ * needs no escapes, such as names and FEN texts; bytes copied from a request are escaped.
+ * @author: Nhien Phan
+ */
+public final class JsonWriter {
+  // the hexadecimal digits of the escapes of control characters
+  private static final String HEX = "0123456789abcdef";
+  // the buffer written into
+  private ByteBuffer out;
+  // true when the next member of the object being written is its first one
+  private boolean first;
+
+  /*
+   * Start writing into a buffer at its position
+   * @param out: the buffer
+   */
+  public JsonWriter reset(ByteBuffer out) {
+    this.out = out;
+    this.first = true;
+    return this;
+  }
+
+  /** Start an object */
+  public JsonWriter beginObject() {
+    out.put((byte) '{');
+    first = true;
+    return this;
+  }
+
+  /** End the object */
+  public JsonWriter endObject() {
+    out.put((byte) '}');
+    first = false;
+    return this;
+  }
+
+  /*
+   * Write the name of the next member of the object
+   * @param name: the name
+   */
+  public JsonWriter name(String name) {
+    if (!first) {
+      out.put((byte) ',');
+    }
+    first = false;
+    out.put((byte) '"');
+    ascii(name);
+    out.put((byte) '"').put((byte) ':');
+    return this;
+  }
+
+  /*
+   * Write a boolean value
+   * @param value: the value
+   */
+  public JsonWriter value(boolean value) {
+    ascii(value ? "true" : "false");
+    return this;
+  }
+
+  /*
+   * Write a number value
+   * @param value: the value
+   */
+  public JsonWriter value(long value) {
+    number(out, value);
+    return this;
+  }
+
+  /*
+   * Write a string value
+   * @param value: the value
+   */
+  public JsonWriter value(String value) {
+    out.put((byte) '"');
+    ascii(value);
+    out.put((byte) '"');
+    return this;
+  }
+
+  /*
+   * Write a string value from bytes of another buffer, escaping quotes, backslashes and control characters
+   * @param source: the buffer holding the bytes
+   * @param start: the index of the first byte
+   * @param end: the index after the last byte
+   */
+  public JsonWriter value(ByteBuffer source, int start, int end) {
+    out.put((byte) '"');
+    for (int i = start; i < end; i++) {
+      int letter = source.get(i) & 0xFF;
+      if (letter == '"' || letter == '\\') {
+        out.put((byte) '\\').put((byte) letter);
+      } else if (letter < ' ' || letter >= 0x7F) {
+        // a backslash, a u and four hexadecimal digits, bytes past ASCII are taken as Latin-1 characters
+        out.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0')
+          .put((byte) HEX.charAt(letter >>> 4)).put((byte) HEX.charAt(letter & 15));
+      } else {
+        out.put((byte) letter);
+      }
+    }
+    out.put((byte) '"');
+    return this;
+  }
+
+  /*
+   * Write the FEN text of a board as a string value (see Fen.write)
+   * @param board: the board
+   * @param sideToPlay: the side to play
+   */
+  public JsonWriter fen(ChessBoard board, ChessGame.Side sideToPlay) {
+    out.put((byte) '"');
+    Fen.write(board, sideToPlay, out);
+    out.put((byte) '"');
+    return this;
+  }
+
+  /** Start a string value whose characters are written one at a time with character */
+  public JsonWriter beginString() {
+    out.put((byte) '"');
+    return this;
+  }
+
+  /*
+   * Write a character of a string started with beginString
+   * @param letter: the character
+   */
+  public JsonWriter character(char letter) {
+    out.put((byte) letter);
+    return this;
+  }
+
+  /** End a string started with beginString */
+  public JsonWriter endString() {
+    out.put((byte) '"');
+    return this;
+  }
+
+  /*
+   * Write the characters of an ASCII text
+   * @param text: the text
+   */
+  private void ascii(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      out.put((byte) text.charAt(i));
+    }
+  }
+
+  /*
+   * Write a number in decimal digits into a buffer without allocating
+   * @param out: the buffer
+   * @param value: the number
+   */
+  static void number(ByteBuffer out, long value) {
+    if (value < 0) {
+      out.put((byte) '-');
+      value = -value;
+    }
+    long divisor = 1;
+    while (value / divisor >= 10) {
+      divisor *= 10;
+    }
+    for (; divisor > 0; divisor /= 10) {
+      out.put((byte) ('0' + value / divisor % 10));
+    }
+  }
+}
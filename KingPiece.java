@@ -10,8 +10,6 @@ import java.util.List;
 public class KingPiece extends ChessPiece {
   // possibleMoves stores all possible move for the piece
   private final ArrayList<Cell> possibleMoves = new ArrayList<>();
-  // dummy piece use to check if a square is threatened
-  private final ChessPiece dummy = new ChessPiece(this.getSide(), "Dummy", this.getChessBoard());
   // firstMove check if this is the first move of the piece
   private boolean firstMove = true;
   
@@ -42,41 +40,9 @@ public class KingPiece extends ChessPiece {
    * @param toCol: the column to move to
    */
   public boolean processRightCastleMoveLegal(int toRow, int toCol) {
-    // check if the king is checked
-    if (this.getChessBoard().squareThreatened(toRow, this.getColumn(), this))
-      return false;
-    // check if there are anything between king and rook
-    if ((!super.getChessBoard().hasPiece(toRow, toCol))
-          && (!super.getChessBoard().hasPiece(toRow, toCol - 1))
-          && (super.getChessBoard().hasPiece(toRow, toCol + 1))
-          && (super.getChessBoard().getPiece(toRow, toCol + 1) instanceof RookPiece)
-          && (super.getChessBoard().getPiece(toRow, toCol + 1).getFirstMoveStatus())) {
-      
-      // check if king moved square to the right is threatened
-      this.getChessBoard().addPiece(dummy, toRow, toCol);
-      if (this.getChessBoard().squareThreatened(toRow, toCol, dummy))
-        return false;
-      this.getChessBoard().removePiece(toRow, toCol);
-      
-      // check if rook moved square to the right is threatened
-      this.getChessBoard().addPiece(dummy, toRow, toCol - 1);
-      if (this.getChessBoard().squareThreatened(toRow, toCol - 1, dummy))
-        return false;
-      this.getChessBoard().removePiece(toRow, toCol - 1);
-      
-      // process moveDone for King
-      this.getChessBoard().addPiece(new KingPiece(this.getSide(), EuropeanPieceType.K.name, this.getChessBoard()), toRow, toCol);
-      ((KingPiece) this.getChessBoard().getPiece(toRow, toCol)).setFirstMoveStatus(false);
-      this.getChessBoard().removePiece(toRow, toCol - 2);
-      
-      // process moveDone for Rook
-      getChessBoard().addPiece(new RookPiece(getSide(), EuropeanPieceType.R.name, getChessBoard()), toRow, toCol - 1);
-      ((RookPiece) getChessBoard().getPiece(toRow, toCol + 1)).setFirstMoveStatus(false);
-      getChessBoard().removePiece(toRow, toCol + 1);
-      
-      return true;
-    }
-    return false;
+    if (!canCastle(true)) return false;
+    castle(toRow, toCol);
+    return true;
   }
   
   /*
@@ -85,48 +51,31 @@ public class KingPiece extends ChessPiece {
    * @param toCol: the column to move to
    */
   public boolean processLeftCastleMoveLegal(int toRow, int toCol) {
-    // check if the king is checked
-    if (this.getChessBoard().squareThreatened(toRow, this.getColumn(), this))
-      return false;
-    // check if there are anything between king and rook
-    if ((!super.getChessBoard().hasPiece(toRow, toCol - 1))
-          && (!super.getChessBoard().hasPiece(toRow, toCol))
-          && (!super.getChessBoard().hasPiece(toRow, toCol + 1))
-          && (super.getChessBoard().hasPiece(toRow, toCol - 2))
-          && (super.getChessBoard().getPiece(toRow, toCol - 2) instanceof RookPiece)
-          && (super.getChessBoard().getPiece(toRow, toCol - 2).getFirstMoveStatus())) {
-      
-      // check if first square to the left is threatened
-      this.getChessBoard().addPiece(dummy, toRow, toCol - 1);
-      if (this.getChessBoard().squareThreatened(toRow, toCol - 1, dummy))
-        return false;
-      this.getChessBoard().removePiece(toRow, toCol - 1);
-      
-      // check if second square to the left is threatened
-      this.getChessBoard().addPiece(dummy, toRow, toCol);
-      if (this.getChessBoard().squareThreatened(toRow, toCol, dummy))
-        return false;
-      this.getChessBoard().removePiece(toRow, toCol);
-      
-      // check if third square to the left is threatened
-      this.getChessBoard().addPiece(dummy, toRow, toCol + 1);
-      if (this.getChessBoard().squareThreatened(toRow, toCol + 1, dummy))
-        return false;
-      this.getChessBoard().removePiece(toRow, toCol + 1);
-      
-      // process moveDone for King
-      this.getChessBoard().addPiece(new KingPiece(this.getSide(), EuropeanPieceType.K.name, this.getChessBoard()), toRow, toCol);
-      ((KingPiece) this.getChessBoard().getPiece(toRow, toCol)).setFirstMoveStatus(false);
-      this.getChessBoard().removePiece(toRow, toCol + 2);
-      
-      // process moveDone for Rook
-      getChessBoard().addPiece(new RookPiece(getSide(), EuropeanPieceType.R.name, getChessBoard()), toRow, toCol + 1);
-      ((RookPiece) getChessBoard().getPiece(toRow, toCol + 1)).setFirstMoveStatus(false);
-      getChessBoard().removePiece(toRow, toCol - 2);
-      
-      return true;
-    }
-    return false;
+    if (!canCastle(false)) return false;
+    castle(toRow, toCol);
+    return true;
+  }
+  
+  /*
+   * Move the king and the rook of a castle move found legal before, without checking it again
+   * @param toRow: the row the king moves to
+   * @param toCol: the column the king moves to, two cells from its own
+   */
+  public void castle(int toRow, int toCol) {
+    ChessBoard board = this.getChessBoard();
+    boolean right = toCol > this.getColumn();
+    int rookColumn = right ? toCol + 1 : toCol - 2;
+    int rookToColumn = right ? toCol - 1 : toCol + 1;
+    // process moveDone for King
+    KingPiece king = new KingPiece(this.getSide(), EuropeanPieceType.K.name, board);
+    king.setFirstMoveStatus(false);
+    board.addPiece(king, toRow, toCol);
+    board.removePiece(toRow, this.getColumn());
+    // process moveDone for Rook
+    RookPiece rook = new RookPiece(this.getSide(), EuropeanPieceType.R.name, board);
+    rook.setFirstMoveStatus(false);
+    board.addPiece(rook, toRow, rookToColumn);
+    board.removePiece(toRow, rookColumn);
   }
   
   /*
@@ -218,19 +167,100 @@ public class KingPiece extends ChessPiece {
     return possibleMoves;
   }
   
+  /*
+   * Write the packed moves of this king (castle moves are written by generateCastleMoves) into a buffer without allocating (see PackedMove)
+   * @param moves: the buffer to write the moves into
+   * @param count: the number of moves already in the buffer
+   */
+  public int generateMoves(int[] moves, int count) {
+    for (int rowStep = -1; rowStep <= 1; rowStep++) {
+      for (int columnStep = -1; columnStep <= 1; columnStep++) {
+        int toRow = this.getRow() + rowStep;
+        int toColumn = this.getColumn() + columnStep;
+        if ((rowStep != 0 || columnStep != 0) && onBoard(toRow, toColumn)) {
+          count = addMove(moves, count, toRow, toColumn);
+        }
+      }
+    }
+    return count;
+  }
+  
+  /*
+   * Write the castle moves of the king into a buffer without allocating (see canCastle).
+   * @param moves: the buffer to write the moves into
+   * @param count: the number of moves already in the buffer
+   */
+  public int generateCastleMoves(int[] moves, int count) {
+    int homeRow = this.getSide() == ChessGame.Side.NORTH ? 7 : 0;
+    if (canCastle(true)) {
+      moves[count++] = PackedMove.encode(homeRow, 4, homeRow, 6, PackedMove.CASTLE, 0, 0);
+    }
+    if (canCastle(false)) {
+      moves[count++] = PackedMove.encode(homeRow, 4, homeRow, 2, PackedMove.CASTLE, 0, 0);
+    }
+    return count;
+  }
+  
+  /*
+   * Check if the king can castle to one side, the rule shared by the moves of the rules and generateCastleMoves.
+   * The king and the rook must not have moved, the cells between them must be empty, and the king must not be in
+   * check, pass a threatened cell or land on one.  On the left the cell next to the rook must be empty but the king
+   * does not pass it, so it may be threatened.
+   * @param right: true for the castle to the right (with the rook of column 7)
+   */
+  private boolean canCastle(boolean right) {
+    int homeRow = this.getSide() == ChessGame.Side.NORTH ? 7 : 0;
+    ChessBoard board = this.getChessBoard();
+    if (!this.firstMove || this.getRow() != homeRow || this.getColumn() != 4) {
+      return false;
+    }
+    // look at the empty cells and the rook before asking the board about threats
+    int toCol = right ? 6 : 2;
+    int passCol = right ? 5 : 3;
+    if (board.hasPiece(homeRow, toCol) || board.hasPiece(homeRow, passCol)
+        || (!right && board.hasPiece(homeRow, 1)) || !isCastleRook(homeRow, right ? 7 : 0)) {
+      return false;
+    }
+    return !isThreatened(board, homeRow, 4) && !isThreatened(board, homeRow, passCol)
+      && !isThreatened(board, homeRow, toCol);
+  }
+  
+  /*
+   * Check if a cell is attacked by the other side.  A headless board looks outward from the cell for the pieces
+   * that reach it, so a search that generates the castle moves at every node never brings the attack map up to date.
+   * @param board: the board of the king
+   * @param row: the row of the cell
+   * @param column: the column of the cell
+   */
+  private boolean isThreatened(ChessBoard board, int row, int column) {
+    if (board instanceof HeadlessChessBoard) {
+      ChessGame.Side other = this.getSide() == ChessGame.Side.NORTH ? ChessGame.Side.SOUTH : ChessGame.Side.NORTH;
+      return ((HeadlessChessBoard) board).isAttackedBy(row, column, other);
+    }
+    return board.squareThreatened(row, column, this);
+  }
+  
+  /*
+   * Check if there is a rook of the same side that has not moved at a cell
+   * @param row: the row of the cell
+   * @param column: the column of the cell
+   */
+  private boolean isCastleRook(int row, int column) {
+    ChessPiece rook = this.getChessBoard().getPiece(row, column);
+    return rook instanceof RookPiece && rook.getSide() == this.getSide() && rook.getFirstMoveStatus();
+  }
+  
   /*
    * Check if this move is a legal move (return true if it is legal (false if illegal)
    * @param row: the destination's row
    * @param column: the destination's column
    */
   public boolean isLegalMove(int toRow, int toColumn) {
-    Cell targetSquare = new Cell(toRow, toColumn);
-    move(this.getChessBoard(), this.getRow(), this.getColumn());
-    for (Cell possibleMove : possibleMoves) {
-      if ((possibleMove.compareTo(targetSquare) == 0) && (super.isLegalMove(toRow, toColumn))) return true;
-    }
-    return false;
+    // the king moves to one of the eight cells around it
+    return Math.max(Math.abs(toRow - this.getRow()), Math.abs(toColumn - this.getColumn())) == 1
+      && canLandOn(toRow, toColumn);
   }
+
   
   /*
    * Check if this move is a legal non-capture move (return true if it is legal (false if illegal)
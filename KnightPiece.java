@@ -8,6 +8,9 @@ import java.util.List;
  */
 
 public class KnightPiece extends ChessPiece {
+  // the row and column changes of the eight knight jumps
+  private static final int[] JUMP_ROW = {1, 1, 2, 2, -1, -1, -2, -2};
+  private static final int[] JUMP_COLUMN = {-2, 2, -1, 1, -2, 2, -1, 1};
   // possibleMoves stores all possible move for the piece
   private final ArrayList<Cell> possibleMoves = new ArrayList<>();
   
@@ -52,20 +55,35 @@ public class KnightPiece extends ChessPiece {
     return possibleMoves;
   }
   
+  /*
+   * Write the packed moves of this knight into a buffer without allocating (see PackedMove)
+   * @param moves: the buffer to write the moves into
+   * @param count: the number of moves already in the buffer
+   */
+  public int generateMoves(int[] moves, int count) {
+    for (int i = 0; i < JUMP_ROW.length; i++) {
+      int toRow = this.getRow() + JUMP_ROW[i];
+      int toColumn = this.getColumn() + JUMP_COLUMN[i];
+      if (onBoard(toRow, toColumn)) {
+        count = addMove(moves, count, toRow, toColumn);
+      }
+    }
+    return count;
+  }
+  
   /*
    * Check if this move is a legal move (return true if it is legal (false if illegal)
    * @param toRow: the destination's row
    * @param toColumn: the destination's column
    */
   public boolean isLegalMove(int toRow, int toColumn) {
-    Cell targetSquare = new Cell(toRow, toColumn);
-    move(this.getChessBoard(), this.getRow(), this.getColumn());
-    for (Cell possibleMove : possibleMoves) {
-      if ((possibleMove.compareTo(targetSquare) == 0)
-            && (super.isLegalMove(toRow, toColumn))) return true;
-    }
-    return false;
+    int rowDistance = Math.abs(toRow - this.getRow());
+    int columnDistance = Math.abs(toColumn - this.getColumn());
+    // the knight jumps two cells one way and one cell the other way
+    return ((rowDistance == 1 && columnDistance == 2) || (rowDistance == 2 && columnDistance == 1))
+      && canLandOn(toRow, toColumn);
   }
+
   
   /*
    * Check if this move is a legal non-capture move (return true if it is legal (false if illegal)
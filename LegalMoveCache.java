@@ -0,0 +1,103 @@
+/*
+ * The legal moves of the pieces of a window board, computed once per position.
+ * The board calls positionChanged after every addPiece and removePiece, which moves the version of the position on.
+ * The first question about a side in a new version generates the moves of all its pieces in one pass and keeps the
+ * destinations of each piece, so checking a click or highlighting the destinations of a piece are array lookups
+ * instead of the move rules of the piece running again, and the attack checks of a king with them.  The moves are
+ * generated on a headless copy of the position and made there, so a move that leaves its own king in check is
+ * never a destination, and the board may play a cached click without asking the rules again.
+ * @author: Nhien Phan
+ */
+public class LegalMoveCache {
+  // the board the pieces are on
+  private final ChessBoard board;
+  // the number of columns of the board
+  private final int numColumns;
+  // the destinations of the piece on each square, as a bit set of two longs (enough for 90 squares)
+  private final long[][] destinations;
+  // buffer for the moves of one side
+  private final int[] moveBuffer = new int[MoveGenerator.MAX_MOVES];
+  // the version of the position, moved on by every change of the board
+  private long version;
+  // the version and the side the destinations were computed for
+  private long cachedVersion = -1;
+  private ChessGame.Side cachedSide;
+
+  /*
+   * Constructor
+   * @param board: the board to keep the moves of
+   */
+  public LegalMoveCache(ChessBoard board) {
+    this.board = board;
+    this.numColumns = board.numColumns();
+    this.destinations = new long[board.numRows() * numColumns][2];
+  }
+
+  /** Record that a piece was added to or removed from the board, so the moves are computed again when asked */
+  public void positionChanged() {
+    version++;
+  }
+
+  /** Return the version of the position */
+  public long getVersion() {
+    return version;
+  }
+
+  /*
+   * Check if the piece on a square may move to another square
+   * @param fromRow: the row of the piece
+   * @param fromColumn: the column of the piece
+   * @param toRow: the row of the destination
+   * @param toColumn: the column of the destination
+   */
+  public boolean isLegal(int fromRow, int fromColumn, int toRow, int toColumn) {
+    long[] moves = destinationsOf(fromRow, fromColumn);
+    int to = toRow * numColumns + toColumn;
+    return moves != null && (moves[to >>> 6] & (1L << (to & 63))) != 0;
+  }
+
+  /*
+   * Check if the piece on a square has a move
+   * @param row: the row of the piece
+   * @param column: the column of the piece
+   */
+  public boolean hasMoves(int row, int column) {
+    long[] moves = destinationsOf(row, column);
+    return moves != null && (moves[0] | moves[1]) != 0;
+  }
+
+  /*
+   * Return the destinations of the piece on a square, computing the moves of its side if the position changed
+   * (null if the square is empty)
+   * @param row: the row of the piece
+   * @param column: the column of the piece
+   */
+  private long[] destinationsOf(int row, int column) {
+    ChessPiece piece = board.getPiece(row, column);
+    if (piece == null) return null;
+    if (cachedVersion != version || cachedSide != piece.getSide()) {
+      computeMoves(piece.getSide());
+    }
+    return destinations[row * numColumns + column];
+  }
+
+  /*
+   * Compute the destinations of every piece of a side from its legal moves on a copy of the board
+   * @param side: the side
+   */
+  private void computeMoves(ChessGame.Side side) {
+    for (long[] moves : destinations) {
+      moves[0] = 0;
+      moves[1] = 0;
+    }
+    int count = MoveGenerator.generateLegalMoves(HeadlessChessBoard.copyOf(board, side), side, moveBuffer);
+    for (int i = 0; i < count; i++) {
+      int move = moveBuffer[i];
+      int from = PackedMove.fromRow(move) * numColumns + PackedMove.fromColumn(move);
+      int to = PackedMove.toRow(move) * numColumns + PackedMove.toColumn(move);
+      destinations[from][to >>> 6] |= 1L << (to & 63);
+    }
+    cachedVersion = version;
+    cachedSide = side;
+  }
+}
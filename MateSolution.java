@@ -0,0 +1,58 @@
+/*
+ * The answer of the mate solver for one position: the mating line if there is a forced mate,
+ * otherwise a defence against each move of the attacking side
+ * @author: Nhien Phan
+ */
+public class MateSolution {
+  // the moves of the mate, starting with the attacking side (empty if there is no mate)
+  private final int[] line;
+  // the legal moves of the attacking side and the defending move that escapes the mate after each of them
+  // (0 when the attacking move does not lose but no move is needed, such as a stalemate)
+  private final int[] rootMoves;
+  private final int[] refutations;
+
+  // constructor
+  public MateSolution(int[] line, int[] rootMoves, int[] refutations) {
+    this.line = line;
+    this.rootMoves = rootMoves;
+    this.refutations = refutations;
+  }
+
+  /** Check if the attacking side forces a mate */
+  public boolean isMate() {
+    return line.length > 0;
+  }
+
+  /** Return the moves of the mate, starting with the attacking side (empty if there is no mate) */
+  public int[] getLine() {
+    return line.clone();
+  }
+
+  /** Return the legal moves of the attacking side (filled in when there is no mate) */
+  public int[] getRootMoves() {
+    return rootMoves.clone();
+  }
+
+  /** Return the defending move that escapes the mate after each root move (filled in when there is no mate) */
+  public int[] getRefutations() {
+    return refutations.clone();
+  }
+
+  /** Return the mating line or the refutations in a readable form */
+  public String toString() {
+    StringBuilder text = new StringBuilder();
+    if (isMate()) {
+      text.append("mate:");
+      for (int move : line) {
+        text.append(' ').append(PackedMove.toString(move));
+      }
+    } else {
+      text.append("no mate:");
+      for (int i = 0; i < rootMoves.length; i++) {
+        text.append(' ').append(PackedMove.toString(rootMoves[i])).append(" ");
+        text.append(refutations[i] == 0 ? "-" : PackedMove.toString(refutations[i]));
+      }
+    }
+    return text.toString();
+  }
+}
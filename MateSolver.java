@@ -0,0 +1,255 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * A solver that proves forced mates for european chess and xiangqi puzzles.
+ * It runs a depth-limited AND/OR search: the attacking side needs one move that mates, the defending side must
+ * have every move mated.  Each root move is searched by its own fork-join task on its own headless copy of the
+ * position, and the other tasks stop as soon as one of them proves a mate.
+ * @author: Nhien Phan
+ */
+public class MateSolver {
+  // the pool the root moves are searched in
+  private final ForkJoinPool pool;
+
+  // constructor, search in the common fork-join pool
+  public MateSolver() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /*
+   * Constructor
+   * @param pool: the pool the root moves are searched in
+   */
+  public MateSolver(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /*
+   * Look for a mate in a number of moves of the attacking side
+   * @param position: the board of the puzzle, it is not changed
+   * @param attacker: the side to play, which tries to mate
+   * @param moves: the number of moves of the attacking side the mate may take
+   */
+  public MateSolution solve(ChessBoard position, ChessGame.Side attacker, int moves) {
+    HeadlessChessBoard root = HeadlessChessBoard.copyOf(position, attacker);
+    AtomicBoolean solved = new AtomicBoolean();
+    List<RootTask> tasks = new ArrayList<>();
+    for (int move : legalMoves(root, attacker)) {
+      tasks.add(new RootTask(root, move, moves, solved));
+    }
+    pool.invoke(new RecursiveAction() {
+      protected void compute() {
+        invokeAll(tasks);
+      }
+    });
+
+    for (RootTask task : tasks) {
+      if (task.mate) {
+        return new MateSolution(mateLine(root, task.move, moves), new int[0], new int[0]);
+      }
+    }
+    int[] rootMoves = new int[tasks.size()];
+    int[] refutations = new int[tasks.size()];
+    for (int i = 0; i < tasks.size(); i++) {
+      rootMoves[i] = tasks.get(i).move;
+      refutations[i] = tasks.get(i).refutation;
+    }
+    return new MateSolution(new int[0], rootMoves, refutations);
+  }
+
+  /*
+   * Write out the mate found after a root move: the attacking side takes its fastest mate and the defending
+   * side the move that holds out longest
+   * @param root: the position of the puzzle
+   * @param firstMove: the root move that mates
+   * @param moves: the number of moves of the mate
+   */
+  private static int[] mateLine(HeadlessChessBoard root, int firstMove, int moves) {
+    ChessGame.Side attacker = ((Chess) root.getGameRules()).getProperSide();
+    HeadlessChessBoard board = HeadlessChessBoard.copyOf(root, attacker);
+    Prover prover = new Prover(board, attacker, moves, new AtomicBoolean());
+    List<Integer> line = new ArrayList<>();
+    int move = firstMove;
+    while (true) {
+      // the fastest mate after the move of the attacking side
+      board.makeMove(move);
+      line.add(move);
+      int length = 1;
+      while (!prover.defenderLoses(length, 1)) {
+        length++;
+      }
+      int[] replies = legalMoves(board, Prover.opponent(attacker));
+      if (replies.length == 0 || length == 1) break;
+      // the reply that holds out longest, and the fastest mate after it
+      int bestReply = replies[0];
+      int bestMove = 0;
+      int bestLength = 0;
+      for (int reply : replies) {
+        board.makeMove(reply);
+        for (int k = 1; k < length; k++) {
+          int mating = prover.winningMove(k, 2);
+          if (mating != 0) {
+            if (k > bestLength) {
+              bestLength = k;
+              bestReply = reply;
+              bestMove = mating;
+            }
+            break;
+          }
+        }
+        board.unmakeMove();
+      }
+      board.makeMove(bestReply);
+      line.add(bestReply);
+      move = bestMove;
+    }
+    int[] result = new int[line.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = line.get(i);
+    }
+    return result;
+  }
+
+  /*
+   * Return the legal moves of a side
+   * @param board: the board
+   * @param side: the side to move
+   */
+  private static int[] legalMoves(HeadlessChessBoard board, ChessGame.Side side) {
+    int[] moves = new int[MoveGenerator.MAX_MOVES];
+    int legal = MoveGenerator.generateLegalMoves(board, side, moves);
+    int[] result = new int[legal];
+    System.arraycopy(moves, 0, result, 0, legal);
+    return result;
+  }
+
+  /*
+   * The task of one root move: it proves the mate after the move or finds the defence against it
+   */
+  private static class RootTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    // the position of the puzzle, only read by the tasks
+    private final HeadlessChessBoard root;
+    // the root move of this task
+    private final int move;
+    // the number of moves of the mate
+    private final int moves;
+    // set when a task proved a mate, so the others stop
+    private final AtomicBoolean solved;
+    // the result of the task
+    private boolean mate;
+    private int refutation;
+
+    // constructor
+    RootTask(HeadlessChessBoard root, int move, int moves, AtomicBoolean solved) {
+      this.root = root;
+      this.move = move;
+      this.moves = moves;
+      this.solved = solved;
+    }
+
+    /** Search the root move on a copy of the position */
+    protected void compute() {
+      if (solved.get()) return;
+      ChessGame.Side attacker = ((Chess) root.getGameRules()).getProperSide();
+      HeadlessChessBoard board = HeadlessChessBoard.copyOf(root, attacker);
+      Prover prover = new Prover(board, attacker, moves, solved);
+      board.makeMove(move);
+      mate = prover.defenderLoses(moves, 1);
+      refutation = prover.refutation;
+      if (mate) {
+        solved.set(true);
+      }
+    }
+  }
+
+  /*
+   * The AND/OR search of one board
+   */
+  private static class Prover {
+    // the board searched
+    private final HeadlessChessBoard board;
+    // the sides
+    private final ChessGame.Side attacker;
+    private final ChessGame.Side defender;
+    // true when a side without legal moves loses even if it is not in check (xiangqi)
+    private final boolean stalemateLoses;
+    // a move buffer for each ply
+    private final int[][] buffers;
+    // set when the search should give up
+    private final AtomicBoolean stop;
+    // the defending move that escaped the mate right after the root move
+    private int refutation;
+
+    // constructor
+    Prover(HeadlessChessBoard board, ChessGame.Side attacker, int moves, AtomicBoolean stop) {
+      this.board = board;
+      this.attacker = attacker;
+      this.defender = opponent(attacker);
+      this.stalemateLoses = board.getGameRules() instanceof XiangqiChess;
+      this.buffers = new int[2 * moves + 2][MoveGenerator.MAX_MOVES];
+      this.stop = stop;
+    }
+
+    /*
+     * Return a move of the attacking side that mates within a number of moves (0 if there is none)
+     * @param moves: the number of moves of the attacking side left
+     * @param ply: the distance from the root
+     */
+    int winningMove(int moves, int ply) {
+      if (stop.get()) return 0;
+      int[] list = buffers[ply];
+      int count = MoveGenerator.generateMoves(board, attacker, list);
+      for (int i = 0; i < count; i++) {
+        board.makeMove(list[i]);
+        boolean mates = !board.isInCheck(attacker) && defenderLoses(moves, ply + 1);
+        board.unmakeMove();
+        if (mates) return list[i];
+      }
+      return 0;
+    }
+
+    /*
+     * Check if every move of the defending side, who is to play, is mated within a number of moves
+     * @param moves: the number of moves of the attacking side left, the one just played included
+     * @param ply: the distance from the root
+     */
+    boolean defenderLoses(int moves, int ply) {
+      if (stop.get()) return false;
+      boolean inCheck = board.isInCheck(defender);
+      // a european king that is not in check after the last move is not mated (below the root, where no refutation is needed)
+      if (moves == 1 && !inCheck && !stalemateLoses && ply > 1) return false;
+      int[] list = buffers[ply];
+      int count = MoveGenerator.generateMoves(board, defender, list);
+      boolean anyLegal = false;
+      for (int i = 0; i < count; i++) {
+        board.makeMove(list[i]);
+        if (board.isInCheck(defender)) {
+          board.unmakeMove();
+          continue;
+        }
+        anyLegal = true;
+        boolean mated = moves > 1 && winningMove(moves - 1, ply + 1) != 0;
+        board.unmakeMove();
+        if (!mated) {
+          if (ply == 1) refutation = list[i];
+          return false;
+        }
+      }
+      // checkmate, or stalemate which is a draw in european chess and a loss in xiangqi
+      return anyLegal || inCheck || stalemateLoses;
+    }
+
+    /*
+     * Return the other side of a two player game
+     * @param side: a side
+     */
+    static ChessGame.Side opponent(ChessGame.Side side) {
+      return side == ChessGame.Side.NORTH ? ChessGame.Side.SOUTH : ChessGame.Side.NORTH;
+    }
+  }
+}
@@ -0,0 +1,344 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * A Monte Carlo tree search that chooses a move, made for the wide move trees of xiangqi.
+ * Every worker of a fork-join pool runs playouts on its own headless copy of the position: it walks down the
+ * shared tree by UCT, adds the children of the leaf it reaches, plays random legal moves to the end of the game
+ * (or to a material verdict) and adds the result to every node on its way back.  A node being walked through
+ * carries a virtual loss until its playout is counted, so the other workers spread over other lines meanwhile.
+ * The playouts only use the move buffer of their worker and allocate nothing; only new tree nodes are allocated.
+ * Run with:
+ *   java MonteCarloSearch [milliseconds] ["<fen>"]
+ * @author: Nhien Phan
+ */
+public class MonteCarloSearch {
+  // the weight of the exploration term of UCT
+  private static final double EXPLORATION = 1.4;
+  // the visits added to a node while a worker walks through it
+  private static final int VIRTUAL_LOSS = 1;
+  // the plies a playout plays before the material decides it
+  private static final int PLAYOUT_PLIES = 150;
+  // the material lead that wins a playout cut at PLAYOUT_PLIES
+  private static final int MATERIAL_MARGIN = 200;
+  // the results of a playout in half points for the side that made the last move of the tree
+  private static final int WIN = 2;
+  private static final int DRAW = 1;
+  private static final int LOSS = 0;
+
+  // the pool the workers run in
+  private final ForkJoinPool pool;
+  // the number of workers
+  private final int workers;
+  // the time a search may take in milliseconds
+  private final long timeLimitMillis;
+
+  // the results of the last search
+  private Node root;
+  private long playouts;
+  private long elapsedNanos;
+
+  /*
+   * Constructor, search with one worker per thread of the common fork-join pool
+   * @param timeLimitMillis: the time a search may take in milliseconds
+   */
+  public MonteCarloSearch(long timeLimitMillis) {
+    this(ForkJoinPool.commonPool(), ForkJoinPool.commonPool().getParallelism(), timeLimitMillis);
+  }
+
+  /*
+   * Constructor
+   * @param pool: the pool the workers run in
+   * @param workers: the number of workers running playouts at the same time
+   * @param timeLimitMillis: the time a search may take in milliseconds
+   */
+  public MonteCarloSearch(ForkJoinPool pool, int workers, long timeLimitMillis) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("A search needs at least one worker: " + workers);
+    }
+    this.pool = pool;
+    this.workers = workers;
+    this.timeLimitMillis = timeLimitMillis;
+  }
+
+  /*
+   * Search a copy of a position and return the most visited move (0 if the side has no legal move)
+   * @param position: the board to search, it is not changed
+   * @param sideToPlay: the side to choose a move for
+   */
+  public int search(ChessBoard position, ChessGame.Side sideToPlay) {
+    return search(HeadlessChessBoard.copyOf(position, sideToPlay));
+  }
+
+  /*
+   * Search a headless board for the side to play of its rules and return the most visited move (0 if there is none)
+   * @param board: the board to search, it is not changed
+   */
+  public int search(HeadlessChessBoard board) {
+    ChessGame.Side side = ((Chess) board.getGameRules()).getProperSide();
+    root = new Node(0, null);
+    long start = System.nanoTime();
+    long deadline = start + timeLimitMillis * 1000000L;
+    List<Worker> tasks = new ArrayList<>();
+    for (int i = 0; i < workers; i++) {
+      tasks.add(new Worker(HeadlessChessBoard.copyOf(board, side), deadline));
+    }
+    pool.invoke(new RecursiveAction() {
+      protected void compute() {
+        invokeAll(tasks);
+      }
+    });
+    elapsedNanos = System.nanoTime() - start;
+    playouts = 0;
+    for (Worker task : tasks) {
+      playouts += task.playouts;
+    }
+    Node best = mostVisited(root);
+    return best == null ? 0 : best.move;
+  }
+
+  /** Return the number of playouts of the last search */
+  public long getPlayouts() {
+    return playouts;
+  }
+
+  /** Return the number of playouts per second of the last search */
+  public long getPlayoutsPerSecond() {
+    return elapsedNanos == 0 ? 0 : playouts * 1000000000L / elapsedNanos;
+  }
+
+  /** Return the share of the points the most visited move scored in the last search (0 to 1) */
+  public double getWinRate() {
+    Node best = root == null ? null : mostVisited(root);
+    return best == null || best.visits == 0 ? 0 : best.points / (2.0 * best.visits);
+  }
+
+  /*
+   * Return the most visited child of a node (null if it has none)
+   * @param node: the node
+   */
+  private static Node mostVisited(Node node) {
+    Node[] children = node.children;
+    Node best = null;
+    if (children != null) {
+      for (Node child : children) {
+        if (best == null || child.visits > best.visits) best = child;
+      }
+    }
+    return best;
+  }
+
+  /*
+   * A node of the tree: the move that leads to it and the playouts counted through it.
+   * The counts are changed under the lock of the node and read without it by the UCT selection.
+   */
+  private static final class Node {
+    // the move from the parent to this node
+    final int move;
+    final Node parent;
+    // the children, one for each legal move, set once when the node is expanded
+    volatile Node[] children;
+    // the playouts through the node, virtual losses included, and the half points they scored for the side
+    // that played the move of the node
+    volatile int visits;
+    volatile int points;
+    // the result of the position of the node when the game is over there (-1 if it is not)
+    volatile int terminal = -1;
+
+    // constructor
+    Node(int move, Node parent) {
+      this.move = move;
+      this.parent = parent;
+    }
+
+    /** Return the child with the best UCT value and put a virtual loss on it */
+    Node select() {
+      Node[] list = children;
+      double logVisits = Math.log(Math.max(visits, 1));
+      Node best = null;
+      double bestValue = Double.NEGATIVE_INFINITY;
+      for (Node child : list) {
+        int childVisits = child.visits;
+        double value = childVisits == 0
+          ? Double.POSITIVE_INFINITY
+          : child.points / (2.0 * childVisits) + EXPLORATION * Math.sqrt(logVisits / childVisits);
+        if (value > bestValue) {
+          bestValue = value;
+          best = child;
+        }
+      }
+      synchronized (best) {
+        best.visits += VIRTUAL_LOSS;
+      }
+      return best;
+    }
+
+    /*
+     * Replace the virtual loss of a walk by its result
+     * @param result: the half points of the playout for the side that played the move of the node
+     */
+    synchronized void update(int result) {
+      visits += 1 - VIRTUAL_LOSS;
+      points += result;
+    }
+  }
+
+  /*
+   * A worker running playouts on its own board until the deadline
+   */
+  private final class Worker extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    // the board of the worker, owned by it
+    private final HeadlessChessBoard board;
+    private final long deadline;
+    // true when a side without legal moves loses even if it is not in check (xiangqi)
+    private final boolean stalemateLoses;
+    // the move buffer of the worker
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    // the number of playouts run
+    private long playouts;
+
+    // constructor
+    Worker(HeadlessChessBoard board, long deadline) {
+      this.board = board;
+      this.deadline = deadline;
+      this.stalemateLoses = board.getGameRules() instanceof XiangqiChess;
+    }
+
+    /** Run playouts until the deadline, at least one */
+    protected void compute() {
+      do {
+        playout();
+        playouts++;
+      } while (System.nanoTime() < deadline);
+    }
+
+    /** Walk down the tree, expand its leaf, play the game out and count the result back up */
+    private void playout() {
+      // the root carries no move, its visits only feed the UCT of its children
+      synchronized (root) {
+        root.visits += VIRTUAL_LOSS;
+      }
+      Node node = root;
+      int plies = 0;
+      while (node.children != null && node.children.length > 0) {
+        node = node.select();
+        board.makeMove(node.move);
+        plies++;
+      }
+      int result = node.terminal;
+      if (result < 0 && node.children == null) {
+        expand(node);
+        result = node.terminal;
+        if (result < 0) {
+          node = node.select();
+          board.makeMove(node.move);
+          plies++;
+        }
+      }
+      if (result < 0) {
+        result = randomGame();
+      }
+      for (int i = 0; i < plies; i++) {
+        board.unmakeMove();
+      }
+      // the result flips from one side to the other on the way up
+      for (; node != null; node = node.parent) {
+        node.update(result);
+        result = WIN - result;
+      }
+    }
+
+    /*
+     * Add the children of a leaf, or mark it as the end of the game if the side to play has no legal move
+     * @param node: the leaf, whose position is on the board
+     */
+    private void expand(Node node) {
+      synchronized (node) {
+        if (node.children != null) return;
+        ChessGame.Side side = ((Chess) board.getGameRules()).getProperSide();
+        int count = legalMoves(side);
+        if (count == 0) {
+          // the side to play is mated (or stalemated, a loss in xiangqi), which is a win for the move of the node
+          node.terminal = board.isInCheck(side) || stalemateLoses ? WIN : DRAW;
+        }
+        Node[] children = new Node[count];
+        for (int i = 0; i < count; i++) {
+          children[i] = new Node(moves[i], node);
+        }
+        node.children = children;
+      }
+    }
+
+    /*
+     * Play random legal moves from the board until the game ends or PLAYOUT_PLIES are played, then take them back
+     * return the result for the side that made the last move on the board
+     */
+    private int randomGame() {
+      ChessGame.Side mover = ((Chess) board.getGameRules()).getProperSide() == ChessGame.Side.NORTH
+        ? ChessGame.Side.SOUTH : ChessGame.Side.NORTH;
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      int result = -1;
+      int plies = 0;
+      while (plies < PLAYOUT_PLIES) {
+        ChessGame.Side side = ((Chess) board.getGameRules()).getProperSide();
+        int count = MoveGenerator.generateMoves(board, side, moves);
+        // draw moves until one is legal, dropping the illegal ones from the buffer
+        boolean moved = false;
+        while (count > 0) {
+          int index = random.nextInt(count);
+          board.makeMove(moves[index]);
+          if (!board.isInCheck(side)) {
+            moved = true;
+            break;
+          }
+          board.unmakeMove();
+          moves[index] = moves[--count];
+        }
+        if (!moved) {
+          boolean lost = board.isInCheck(side) || stalemateLoses;
+          result = !lost ? DRAW : side == mover ? LOSS : WIN;
+          break;
+        }
+        plies++;
+      }
+      if (result < 0) {
+        int lead = board.getMaterial(mover) - board.getMaterial(mover == ChessGame.Side.NORTH ? ChessGame.Side.SOUTH : ChessGame.Side.NORTH);
+        result = lead >= MATERIAL_MARGIN ? WIN : lead <= -MATERIAL_MARGIN ? LOSS : DRAW;
+      }
+      for (int i = 0; i < plies; i++) {
+        board.unmakeMove();
+      }
+      return result;
+    }
+
+    /*
+     * Write the legal moves of a side into the move buffer
+     * @param side: the side to move
+     * return the number of legal moves
+     */
+    private int legalMoves(ChessGame.Side side) {
+      return MoveGenerator.generateLegalMoves(board, side, moves);
+    }
+  }
+
+  /** Main method to search a position with more and more workers and print the playouts per second */
+  public static void main(String[] args) {
+    long millis = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+    String fen = args.length > 1 ? args[1] : Fen.XIANGQI_START;
+    int cores = Runtime.getRuntime().availableProcessors();
+    for (int workers = 1; ; workers = Math.min(workers * 2, cores)) {
+      ForkJoinPool pool = new ForkJoinPool(workers);
+      MonteCarloSearch search = new MonteCarloSearch(pool, workers, millis);
+      int move = search.search(Fen.read(fen));
+      pool.shutdown();
+      System.out.println("workers: " + workers + "  move: " + (move == 0 ? "none" : PackedMove.toString(move))
+                           + "  score: " + Math.round(search.getWinRate() * 100) + "%  playouts: " + search.getPlayouts()
+                           + "  speed: " + search.getPlayoutsPerSecond() + " playouts/s");
+      if (workers == cores) break;
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Generates the packed moves of one side of a board into a caller supplied buffer without allocating
+ * @author: Nhien Phan
+ */
+public final class MoveGenerator {
+  // a buffer of this size holds all the moves of one side in both games
+  public static final int MAX_MOVES = 256;
+
+  // this class only holds static helpers
+  private MoveGenerator() {
+  }
+
+  /*
+   * Write the packed moves of all pieces of a side into a buffer (see PackedMove)
+   * The moves follow the move rules of the pieces, they do not check if the own king is left in check.
+   * @param board: the board the pieces are on
+   * @param side: the side to generate the moves for
+   * @param moves: the buffer to write the moves into (MAX_MOVES long)
+   * return the number of moves written
+   */
+  public static int generateMoves(ChessBoard board, ChessGame.Side side, int[] moves) {
+    int count = 0;
+    // the bitboard boards know where the pieces of the side are, so the empty squares are not visited
+    if (board instanceof BitboardChessBoard) {
+      long bits = ((BitboardChessBoard) board).getPieces(side);
+      while (bits != 0) {
+        int square = Long.numberOfTrailingZeros(bits);
+        count = generatePieceMoves(board.getPiece(square >>> 3, square & 7), moves, count);
+        bits &= bits - 1;
+      }
+      return count;
+    }
+    if (board instanceof XiangqiBitboardChessBoard) {
+      XiangqiBitboardChessBoard xiangqiBoard = (XiangqiBitboardChessBoard) board;
+      count = generateMaskMoves(board, xiangqiBoard.getPiecesLow(side), 0, moves, count);
+      return generateMaskMoves(board, xiangqiBoard.getPiecesHigh(side), 64, moves, count);
+    }
+    for (int i = 0; i < board.numRows(); i++) {
+      for (int j = 0; j < board.numColumns(); j++) {
+        ChessPiece piece = board.getPiece(i, j);
+        if (piece != null && piece.getSide() == side) {
+          count = generatePieceMoves(piece, moves, count);
+        }
+      }
+    }
+    return count;
+  }
+
+  /*
+   * Write the legal moves of a side into a buffer: the moves of generateMoves that do not leave its king in check
+   * @param board: the board the pieces are on, in the same position when the method returns
+   * @param side: the side to generate the moves for
+   * @param moves: the buffer to write the moves into (MAX_MOVES long)
+   * return the number of moves written
+   */
+  public static int generateLegalMoves(HeadlessChessBoard board, ChessGame.Side side, int[] moves) {
+    int count = generateMoves(board, side, moves);
+    int legal = 0;
+    for (int i = 0; i < count; i++) {
+      if (isLegal(board, side, moves[i])) {
+        moves[legal++] = moves[i];
+      }
+    }
+    return legal;
+  }
+
+  /*
+   * Check if a side has a legal move, stopping at the first one
+   * @param board: the board the pieces are on, in the same position when the method returns
+   * @param side: the side
+   * @param moves: a move buffer (MAX_MOVES long)
+   */
+  public static boolean hasLegalMove(HeadlessChessBoard board, ChessGame.Side side, int[] moves) {
+    int count = generateMoves(board, side, moves);
+    for (int i = 0; i < count; i++) {
+      if (isLegal(board, side, moves[i])) return true;
+    }
+    return false;
+  }
+
+  /*
+   * Check if a move of generateMoves leaves the king of its side out of check, by making it and taking it back
+   * @param board: the board the pieces are on
+   * @param side: the side of the move
+   * @param move: the packed move
+   */
+  public static boolean isLegal(HeadlessChessBoard board, ChessGame.Side side, int move) {
+    board.makeMove(move);
+    boolean legal = !board.isInCheck(side);
+    board.unmakeMove();
+    return legal;
+  }
+
+  /*
+   * Write the packed moves of the pieces on the squares of one long of a xiangqi mask into a buffer
+   * @param board: the board the pieces are on
+   * @param bits: the long of the mask
+   * @param offset: the square of the lowest bit of the long
+   * @param moves: the buffer to write the moves into
+   * @param count: the number of moves already in the buffer
+   */
+  private static int generateMaskMoves(ChessBoard board, long bits, int offset, int[] moves, int count) {
+    while (bits != 0) {
+      int square = offset + Long.numberOfTrailingZeros(bits);
+      count = generatePieceMoves(board.getPiece(square / XiangqiMasks.COLUMNS, square % XiangqiMasks.COLUMNS), moves, count);
+      bits &= bits - 1;
+    }
+    return count;
+  }
+
+  /*
+   * Write the packed moves of one piece into a buffer, the castle moves included
+   * @param piece: the piece
+   * @param moves: the buffer to write the moves into
+   * @param count: the number of moves already in the buffer
+   */
+  private static int generatePieceMoves(ChessPiece piece, int[] moves, int count) {
+    count = piece.generateMoves(moves, count);
+    if (piece instanceof KingPiece) {
+      count = ((KingPiece) piece).generateCastleMoves(moves, count);
+    }
+    return count;
+  }
+}
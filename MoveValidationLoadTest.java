@@ -0,0 +1,186 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * A load test of the move validation endpoint (see MoveValidationServer), from the local machine.
+ * Every connection is a thread that sends requests one after another over a kept-alive socket, cycling through
+ * a legal european move, a legal xiangqi move sent as JSON, an illegal move and a promotion, and times each
+ * answer.  At the end the test prints the requests served a second and the percentiles of the latency.
+ * Without a port the test starts a server of its own in the same process.
+ * Run with:
+ *   java MoveValidationLoadTest [connections] [seconds] [port]
+ * @author: Nhien Phan
+ */
+public class MoveValidationLoadTest {
+  // the requests sent, in turn
+  private static final byte[][] REQUESTS = {
+    get(Fen.EUROPEAN_START, "e2e4"),
+    post(Fen.XIANGQI_START, "h2e2"),
+    get(Fen.EUROPEAN_START, "e2e5"),
+    get("7k/P7/8/8/8/8/8/K7 w - - 0 1", "a7a8q"),
+  };
+
+  /*
+   * Return the bytes of a GET request
+   * @param fen: the position
+   * @param move: the move
+   */
+  static byte[] get(String fen, String move) {
+    return ("GET /validate?fen=" + URLEncoder.encode(fen, StandardCharsets.US_ASCII) + "&move=" + move
+            + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /*
+   * Return the bytes of a POST request with a JSON body
+   * @param fen: the position
+   * @param move: the move
+   */
+  static byte[] post(String fen, String move) {
+    String body = "{\"fen\":\"" + fen + "\",\"move\":\"" + move + "\"}";
+    return ("POST /validate HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\nContent-Length: "
+            + body.length() + "\r\n\r\n" + body).getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /*
+   * Read one answer and return its body
+   * @param in: the stream of the connection
+   * @param buffer: a buffer large enough for the answer
+   */
+  static String readAnswer(InputStream in, byte[] buffer) throws IOException {
+    int length = 0;
+    int bodyStart = -1;
+    int bodyEnd = Integer.MAX_VALUE;
+    while (length < bodyEnd) {
+      int read = in.read(buffer, length, buffer.length - length);
+      if (read < 0) throw new IOException("the server closed the connection");
+      length += read;
+      if (bodyStart < 0) {
+        String head = new String(buffer, 0, length, StandardCharsets.US_ASCII);
+        int headerEnd = head.indexOf("\r\n\r\n");
+        if (headerEnd >= 0) {
+          bodyStart = headerEnd + 4;
+          int lengthStart = head.indexOf("Content-Length: ") + 16;
+          bodyEnd = bodyStart + Integer.parseInt(head.substring(lengthStart, head.indexOf('\r', lengthStart)));
+        }
+      }
+    }
+    return new String(buffer, bodyStart, bodyEnd - bodyStart, StandardCharsets.US_ASCII);
+  }
+
+  /*
+   * The requests of one connection, and the latency of each in nanoseconds
+   */
+  private static final class Client extends Thread {
+    private final int port;
+    private final long deadline;
+    private long[] latencies = new long[1 << 16];
+    private int count;
+
+    // constructor
+    Client(int port, long deadline) {
+      this.port = port;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public void run() {
+      byte[] buffer = new byte[4096];
+      try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+        socket.setTcpNoDelay(true);
+        OutputStream out = socket.getOutputStream();
+        InputStream in = socket.getInputStream();
+        while (System.nanoTime() < deadline) {
+          long start = System.nanoTime();
+          out.write(REQUESTS[count % REQUESTS.length]);
+          readAnswer(in, buffer);
+          if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+          }
+          latencies[count++] = System.nanoTime() - start;
+        }
+      } catch (IOException e) {
+        System.err.println("connection failed: " + e.getMessage());
+      }
+    }
+  }
+
+  /** Main method to run the load test */
+  public static void main(String[] args) throws Exception {
+    int connections = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    MoveValidationServer server = null;
+    int port;
+    if (args.length > 2) {
+      port = Integer.parseInt(args[2]);
+    } else {
+      MoveValidationServer embedded = new MoveValidationServer(0);
+      Thread serverThread = new Thread(() -> {
+        try {
+          embedded.serve();
+        } catch (IOException e) {
+          System.err.println("server failed: " + e.getMessage());
+        }
+      }, "move validation server");
+      serverThread.setDaemon(true);
+      serverThread.start();
+      server = embedded;
+      port = embedded.getPort();
+    }
+
+    // show one answer of each request, then warm up
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+      byte[] buffer = new byte[4096];
+      for (int i = 0; i < 20000; i++) {
+        socket.getOutputStream().write(REQUESTS[i % REQUESTS.length]);
+        String body = readAnswer(socket.getInputStream(), buffer);
+        if (i < REQUESTS.length) {
+          System.out.println(body);
+        }
+      }
+    }
+
+    long start = System.nanoTime();
+    Client[] clients = new Client[connections];
+    for (int i = 0; i < connections; i++) {
+      clients[i] = new Client(port, start + seconds * 1_000_000_000L);
+      clients[i].start();
+    }
+    int total = 0;
+    for (Client client : clients) {
+      client.join();
+      total += client.count;
+    }
+    double elapsed = (System.nanoTime() - start) / 1e9;
+    long[] all = new long[total];
+    int index = 0;
+    for (Client client : clients) {
+      System.arraycopy(client.latencies, 0, all, index, client.count);
+      index += client.count;
+    }
+    Arrays.sort(all);
+    System.out.printf("%d connections, %d requests in %.1f s: %.0f requests/s%n", connections, total, elapsed,
+                      total / elapsed);
+    if (total > 0) {
+      System.out.printf("latency (us): p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n", percentile(all, 0.5),
+                        percentile(all, 0.9), percentile(all, 0.99), percentile(all, 0.999), all[total - 1] / 1e3);
+    }
+    if (server != null) {
+      server.close();
+    }
+  }
+
+  /*
+   * Return a percentile of sorted latencies in microseconds
+   * @param sorted: the latencies in nanoseconds, sorted
+   * @param fraction: the percentile as a fraction
+   */
+  private static double percentile(long[] sorted, double fraction) {
+    return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))] / 1e3;
+  }
+}
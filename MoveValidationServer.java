@@ -0,0 +1,623 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/*
+ * A small HTTP endpoint that tells a web page if a move is legal and what the position is after it, for both games.
+ *   GET  /validate?fen=<fen>&move=<move>
+ *   POST /validate   with the body {"fen": "<fen>", "move": "<move>"}
+ * answer {"legal": true, "move": ..., "fen": <the position after the move>, "check": ..., "result": "ongoing" |
+ * "checkmate" | "stalemate"}, or {"legal": false, "move": ...}, or {"error": ...} with the status 400 or 404.
+ * Moves are written like "e2e4" or "e7e8q" for european chess and in ICCS coordinates like "h2e2" for xiangqi
+ * (see Uci and Ucci); the game is the one of the FEN text.
+ * One thread serves every connection through a selector, on the local machine only.  The position of a request
+ * is set up on a headless board kept for its game, from pieces kept when the last position was taken off, the
+ * side of the piece is checked with Chess.legalPieceToPlay and the move is matched against the moves the pieces
+ * generate and played on the board, which is the headless form of Chess.makeMove (that one asks for the
+ * promotion piece in a dialog).  The bytes come and go through direct buffers taken from a pool, and the answer is
+ * written by hand (see JsonWriter), so a request allocates nothing once the pools are warm.
+ * Run with:
+ *   java MoveValidationServer [port]
+ * @author: Nhien Phan
+ */
+public class MoveValidationServer implements AutoCloseable {
+  // the size of the buffers of a connection, which is also the largest request
+  private static final int BUFFER_SIZE = 8192;
+  // the largest answer
+  private static final int MAX_ANSWER = 1024;
+  // the FEN letters of the pieces of each game (see Fen)
+  private static final String EUROPEAN_LETTERS = "prnbqk";
+  private static final String XIANGQI_LETTERS = "kabnrcp";
+  // the starts of the answers
+  private static final byte[] OK = ascii("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: ");
+  private static final byte[] BAD_REQUEST =
+    ascii("HTTP/1.1 400 Bad Request\r\nContent-Type: application/json\r\nContent-Length: ");
+  private static final byte[] NOT_FOUND = ascii("HTTP/1.1 404 Not Found\r\nContent-Type: application/json\r\nContent-Length: ");
+  private static final byte[] HEADER_END = ascii("\r\n\r\n");
+  // what handleRequest did with the bytes of a connection
+  private static final int DONE = 0;
+  private static final int INCOMPLETE = 1;
+  private static final int CLOSE = 2;
+
+  // the selector and the socket of the server
+  private final Selector selector;
+  private final ServerSocketChannel serverChannel;
+  // the buffers of closed connections, kept for the next ones
+  private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>();
+  // the handler of the ready keys, made once so a select allocates nothing
+  private final Consumer<SelectionKey> handler = this::ready;
+  // the board of each game and the pieces taken off it (indexed by side ordinal * 8 + piece code)
+  private final HeadlessChessBoard europeanBoard = new BitboardChessBoard(new EuropeanChess());
+  private final HeadlessChessBoard xiangqiBoard = new XiangqiBitboardChessBoard(new XiangqiChess());
+  private final ArrayDeque<ChessPiece>[] europeanPieces = newPiecePool();
+  private final ArrayDeque<ChessPiece>[] xiangqiPieces = newPiecePool();
+  // the move buffer and the answer being written
+  private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+  private final ByteBuffer answer = ByteBuffer.allocate(MAX_ANSWER);
+  private final JsonWriter json = new JsonWriter();
+  // the bytes of the value found by queryValue or jsonValue
+  private int valueStart;
+  private int valueEnd;
+  // false once the server is closed
+  private volatile boolean running = true;
+  // the number of requests answered
+  private volatile long requests;
+
+  /*
+   * Constructor, listen on a port of the local machine
+   * @param port: the port (0 for any free port)
+   */
+  public MoveValidationServer(int port) throws IOException {
+    this.selector = Selector.open();
+    this.serverChannel = ServerSocketChannel.open();
+    serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+    serverChannel.configureBlocking(false);
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+  }
+
+  /** Return the port the server listens on */
+  public int getPort() {
+    return serverChannel.socket().getLocalPort();
+  }
+
+  /** Return the number of requests answered */
+  public long getRequests() {
+    return requests;
+  }
+
+  /** Serve the connections on this thread until the server is closed */
+  public void serve() throws IOException {
+    try {
+      while (running) {
+        selector.select(handler, 100);
+      }
+    } finally {
+      for (SelectionKey key : selector.keys()) {
+        key.channel().close();
+      }
+      selector.close();
+    }
+  }
+
+  /** Stop the server, serve returns soon after */
+  public void close() {
+    running = false;
+    selector.wakeup();
+  }
+
+  /*
+   * Accept, read or write a ready connection
+   * @param key: the key of the connection
+   */
+  private void ready(SelectionKey key) {
+    try {
+      if (key.isAcceptable()) {
+        accept();
+        return;
+      }
+      SocketChannel channel = (SocketChannel) key.channel();
+      Connection connection = (Connection) key.attachment();
+      if (key.isReadable() && channel.read(connection.in) < 0) {
+        close(key);
+        return;
+      }
+      // answer the requests that came whole while there is room for their answers, and write the answers out; a
+      // write that makes room lets the requests still waiting in the buffer be answered, which is also how the
+      // pipelined requests left when the answers filled the buffer go on once the socket takes more bytes
+      while (true) {
+        int state = DONE;
+        while (state == DONE && connection.out.remaining() >= MAX_ANSWER + OK.length + 16) {
+          state = handleRequest(connection);
+        }
+        if (state == CLOSE) {
+          close(key);
+          return;
+        }
+        int waiting = connection.out.position();
+        connection.out.flip();
+        channel.write(connection.out);
+        connection.out.compact();
+        if (state != DONE || connection.out.position() == waiting) break;
+      }
+      int interest = connection.out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+      if (key.interestOps() != interest) {
+        key.interestOps(interest);
+      }
+    } catch (IOException e) {
+      close(key);
+    }
+  }
+
+  /** Accept a new connection */
+  private void accept() throws IOException {
+    SocketChannel channel = serverChannel.accept();
+    if (channel == null) return;
+    channel.configureBlocking(false);
+    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    channel.register(selector, SelectionKey.OP_READ, new Connection(takeBuffer(), takeBuffer()));
+  }
+
+  /*
+   * Close a connection and keep its buffers
+   * @param key: the key of the connection
+   */
+  private void close(SelectionKey key) {
+    key.cancel();
+    try {
+      key.channel().close();
+    } catch (IOException e) {
+      // the connection is gone either way
+    }
+    Connection connection = (Connection) key.attachment();
+    if (connection != null) {
+      buffers.push(connection.in.clear());
+      buffers.push(connection.out.clear());
+    }
+  }
+
+  /** Return a buffer from the pool, or a new one if the pool is empty */
+  private ByteBuffer takeBuffer() {
+    ByteBuffer buffer = buffers.poll();
+    return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+  }
+
+  /*
+   * Answer the first request in the bytes read from a connection if it came whole
+   * return DONE, INCOMPLETE if more bytes are needed or CLOSE if the request is too large
+   * @param connection: the connection
+   */
+  private int handleRequest(Connection connection) {
+    ByteBuffer in = connection.in;
+    int headerEnd = indexOf(in, 0, in.position(), HEADER_END);
+    if (headerEnd < 0) {
+      return in.position() == in.capacity() ? CLOSE : INCOMPLETE;
+    }
+    int bodyStart = headerEnd + HEADER_END.length;
+    int bodyEnd = bodyStart + contentLength(in, headerEnd);
+    if (bodyEnd > in.capacity() || bodyEnd < bodyStart) return CLOSE;
+    if (bodyEnd > in.position()) return INCOMPLETE;
+    answer(in, bodyStart, bodyEnd, connection.out);
+    requests++;
+    // drop the request and keep the bytes after it
+    in.flip();
+    in.position(bodyEnd);
+    in.compact();
+    return DONE;
+  }
+
+  /*
+   * Write the answer of a whole request
+   * @param in: the bytes of the request, from 0
+   * @param bodyStart: the index of the body
+   * @param bodyEnd: the index after the body
+   * @param out: the buffer the answer is written into
+   */
+  private void answer(ByteBuffer in, int bodyStart, int bodyEnd, ByteBuffer out) {
+    answer.clear();
+    json.reset(answer).beginObject();
+    byte[] status = OK;
+    boolean get = startsWith(in, 0, "GET ");
+    int pathStart = get ? 4 : 5;
+    if (!(get || startsWith(in, 0, "POST ")) || !isValidatePath(in, pathStart)) {
+      json.name("error").value("not found");
+      status = NOT_FOUND;
+    } else {
+      int pathEnd = indexOf(in, pathStart, bodyStart, ' ');
+      int fenStart;
+      int fenEnd;
+      boolean found;
+      if (get) {
+        int queryStart = indexOf(in, pathStart, pathEnd, '?') + 1;
+        // both values are found in the raw query before either is decoded, so a decoded '&' or '=' is only text
+        found = queryStart > 0 && queryValue(in, queryStart, pathEnd, "fen");
+        fenStart = valueStart;
+        fenEnd = valueEnd;
+        found = found && queryValue(in, queryStart, pathEnd, "move");
+        if (found) {
+          fenEnd = decode(in, fenStart, fenEnd);
+          valueEnd = decode(in, valueStart, valueEnd);
+        }
+      } else {
+        found = jsonValue(in, bodyStart, bodyEnd, "fen");
+        fenStart = valueStart;
+        fenEnd = valueEnd;
+        found = found && jsonValue(in, bodyStart, bodyEnd, "move");
+      }
+      if (!found) {
+        json.name("error").value("the request needs a fen and a move");
+        status = BAD_REQUEST;
+      } else if (!validate(in, fenStart, fenEnd, valueStart, valueEnd)) {
+        status = BAD_REQUEST;
+      }
+    }
+    json.endObject();
+    out.put(status);
+    JsonWriter.number(out, answer.position());
+    out.put(HEADER_END);
+    out.put(answer.flip());
+  }
+
+  /*
+   * Set up a position, try a move on it and write the answer members
+   * return false if the position or the move cannot be read
+   * @param in: the bytes of the request
+   * @param fenStart: the index of the FEN text
+   * @param fenEnd: the index after the FEN text
+   * @param moveStart: the index of the move
+   * @param moveEnd: the index after the move
+   */
+  private boolean validate(ByteBuffer in, int fenStart, int fenEnd, int moveStart, int moveEnd) {
+    HeadlessChessBoard board = setUp(in, fenStart, fenEnd);
+    int length = moveEnd - moveStart;
+    if (board == null || (length != 4 && length != 5) || !isMoveText(in, moveStart, moveEnd)) {
+      json.name("error").value(board == null ? "bad fen" : "bad move");
+      return false;
+    }
+    boolean xiangqi = board == xiangqiBoard;
+    int numRows = board.numRows();
+    int fromColumn = (in.get(moveStart) | 0x20) - 'a';
+    int fromRow = (xiangqi ? '9' : '8') - in.get(moveStart + 1);
+    int toColumn = (in.get(moveStart + 2) | 0x20) - 'a';
+    int toRow = (xiangqi ? '9' : '8') - in.get(moveStart + 3);
+    int promotion = length == 5 ? EUROPEAN_LETTERS.indexOf(in.get(moveStart + 4) | 0x20) + 1 : 0;
+    json.name("legal");
+    if (fromRow < 0 || fromRow >= numRows || fromColumn < 0 || fromColumn >= board.numColumns()) {
+      json.value(false).name("move").value(in, moveStart, moveEnd);
+      return true;
+    }
+    Chess rules = (Chess) board.getGameRules();
+    ChessGame.Side side = rules.getProperSide();
+    ChessPiece piece = board.getPiece(fromRow, fromColumn);
+    int move = 0;
+    if (piece != null && rules.legalPieceToPlay(piece, fromRow, fromColumn)) {
+      int count = MoveGenerator.generateMoves(board, side, moves);
+      for (int i = 0; i < count && move == 0; i++) {
+        int candidate = moves[i];
+        boolean promotes = (PackedMove.flags(candidate) & PackedMove.PROMOTION) != 0;
+        if (PackedMove.fromRow(candidate) == fromRow && PackedMove.fromColumn(candidate) == fromColumn
+            && PackedMove.toRow(candidate) == toRow && PackedMove.toColumn(candidate) == toColumn
+            && (promotes ? PackedMove.promotion(candidate) : 0) == promotion) {
+          move = candidate;
+        }
+      }
+    }
+    if (move != 0) {
+      board.makeMove(move);
+      if (board.isInCheck(side)) {
+        board.unmakeMove();
+        move = 0;
+      }
+    }
+    json.value(move != 0).name("move").value(in, moveStart, moveEnd);
+    if (move == 0) return true;
+    ChessGame.Side opponent = rules.getProperSide();
+    boolean check = board.isInCheck(opponent);
+    boolean over = !MoveGenerator.hasLegalMove(board, opponent, moves);
+    json.name("fen").fen(board, opponent).name("check").value(check).name("result")
+      .value(!over ? "ongoing" : check || xiangqi ? "checkmate" : "stalemate");
+    board.unmakeMove();
+    return true;
+  }
+
+  /*
+   * Check if the bytes of a move only hold the letters and digits of squares and promotions, so they can be
+   * written back into the answer as they are
+   * @param in: the bytes of the request
+   * @param start: the index of the move
+   * @param end: the index after the move
+   */
+  private static boolean isMoveText(ByteBuffer in, int start, int end) {
+    for (int i = start; i < end; i++) {
+      int letter = in.get(i);
+      boolean column = (letter | 0x20) >= 'a' && (letter | 0x20) <= 'i';
+      boolean digit = letter >= '0' && letter <= '9';
+      if (!column && !digit && "qrnbQRNB".indexOf(letter) < 0) return false;
+    }
+    return true;
+  }
+
+  /*
+   * Put the position of a FEN text on the board of its game, from the pieces taken off it before
+   * return the board, or null if the text is not a position of either game
+   * @param in: the bytes of the request
+   * @param start: the index of the FEN text
+   * @param end: the index after the FEN text
+   */
+  private HeadlessChessBoard setUp(ByteBuffer in, int start, int end) {
+    int placementEnd = indexOf(in, start, end, ' ');
+    if (placementEnd < 0) placementEnd = end;
+    int ranks = 1;
+    for (int i = start; i < placementEnd; i++) {
+      if (in.get(i) == '/') ranks++;
+    }
+    boolean xiangqi = ranks == XiangqiMasks.ROWS;
+    if (!xiangqi && ranks != 8) return null;
+    HeadlessChessBoard board = xiangqi ? xiangqiBoard : europeanBoard;
+    ArrayDeque<ChessPiece>[] pool = xiangqi ? xiangqiPieces : europeanPieces;
+    for (int i = 0; i < board.numRows(); i++) {
+      for (int j = 0; j < board.numColumns(); j++) {
+        if (board.hasPiece(i, j)) {
+          ChessPiece piece = board.removePiece(i, j);
+          pool[piece.getSide().ordinal() * 8 + PackedMove.pieceCode(piece)].push(piece);
+        }
+      }
+    }
+    int row = 0;
+    int column = 0;
+    for (int i = start; i < placementEnd; i++) {
+      int letter = in.get(i);
+      if (letter == '/') {
+        if (column != board.numColumns()) return null;
+        row++;
+        column = 0;
+      } else if (letter >= '1' && letter <= '9') {
+        column += letter - '0';
+      } else {
+        ChessGame.Side side = letter < 'a' ? ChessGame.Side.NORTH : ChessGame.Side.SOUTH;
+        int code = pieceCode(letter | 0x20, xiangqi);
+        if (code == 0 || column >= board.numColumns()) return null;
+        ChessPiece piece = pool[side.ordinal() * 8 + code].poll();
+        if (piece == null) {
+          piece = xiangqi ? XiangQiPieceType.values()[code - 1].newPiece(side, board)
+            : EuropeanPieceType.values()[code - 1].newPiece(side, board);
+        }
+        // pieces only keep their first move status through the castle rights, as in Fen.read
+        piece.setFirstMoveStatus(false);
+        board.addPiece(piece, row, column++);
+      }
+    }
+    if (column != board.numColumns()) return null;
+    int sideStart = placementEnd + 1;
+    boolean south = sideStart < end && in.get(sideStart) == 'b';
+    ((Chess) board.getGameRules()).setProperSide(south ? ChessGame.Side.SOUTH : ChessGame.Side.NORTH);
+    if (!xiangqi) {
+      for (int i = sideStart + 2; i < end && in.get(i) != ' '; i++) {
+        int right = in.get(i);
+        if (right == 'K' || right == 'Q' || right == 'k' || right == 'q') {
+          Fen.allowCastle(board, right < 'a' ? 7 : 0, (right | 0x20) == 'k' ? 7 : 0);
+        }
+      }
+    }
+    return board;
+  }
+
+  /*
+   * Return the code of the piece of a lower case FEN letter (0 if the letter is no piece of the game)
+   * Both the letters of the common xiangqi notation (a, b, n) and of the piece names (g, e, h) are read.
+   * @param letter: the letter
+   * @param xiangqi: true for xiangqi
+   */
+  private static int pieceCode(int letter, boolean xiangqi) {
+    if (!xiangqi) return EUROPEAN_LETTERS.indexOf(letter) + 1;
+    switch (letter) {
+      case 'g':
+        return XiangQiPieceType.G.ordinal() + 1;
+      case 'e':
+        return XiangQiPieceType.E.ordinal() + 1;
+      case 'h':
+        return XiangQiPieceType.H.ordinal() + 1;
+      default:
+        return XIANGQI_LETTERS.indexOf(letter) + 1;
+    }
+  }
+
+  /*
+   * Find the value of a parameter of a query ("a=1&b=2") as it was sent, still encoded (see decode)
+   * return true if it was found, its bytes are then from valueStart to valueEnd
+   * @param in: the bytes of the request
+   * @param start: the index of the query
+   * @param end: the index after the query
+   * @param name: the name of the parameter
+   */
+  private boolean queryValue(ByteBuffer in, int start, int end, String name) {
+    int i = start;
+    while (i < end) {
+      int next = indexOf(in, i, end, '&');
+      if (next < 0) next = end;
+      if (startsWith(in, i, name) && i + name.length() < next && in.get(i + name.length()) == '=') {
+        valueStart = i + name.length() + 1;
+        valueEnd = next;
+        return true;
+      }
+      i = next + 1;
+    }
+    return false;
+  }
+
+  /*
+   * Decode a value of a query in place ('+' and %XX)
+   * return the index after the decoded value, which is shorter than the encoded one
+   * @param in: the bytes of the request
+   * @param start: the index of the value
+   * @param end: the index after the value
+   */
+  private static int decode(ByteBuffer in, int start, int end) {
+    int to = start;
+    for (int from = start; from < end; from++) {
+      int letter = in.get(from);
+      if (letter == '+') {
+        letter = ' ';
+      } else if (letter == '%' && from + 2 < end) {
+        letter = Character.digit(in.get(from + 1), 16) * 16 + Character.digit(in.get(from + 2), 16);
+        from += 2;
+      }
+      in.put(to++, (byte) letter);
+    }
+    return to;
+  }
+
+  /*
+   * Find the string value of a member of a flat JSON object whose strings have no escapes
+   * return true if it was found, its bytes are then from valueStart to valueEnd
+   * @param in: the bytes of the request
+   * @param start: the index of the object
+   * @param end: the index after the object
+   * @param name: the name of the member
+   */
+  private boolean jsonValue(ByteBuffer in, int start, int end, String name) {
+    for (int i = indexOf(in, start, end, '"'); i >= 0; i = indexOf(in, i + 1, end, '"')) {
+      int nameEnd = i + 1 + name.length();
+      if (nameEnd < end && startsWith(in, i + 1, name) && in.get(nameEnd) == '"') {
+        int colon = indexOf(in, nameEnd + 1, end, ':');
+        int open = colon < 0 ? -1 : indexOf(in, colon + 1, end, '"');
+        int close = open < 0 ? -1 : indexOf(in, open + 1, end, '"');
+        if (close < 0) return false;
+        valueStart = open + 1;
+        valueEnd = close;
+        return true;
+      }
+      // skip the rest of this string
+      i = indexOf(in, i + 1, end, '"');
+      if (i < 0) return false;
+    }
+    return false;
+  }
+
+  /*
+   * Return the value of the Content-Length header of a request (0 if there is none)
+   * @param in: the bytes of the request
+   * @param headerEnd: the index of the end of the headers
+   */
+  private static int contentLength(ByteBuffer in, int headerEnd) {
+    String name = "content-length:";
+    for (int i = 0; i + name.length() < headerEnd; i++) {
+      if (in.get(i) != '\n') continue;
+      int j = 0;
+      while (j < name.length() && (in.get(i + 1 + j) | 0x20) == name.charAt(j)) {
+        j++;
+      }
+      if (j < name.length()) continue;
+      int length = 0;
+      for (int k = i + 1 + j; k < headerEnd && in.get(k) != '\r'; k++) {
+        int digit = in.get(k) - '0';
+        if (digit >= 0 && digit <= 9) {
+          length = Math.min(length * 10 + digit, BUFFER_SIZE + 1);
+        }
+      }
+      return length;
+    }
+    return 0;
+  }
+
+  /*
+   * Check if the path of a request is /validate, alone or with a query
+   * @param in: the bytes of the request
+   * @param pathStart: the index of the path
+   */
+  private static boolean isValidatePath(ByteBuffer in, int pathStart) {
+    int pathEnd = pathStart + "/validate".length();
+    return startsWith(in, pathStart, "/validate") && pathEnd < in.capacity()
+      && (in.get(pathEnd) == '?' || in.get(pathEnd) == ' ');
+  }
+
+  /*
+   * Check if the bytes of a buffer at an index are an ASCII text
+   * @param in: the buffer
+   * @param index: the index
+   * @param text: the text
+   */
+  private static boolean startsWith(ByteBuffer in, int index, String text) {
+    if (index + text.length() > in.capacity()) return false;
+    for (int i = 0; i < text.length(); i++) {
+      if (in.get(index + i) != text.charAt(i)) return false;
+    }
+    return true;
+  }
+
+  /*
+   * Return the index of the first byte of a value in a range of a buffer (-1 if there is none)
+   * @param in: the buffer
+   * @param start: the index to start at
+   * @param end: the index to stop before
+   * @param value: the byte
+   */
+  private static int indexOf(ByteBuffer in, int start, int end, int value) {
+    for (int i = start; i < end; i++) {
+      if (in.get(i) == value) return i;
+    }
+    return -1;
+  }
+
+  /*
+   * Return the index of the first run of bytes in a range of a buffer (-1 if there is none)
+   * @param in: the buffer
+   * @param start: the index to start at
+   * @param end: the index to stop before
+   * @param bytes: the run of bytes
+   */
+  private static int indexOf(ByteBuffer in, int start, int end, byte[] bytes) {
+    for (int i = start; i + bytes.length <= end; i++) {
+      int j = 0;
+      while (j < bytes.length && in.get(i + j) == bytes[j]) {
+        j++;
+      }
+      if (j == bytes.length) return i;
+    }
+    return -1;
+  }
+
+  // return the bytes of an ASCII text
+  private static byte[] ascii(String text) {
+    return text.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  // return an empty pool of pieces for each side and piece code
+  private static ArrayDeque<ChessPiece>[] newPiecePool() {
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ArrayDeque<ChessPiece>[] pool = new ArrayDeque[ChessGame.Side.values().length * 8];
+    for (int i = 0; i < pool.length; i++) {
+      pool[i] = new ArrayDeque<>();
+    }
+    return pool;
+  }
+
+  /*
+   * The buffers of a connection: the bytes read and not yet answered, and the answers not yet written
+   */
+  private static final class Connection {
+    final ByteBuffer in;
+    final ByteBuffer out;
+
+    // constructor
+    Connection(ByteBuffer in, ByteBuffer out) {
+      this.in = in;
+      this.out = out;
+    }
+  }
+
+  /** Main method to run a server until the process is ended */
+  public static void main(String[] args) throws IOException {
+    MoveValidationServer server = new MoveValidationServer(args.length > 0 ? Integer.parseInt(args[0]) : 8080);
+    System.out.println("move validation on http://localhost:" + server.getPort() + "/validate");
+    server.serve();
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * The hidden sums of a network (see NnueNetwork) for one position, seen from each side.
+ * A piece added to the board adds the weights of its input to the sums of both sides and a piece removed takes
+ * them off, so a move costs a few additions of one row of weights instead of summing every piece again.
+ * The sums are 16-bit ints that may wrap in between; they are exact again once the position is whole.
+ * @author: Nhien Phan
+ */
+public class NnueAccumulator {
+  // the network of the sums
+  private final NnueNetwork network;
+  // the hidden sums seen from NORTH and seen from SOUTH
+  private final short[] north;
+  private final short[] south;
+
+  /*
+   * Constructor, the sums of an empty board
+   * @param network: the network of the sums
+   */
+  public NnueAccumulator(NnueNetwork network) {
+    this.network = network;
+    this.north = new short[network.getHidden()];
+    this.south = new short[network.getHidden()];
+    network.reset(north);
+    network.reset(south);
+  }
+
+  /*
+   * Compute the sums of a board from scratch
+   * @param board: the board, the size of the board of the network
+   */
+  public void refresh(ChessBoard board) {
+    if (board.numRows() != network.getRows() || board.numColumns() != network.getColumns()) {
+      throw new IllegalArgumentException("The network is for a board of " + network.getRows() + " by "
+                                           + network.getColumns() + " squares");
+    }
+    network.reset(north);
+    network.reset(south);
+    for (int i = 0; i < board.numRows(); i++) {
+      for (int j = 0; j < board.numColumns(); j++) {
+        ChessPiece piece = board.getPiece(i, j);
+        if (piece != null) {
+          pieceAdded(piece, i, j);
+        }
+      }
+    }
+  }
+
+  /*
+   * Add the inputs of a piece put on the board
+   * @param piece: the piece
+   * @param row: the row of the piece
+   * @param col: the column of the piece
+   */
+  public void pieceAdded(ChessPiece piece, int row, int col) {
+    int code = PackedMove.pieceCode(piece);
+    int northInput = network.input(ChessGame.Side.NORTH, piece.getSide(), code, row, col);
+    if (northInput < 0) return;
+    network.add(north, northInput);
+    network.add(south, network.input(ChessGame.Side.SOUTH, piece.getSide(), code, row, col));
+  }
+
+  /*
+   * Take off the inputs of a piece taken off the board
+   * @param piece: the piece
+   * @param row: the row the piece was on
+   * @param col: the column the piece was on
+   */
+  public void pieceRemoved(ChessPiece piece, int row, int col) {
+    int code = PackedMove.pieceCode(piece);
+    int northInput = network.input(ChessGame.Side.NORTH, piece.getSide(), code, row, col);
+    if (northInput < 0) return;
+    network.subtract(north, northInput);
+    network.subtract(south, network.input(ChessGame.Side.SOUTH, piece.getSide(), code, row, col));
+  }
+
+  /*
+   * Return the score of the position for a side, in hundredths of a pawn
+   * @param side: the side to score for
+   */
+  public int evaluate(ChessGame.Side side) {
+    return side == ChessGame.Side.NORTH ? network.output(north, south) : network.output(south, north);
+  }
+
+  /** Return the network of the sums */
+  public NnueNetwork getNetwork() {
+    return network;
+  }
+}
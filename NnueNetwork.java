@@ -0,0 +1,291 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/*
+ * A small quantized neural network that scores a position of either game, in the efficiently updatable (NNUE)
+ * layout: one input per side, piece type and square, seen from each side in turn, feeding a hidden layer whose
+ * sums (the accumulator, see NnueAccumulator) are kept up to date as pieces are added and removed, and one output.
+ * The inputs are seen from a side: its own pieces first, the rows turned around for SOUTH, so one set of weights
+ * serves both sides.  The score is the clipped hidden sums of the side to score for and of the other side times
+ * the output weights.
+ * Weights are 16-bit ints: the hidden sums carry a scale of QA and the output weights a scale of QB.  They are
+ * trained elsewhere and stored in a little-endian file:
+ *   header (32 bytes): MAGIC, VERSION, rows, columns, piece types, hidden size, two unused ints
+ *   short[inputs * hidden] input weights (input by input), short[hidden] hidden biases,
+ *   short[2 * hidden] output weights (the side to score for, then the other side), int output bias
+ * The file is memory-mapped and its weights copied into plain arrays once, so the loops over them are simple
+ * int16 array loops that the JIT compiles to vector instructions.
+ * Run with:
+ *   java NnueNetwork ["<network file>"] [plies]
+ * @author: Nhien Phan
+ */
+public class NnueNetwork {
+  // marks the start of a network file ("NNUE")
+  public static final int MAGIC = 0x4E4E5545;
+  public static final int VERSION = 1;
+  // the clip of a hidden sum and the scale of the output weights
+  public static final int QA = 255;
+  public static final int QB = 64;
+  // the scale of the output: an output of 1.0 is worth this much material
+  public static final int SCALE = 400;
+  private static final int HEADER_BYTES = 32;
+
+  // the size of the board and the number of piece types of the game of the network
+  private final int rows;
+  private final int columns;
+  private final int pieceTypes;
+  // the number of hidden sums
+  private final int hidden;
+  // the weights (see the file layout above)
+  private final short[] inputWeights;
+  private final short[] hiddenBiases;
+  private final short[] outputWeights;
+  private final int outputBias;
+
+  /*
+   * Constructor
+   * @param rows: the number of rows of the board
+   * @param columns: the number of columns of the board
+   * @param pieceTypes: the number of piece types of the game (6 for european chess, 7 for xiangqi)
+   * @param hidden: the number of hidden sums
+   * @param inputWeights: the weights of each input to each hidden sum, input by input
+   * @param hiddenBiases: the bias of each hidden sum
+   * @param outputWeights: the weights of the hidden sums of the side to score for, then of the other side
+   * @param outputBias: the bias of the output
+   */
+  public NnueNetwork(int rows, int columns, int pieceTypes, int hidden, short[] inputWeights, short[] hiddenBiases,
+                     short[] outputWeights, int outputBias) {
+    if (rows <= 0 || columns <= 0 || pieceTypes <= 0 || hidden <= 0) {
+      throw new IllegalArgumentException("The sizes of a network must be positive");
+    }
+    if (inputWeights.length != 2 * pieceTypes * rows * columns * hidden || hiddenBiases.length != hidden
+        || outputWeights.length != 2 * hidden) {
+      throw new IllegalArgumentException("The weights do not match the sizes of the network");
+    }
+    this.rows = rows;
+    this.columns = columns;
+    this.pieceTypes = pieceTypes;
+    this.hidden = hidden;
+    this.inputWeights = inputWeights;
+    this.hiddenBiases = hiddenBiases;
+    this.outputWeights = outputWeights;
+    this.outputBias = outputBias;
+  }
+
+  /*
+   * Load a network from a file
+   * @param file: the path of the network file
+   */
+  public static NnueNetwork load(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      if (channel.size() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+        throw new IOException(file + " is not a network file");
+      }
+      int rows = buffer.getInt(8);
+      int columns = buffer.getInt(12);
+      int pieceTypes = buffer.getInt(16);
+      int hidden = buffer.getInt(20);
+      if (rows <= 0 || rows > 16 || columns <= 0 || columns > 16 || pieceTypes <= 0 || pieceTypes > 15
+          || hidden <= 0 || hidden > 1 << 16) {
+        throw new IOException(file + " has the wrong sizes for a network");
+      }
+      int inputs = 2 * pieceTypes * rows * columns;
+      long size = HEADER_BYTES + 2L * ((long) inputs * hidden + hidden + 2 * hidden) + 4;
+      if (channel.size() != size) {
+        throw new IOException(file + " should be " + size + " bytes long, not " + channel.size());
+      }
+      short[] inputWeights = new short[inputs * hidden];
+      short[] hiddenBiases = new short[hidden];
+      short[] outputWeights = new short[2 * hidden];
+      buffer.position(HEADER_BYTES);
+      buffer.asShortBuffer().get(inputWeights).get(hiddenBiases).get(outputWeights);
+      int outputBias = buffer.getInt((int) size - 4);
+      return new NnueNetwork(rows, columns, pieceTypes, hidden, inputWeights, hiddenBiases, outputWeights, outputBias);
+    }
+  }
+
+  /*
+   * Write the network to a file in the layout load reads
+   * @param file: the path of the file, replaced if it exists
+   */
+  public void write(Path file) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 2 * (inputWeights.length + hidden + 2 * hidden) + 4)
+      .order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(columns).putInt(pieceTypes).putInt(hidden);
+    buffer.position(HEADER_BYTES);
+    buffer.asShortBuffer().put(inputWeights).put(hiddenBiases).put(outputWeights);
+    buffer.putInt(buffer.capacity() - 4, outputBias);
+    buffer.position(0);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+
+  /*
+   * Return a network of small random weights, for trying out the inference without a trained network
+   * @param rows: the number of rows of the board
+   * @param columns: the number of columns of the board
+   * @param pieceTypes: the number of piece types of the game
+   * @param hidden: the number of hidden sums
+   * @param seed: the seed of the weights
+   */
+  public static NnueNetwork random(int rows, int columns, int pieceTypes, int hidden, long seed) {
+    Random random = new Random(seed);
+    short[] inputWeights = new short[2 * pieceTypes * rows * columns * hidden];
+    short[] hiddenBiases = new short[hidden];
+    short[] outputWeights = new short[2 * hidden];
+    for (int i = 0; i < inputWeights.length; i++) {
+      inputWeights[i] = (short) (random.nextInt(129) - 64);
+    }
+    for (int i = 0; i < hidden; i++) {
+      hiddenBiases[i] = (short) random.nextInt(QA);
+    }
+    for (int i = 0; i < outputWeights.length; i++) {
+      outputWeights[i] = (short) (random.nextInt(65) - 32);
+    }
+    return new NnueNetwork(rows, columns, pieceTypes, hidden, inputWeights, hiddenBiases, outputWeights, 0);
+  }
+
+  /** Return the number of rows of the board of the network */
+  public int getRows() {
+    return rows;
+  }
+
+  /** Return the number of columns of the board of the network */
+  public int getColumns() {
+    return columns;
+  }
+
+  /** Return the number of hidden sums */
+  public int getHidden() {
+    return hidden;
+  }
+
+  /*
+   * Return the input of a piece on a square seen from a side, or -1 if the piece is of no type of the game
+   * @param perspective: the side seeing the board
+   * @param side: the side of the piece
+   * @param code: the code of the piece (see PackedMove.pieceCode)
+   * @param row: the row of the square
+   * @param column: the column of the square
+   */
+  int input(ChessGame.Side perspective, ChessGame.Side side, int code, int row, int column) {
+    if (code <= 0 || code > pieceTypes) return -1;
+    int seenRow = perspective == ChessGame.Side.NORTH ? row : rows - 1 - row;
+    return ((side == perspective ? 0 : pieceTypes) + code - 1) * rows * columns + seenRow * columns + column;
+  }
+
+  /*
+   * Set hidden sums to the hidden biases
+   * @param sums: the hidden sums
+   */
+  void reset(short[] sums) {
+    System.arraycopy(hiddenBiases, 0, sums, 0, hidden);
+  }
+
+  /*
+   * Add the weights of an input to hidden sums
+   * @param sums: the hidden sums
+   * @param input: the input (see input)
+   */
+  void add(short[] sums, int input) {
+    short[] weights = inputWeights;
+    int offset = input * hidden;
+    for (int i = 0; i < hidden; i++) {
+      sums[i] = (short) (sums[i] + weights[offset + i]);
+    }
+  }
+
+  /*
+   * Take the weights of an input off hidden sums
+   * @param sums: the hidden sums
+   * @param input: the input (see input)
+   */
+  void subtract(short[] sums, int input) {
+    short[] weights = inputWeights;
+    int offset = input * hidden;
+    for (int i = 0; i < hidden; i++) {
+      sums[i] = (short) (sums[i] - weights[offset + i]);
+    }
+  }
+
+  /*
+   * Return the score of the hidden sums of two sides for the first one, in hundredths of a pawn.  The sum is a long:
+   * a term can reach QA * 32767, so an int overflows past a few hundred hidden sums.
+   * @param us: the hidden sums of the side to score for
+   * @param them: the hidden sums of the other side
+   */
+  int output(short[] us, short[] them) {
+    short[] weights = outputWeights;
+    long sum = 0;
+    for (int i = 0; i < hidden; i++) {
+      sum += Math.min(Math.max(us[i], 0), QA) * weights[i];
+    }
+    for (int i = 0; i < hidden; i++) {
+      sum += Math.min(Math.max(them[i], 0), QA) * weights[hidden + i];
+    }
+    long score = (sum + outputBias) * SCALE / (QA * QB);
+    return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, score));
+  }
+
+  /** Main method to check the updated sums against sums computed from scratch and time the updates */
+  public static void main(String[] args) throws IOException {
+    Path file;
+    if (args.length > 0) {
+      file = Path.of(args[0]);
+    } else {
+      file = Files.createTempFile("nnue", ".bin");
+      file.toFile().deleteOnExit();
+      random(8, 8, EuropeanPieceType.values().length, 256, 1).write(file);
+    }
+    int length = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    NnueNetwork network = load(file);
+    HeadlessChessBoard board = Fen.read(network.getRows() == XiangqiMasks.ROWS ? Fen.XIANGQI_START : Fen.EUROPEAN_START);
+    board.setNetwork(network);
+    NnueAccumulator fresh = new NnueAccumulator(network);
+    Random random = new Random(1);
+    int[] moves = new int[MoveGenerator.MAX_MOVES];
+    int[] game = new int[length];
+    int plies = 0;
+    int mismatches = 0;
+    while (plies < length) {
+      ChessGame.Side side = ((Chess) board.getGameRules()).getProperSide();
+      int legal = MoveGenerator.generateLegalMoves(board, side, moves);
+      if (legal == 0) break;
+      game[plies] = moves[random.nextInt(legal)];
+      board.makeMove(game[plies++]);
+      fresh.refresh(board);
+      if (fresh.evaluate(side) != board.evaluate(side)) mismatches++;
+    }
+    System.out.println("plies: " + plies + "  mismatches with sums from scratch: " + mismatches);
+    // time the game played back and forth with an evaluation after every move
+    long evaluations = 0;
+    long checksum = 0;
+    long start = System.nanoTime();
+    while (System.nanoTime() - start < 2000000000L) {
+      for (int i = 0; i < plies; i++) {
+        board.unmakeMove();
+        checksum += board.evaluate(ChessGame.Side.NORTH);
+      }
+      for (int i = 0; i < plies; i++) {
+        board.makeMove(game[i]);
+        checksum += board.evaluate(ChessGame.Side.NORTH);
+      }
+      evaluations += 2 * plies;
+    }
+    long nanos = System.nanoTime() - start;
+    System.out.println("moves with evaluation: " + evaluations * 1000000000L / nanos + "/s  (checksum " + checksum + ")");
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Helpers to pack a move into a single int so move lists can be kept in plain int arrays.
+ * A square is packed as (row << 4) | column, which fits both the 8x8 and the 10x9 board.
+ * bits 0-7: from square, bits 8-15: to square, bits 16-19: flags,
+ * bits 20-23: promotion piece code, bits 24-27: captured piece code.
+ * A piece code is the ordinal of its EuropeanPieceType or XiangQiPieceType plus one (0 means no piece).
+ * @author: Nhien Phan
+ */
+public final class PackedMove {
+  // the move captures a piece
+  public static final int CAPTURE = 1;
+  // the move is a castle move of the king
+  public static final int CASTLE = 2;
+  // the move promotes a pawn
+  public static final int PROMOTION = 4;
+
+  // this class only holds static helpers
+  private PackedMove() {
+  }
+
+  /*
+   * Pack a move
+   * @param fromRow: the row the piece moves from
+   * @param fromColumn: the column the piece moves from
+   * @param toRow: the row the piece moves to
+   * @param toColumn: the column the piece moves to
+   * @param flags: the flags of the move
+   * @param promotion: the code of the piece a pawn promotes to (0 if none)
+   * @param captured: the code of the piece captured (0 if none)
+   */
+  public static int encode(int fromRow, int fromColumn, int toRow, int toColumn, int flags, int promotion, int captured) {
+    return (fromRow << 4) | fromColumn
+      | (((toRow << 4) | toColumn) << 8)
+      | (flags << 16)
+      | (promotion << 20)
+      | (captured << 24);
+  }
+
+  /** Return the row a move starts from */
+  public static int fromRow(int move) {
+    return (move >>> 4) & 0xF;
+  }
+
+  /** Return the column a move starts from */
+  public static int fromColumn(int move) {
+    return move & 0xF;
+  }
+
+  /** Return the row a move goes to */
+  public static int toRow(int move) {
+    return (move >>> 12) & 0xF;
+  }
+
+  /** Return the column a move goes to */
+  public static int toColumn(int move) {
+    return (move >>> 8) & 0xF;
+  }
+
+  /** Return the flags of a move */
+  public static int flags(int move) {
+    return (move >>> 16) & 0xF;
+  }
+
+  /** Return the code of the piece a pawn promotes to (0 if none) */
+  public static int promotion(int move) {
+    return (move >>> 20) & 0xF;
+  }
+
+  /** Return the code of the piece captured (0 if none) */
+  public static int captured(int move) {
+    return (move >>> 24) & 0xF;
+  }
+
+  /*
+   * Return the code of a piece (0 for null or a piece of neither game)
+   * @param piece: the piece
+   */
+  public static int pieceCode(ChessPiece piece) {
+    return piece == null ? 0 : piece.getPieceCode();
+  }
+
+  /*
+   * Work out the code of a piece from its type (0 for a piece of neither game)
+   * @param piece: the piece
+   */
+  static int typeCode(ChessPiece piece) {
+    EuropeanPieceType europeanType = EuropeanPieceType.of(piece);
+    if (europeanType != null) return europeanType.ordinal() + 1;
+    XiangQiPieceType xiangqiType = XiangQiPieceType.of(piece);
+    if (xiangqiType != null) return xiangqiType.ordinal() + 1;
+    return 0;
+  }
+
+  /*
+   * Return a move in a readable form such as "6,4-4,4"
+   * @param move: the packed move
+   */
+  public static String toString(int move) {
+    return fromRow(move) + "," + fromColumn(move) + "-" + toRow(move) + "," + toColumn(move);
+  }
+}
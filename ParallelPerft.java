@@ -0,0 +1,153 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ * Counts the leaf nodes of the move tree of a position (see Perft) on every core.
+ * The root moves, and the replies to them when the split depth is 2, are counted by fork-join tasks, each on its
+ * own headless copy of the position.  The counts of subtrees are shared through a hash table keyed by the position
+ * hash and the depth, so a position reached again by another move order is only counted once.
+ * Run with:
+ *   java ParallelPerft european|xiangqi|"<fen>" <depth> [threads] [table megabytes]
+ * @author: Nhien Phan
+ */
+public class ParallelPerft {
+  // the pool the subtrees are counted in
+  private final ForkJoinPool pool;
+  // the number of plies split into tasks (1 or 2)
+  private final int splitDepth;
+  // the hash table: the key of each slot xored with its data, and the data (count << 8 | depth)
+  // (the slots are read and written without locks, a slot torn by two writers no longer matches its key)
+  private final long[] table;
+  private final int tableMask;
+
+  /*
+   * Constructor
+   * @param pool: the pool the subtrees are counted in
+   * @param splitDepth: the number of plies split into tasks (1 or 2)
+   * @param tableSlots: the number of slots of the hash table, a power of two (0 for no table)
+   */
+  public ParallelPerft(ForkJoinPool pool, int splitDepth, int tableSlots) {
+    if (splitDepth < 1 || splitDepth > 2) {
+      throw new IllegalArgumentException("The split depth must be 1 or 2: " + splitDepth);
+    }
+    if (tableSlots < 0 || Integer.bitCount(tableSlots) > 1 || tableSlots > (1 << 29)) {
+      throw new IllegalArgumentException("The number of slots must be 0 or a power of two up to 2^29: " + tableSlots);
+    }
+    this.pool = pool;
+    this.splitDepth = splitDepth;
+    this.table = new long[2 * tableSlots];
+    this.tableMask = tableSlots - 1;
+  }
+
+  /*
+   * Count the leaf nodes of the legal move tree of a board for the side to play of its rules
+   * @param board: the board, it is not changed
+   * @param depth: the number of plies
+   */
+  public long perft(HeadlessChessBoard board, int depth) {
+    return pool.invoke(new CountTask(board, depth, Math.min(splitDepth, depth)));
+  }
+
+  /*
+   * The task counting the subtree of one position on its own board
+   */
+  private class CountTask extends RecursiveTask<Long> {
+    private static final long serialVersionUID = 1L;
+    // the board of the task, owned by it
+    private final HeadlessChessBoard board;
+    // the number of plies left
+    private final int depth;
+    // the number of plies still split into tasks
+    private final int split;
+
+    // constructor
+    CountTask(HeadlessChessBoard board, int depth, int split) {
+      this.board = board;
+      this.depth = depth;
+      this.split = split;
+    }
+
+    /** Count the subtree, splitting the moves of the position into tasks if the split depth is not reached */
+    protected Long compute() {
+      if (split == 0 || depth <= 1) {
+        return count(board, depth, new int[Math.max(depth, 1)][MoveGenerator.MAX_MOVES], 0);
+      }
+      ChessGame.Side side = ((Chess) board.getGameRules()).getProperSide();
+      int[] moves = new int[MoveGenerator.MAX_MOVES];
+      int count = MoveGenerator.generateLegalMoves(board, side, moves);
+      // every task gets its own copy of the position after its move
+      List<CountTask> tasks = new ArrayList<>();
+      for (int i = 0; i < count; i++) {
+        board.makeMove(moves[i]);
+        ChessGame.Side next = ((Chess) board.getGameRules()).getProperSide();
+        tasks.add(new CountTask(HeadlessChessBoard.copyOf(board, next), depth - 1, split - 1));
+        board.unmakeMove();
+      }
+      long nodes = 0;
+      for (CountTask task : invokeAll(tasks)) {
+        nodes += task.join();
+      }
+      return nodes;
+    }
+  }
+
+  /*
+   * Count the leaf nodes below a ply, using the hash table for the subtrees of two plies or more
+   * @param board: the board
+   * @param depth: the number of plies left
+   * @param buffers: a move buffer for each ply
+   * @param ply: the distance from the board the buffers were made for
+   */
+  private long count(HeadlessChessBoard board, int depth, int[][] buffers, int ply) {
+    if (depth == 0) return 1;
+    long key = board.getHash();
+    int slot = 0;
+    if (depth >= 2 && table.length > 0) {
+      slot = 2 * (int) ((key ^ (depth * 0x9E3779B97F4A7C15L)) & tableMask);
+      long data = table[slot + 1];
+      if ((table[slot] ^ data) == key && (data & 0xFF) == depth) {
+        return data >>> 8;
+      }
+    }
+    ChessGame.Side side = ((Chess) board.getGameRules()).getProperSide();
+    int[] moves = buffers[ply];
+    int count = MoveGenerator.generateLegalMoves(board, side, moves);
+    long nodes = count;
+    if (depth > 1) {
+      nodes = 0;
+      for (int i = 0; i < count; i++) {
+        board.makeMove(moves[i]);
+        nodes += count(board, depth - 1, buffers, ply + 1);
+        board.unmakeMove();
+      }
+    }
+    if (depth >= 2 && table.length > 0) {
+      long data = (nodes << 8) | depth;
+      table[slot + 1] = data;
+      table[slot] = key ^ data;
+    }
+    return nodes;
+  }
+
+  /** Main method to count the nodes of a position on every core */
+  public static void main(String[] args) {
+    if (args.length < 2) {
+      System.out.println("usage: java ParallelPerft european|xiangqi|\"<fen>\" <depth> [threads] [table megabytes]");
+      return;
+    }
+    String fen = args[0].equals("european") ? Fen.EUROPEAN_START : args[0].equals("xiangqi") ? Fen.XIANGQI_START : args[0];
+    int depth = Integer.parseInt(args[1]);
+    int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    int megabytes = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+    // a slot is two longs (16 bytes)
+    int slots = megabytes <= 0 ? 0 : (int) Math.min(1L << 29, Long.highestOneBit(megabytes * (1L << 20) / 16));
+    ParallelPerft perft = new ParallelPerft(new ForkJoinPool(threads), 2, slots);
+    long start = System.nanoTime();
+    long nodes = perft.perft(Fen.read(fen), depth);
+    long time = System.nanoTime() - start;
+    System.out.println("nodes: " + nodes + "  threads: " + threads + "  time: " + time / 1000000 + " ms  speed: "
+                         + (time == 0 ? 0 : nodes * 1000000000L / time) + " nodes/s");
+  }
+}
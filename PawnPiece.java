@@ -6,6 +6,10 @@ import java.util.ArrayList;
  */
 
 public class PawnPiece extends ChessPiece {
+  // the pieces a pawn can promote to
+  private static final EuropeanPieceType[] PROMOTION_TYPES = {
+    EuropeanPieceType.Q, EuropeanPieceType.R, EuropeanPieceType.B, EuropeanPieceType.N
+  };
   // possibleMoves stores all possible move for the piece
   private final ArrayList<Cell> possibleMoves = new ArrayList<>();
   // firstMove check if this is the first move of the piece
@@ -95,7 +99,7 @@ public class PawnPiece extends ChessPiece {
     // check move for black side
     else {
       // if reach the end of the board
-      if (row == 8)
+      if (row == 7)
         return possibleMoves;
       // if the cell is empty
       if (this.getChessBoard().getPiece(row + 1, column) == null) {
@@ -117,20 +121,97 @@ public class PawnPiece extends ChessPiece {
     return possibleMoves;
   }
   
+  /*
+   * Write the packed moves of this pawn into a buffer without allocating (see PackedMove)
+   * @param moves: the buffer to write the moves into
+   * @param count: the number of moves already in the buffer
+   */
+  public int generateMoves(int[] moves, int count) {
+    int step = this.getSide() == ChessGame.Side.NORTH ? -1 : 1;
+    int startRow = this.getSide() == ChessGame.Side.NORTH ? 6 : 1;
+    int toRow = this.getRow() + step;
+    if (!onBoard(toRow, this.getColumn())) {
+      return count;
+    }
+    // if the cell is empty
+    if (!getChessBoard().hasPiece(toRow, this.getColumn())) {
+      count = addPawnMove(moves, count, toRow, this.getColumn());
+      // if first move
+      if (this.getRow() == startRow && !getChessBoard().hasPiece(toRow + step, this.getColumn())) {
+        count = addMove(moves, count, toRow + step, this.getColumn());
+      }
+    }
+    // if the cell has a piece of the other side
+    for (int toColumn = this.getColumn() - 1; toColumn <= this.getColumn() + 1; toColumn += 2) {
+      if (onBoard(toRow, toColumn) && getChessBoard().hasPiece(toRow, toColumn)) {
+        count = addPawnMove(moves, count, toRow, toColumn);
+      }
+    }
+    return count;
+  }
+  
+  /*
+   * Write the squares this pawn attacks into a buffer, whatever is on them (see AttackMap)
+   * A pawn only captures diagonally, so its moves forward attack nothing and the diagonal squares are
+   * attacked even when they are empty.
+   * @param moves: the buffer to write the squares into, as packed moves
+   * @param count: the number of moves already in the buffer
+   */
+  public int generateAttacks(int[] moves, int count) {
+    int toRow = this.getRow() + (this.getSide() == ChessGame.Side.NORTH ? -1 : 1);
+    for (int toColumn = this.getColumn() - 1; toColumn <= this.getColumn() + 1; toColumn += 2) {
+      if (onBoard(toRow, toColumn)) {
+        moves[count++] = PackedMove.encode(this.getRow(), this.getColumn(), toRow, toColumn, 0, 0, 0);
+      }
+    }
+    return count;
+  }
+  
+  /*
+   * Write a pawn move, or one move for each promotion piece if the pawn reaches the end of the board
+   * @param moves: the buffer to write the moves into
+   * @param count: the number of moves already in the buffer
+   * @param toRow: the row the pawn moves to
+   * @param toColumn: the column the pawn moves to
+   */
+  private int addPawnMove(int[] moves, int count, int toRow, int toColumn) {
+    if (toRow != 0 && toRow != 7) {
+      return addMove(moves, count, toRow, toColumn);
+    }
+    for (EuropeanPieceType type : PROMOTION_TYPES) {
+      int added = addMove(moves, count, toRow, toColumn);
+      if (added > count) {
+        moves[count] |= PackedMove.encode(0, 0, 0, 0, PackedMove.PROMOTION, type.ordinal() + 1, 0);
+      }
+      count = added;
+    }
+    return count;
+  }
+  
   /*
    * Check if this move is a legal move (return true if it is legal (false if illegal)
    * @param toRow: the destination's row
    * @param toColumn: the destination's column
    */
   public boolean isLegalMove(int toRow, int toColumn) {
-    Cell targetSquare = new Cell(toRow, toColumn);
-    move(this.getChessBoard(), this.getRow(), this.getColumn());
-    for (Cell possibleMove : possibleMoves) {
-      if ((possibleMove.compareTo(targetSquare) == 0)
-            && (super.isLegalMove(toRow, toColumn))) return true;
+    int step = this.getSide() == ChessGame.Side.NORTH ? -1 : 1;
+    int startRow = this.getSide() == ChessGame.Side.NORTH ? 6 : 1;
+    if (!onBoard(toRow, toColumn)) return false;
+    // move forward to an empty cell
+    if (toColumn == this.getColumn()) {
+      if (getChessBoard().hasPiece(toRow, toColumn)) return false;
+      if (toRow == this.getRow() + step) return true;
+      // if first move
+      return this.getRow() == startRow && toRow == this.getRow() + 2 * step
+        && !getChessBoard().hasPiece(this.getRow() + step, toColumn);
     }
-    return false;
+    // capture a piece of the other side diagonally
+    return toRow == this.getRow() + step
+      && Math.abs(toColumn - this.getColumn()) == 1
+      && getChessBoard().hasPiece(toRow, toColumn)
+      && getChessBoard().getPiece(toRow, toColumn).getSide() != this.getSide();
   }
+
   
   /*
    * Check if this move is a legal non-capture move (return true if it is legal (false if illegal)
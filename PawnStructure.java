@@ -0,0 +1,79 @@
+/*
+ * The pawn-structure features of one position, counted for each side.
+ * European pawns are counted as doubled, isolated, backward and passed; xiangqi soldiers as doubled, across the
+ * river and linked into chains of soldiers standing next to each other past the river.
+ * The features only depend on where the pawns and soldiers stand, so one result serves every position with the
+ * same pawns (see PawnStructureAnalyzer).
+ * @author: Nhien Phan
+ */
+public class PawnStructure {
+  // the features of each side (indexed by side ordinal)
+  private final int[] doubled;
+  private final int[] isolated;
+  private final int[] backward;
+  private final int[] passed;
+  private final int[] crossed;
+  private final int[] linked;
+  private final int[] longestChain;
+
+  // constructor
+  PawnStructure(int[] doubled, int[] isolated, int[] backward, int[] passed, int[] crossed, int[] linked,
+                int[] longestChain) {
+    this.doubled = doubled;
+    this.isolated = isolated;
+    this.backward = backward;
+    this.passed = passed;
+    this.crossed = crossed;
+    this.linked = linked;
+    this.longestChain = longestChain;
+  }
+
+  /** Return the number of pawns or soldiers of a side standing behind another one of the side on their column */
+  public int getDoubled(ChessGame.Side side) {
+    return doubled[side.ordinal()];
+  }
+
+  /** Return the number of pawns of a side with no pawn of the side on the columns next to them */
+  public int getIsolated(ChessGame.Side side) {
+    return isolated[side.ordinal()];
+  }
+
+  /** Return the number of pawns of a side left behind their neighbours, whose next square an enemy pawn guards */
+  public int getBackward(ChessGame.Side side) {
+    return backward[side.ordinal()];
+  }
+
+  /** Return the number of pawns of a side with no enemy pawn ahead of them on their column or the columns next to it */
+  public int getPassed(ChessGame.Side side) {
+    return passed[side.ordinal()];
+  }
+
+  /** Return the number of soldiers of a side across the river */
+  public int getCrossed(ChessGame.Side side) {
+    return crossed[side.ordinal()];
+  }
+
+  /** Return the number of soldiers of a side across the river standing next to another one of the side */
+  public int getLinked(ChessGame.Side side) {
+    return linked[side.ordinal()];
+  }
+
+  /** Return the number of soldiers in the longest chain of a side across the river */
+  public int getLongestChain(ChessGame.Side side) {
+    return longestChain[side.ordinal()];
+  }
+
+  /** Return the features of both sides as text */
+  @Override
+  public String toString() {
+    StringBuilder text = new StringBuilder();
+    for (ChessGame.Side side : new ChessGame.Side[] {ChessGame.Side.NORTH, ChessGame.Side.SOUTH}) {
+      int i = side.ordinal();
+      text.append(side).append(": doubled ").append(doubled[i]).append(", isolated ").append(isolated[i])
+        .append(", backward ").append(backward[i]).append(", passed ").append(passed[i])
+        .append(", crossed ").append(crossed[i]).append(", linked ").append(linked[i])
+        .append(", longest chain ").append(longestChain[i]).append(side == ChessGame.Side.NORTH ? "; " : "");
+    }
+    return text.toString();
+  }
+}
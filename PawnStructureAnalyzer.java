@@ -0,0 +1,240 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * Finds the pawn-structure features of positions (see PawnStructure) and keeps them in a cache keyed by the
+ * Zobrist hash of the pawns and soldiers alone (see Zobrist.pawnHash).  Pawns move and get taken far less often
+ * than the other pieces, so along a game most positions share their pawns with an earlier one and are answered
+ * from the cache instead of scanning the board again.  A headless board keeps its pawn hash up to date as pieces
+ * move, so a cache hit on it does not look at the board at all.
+ * The analyzer counts its hits and misses.  It is not thread-safe: use one analyzer per thread.
+ * Run with:
+ *   java PawnStructureAnalyzer [plies] ["<fen>"]
+ * @author: Nhien Phan
+ */
+public class PawnStructureAnalyzer {
+  // the number of entries of the cache and the mask of an entry index
+  private final int size;
+  private final int mask;
+  // the pawn hash and the structure of each entry (null for an empty entry)
+  private final long[] keys;
+  private final PawnStructure[] structures;
+  // the number of positions answered from the cache and the number analyzed
+  private long hits;
+  private long misses;
+
+  /*
+   * Constructor
+   * @param size: the number of entries of the cache, a power of two
+   */
+  public PawnStructureAnalyzer(int size) {
+    if (size <= 0 || Integer.bitCount(size) != 1) {
+      throw new IllegalArgumentException("The size of the cache must be a power of two: " + size);
+    }
+    this.size = size;
+    this.mask = size - 1;
+    this.keys = new long[size];
+    this.structures = new PawnStructure[size];
+  }
+
+  /*
+   * Return the pawn structure of a board, from the cache if its pawns have been seen before
+   * @param board: the board
+   */
+  public PawnStructure analyze(ChessBoard board) {
+    long key = board instanceof HeadlessChessBoard ? ((HeadlessChessBoard) board).getPawnHash() : Zobrist.pawnHash(board);
+    int index = (int) (key ^ (key >>> 32)) & mask;
+    PawnStructure structure = structures[index];
+    if (structure != null && keys[index] == key) {
+      hits++;
+      return structure;
+    }
+    misses++;
+    structure = board.numRows() == XiangqiMasks.ROWS ? analyzeSoldiers(board) : analyzePawns(board);
+    keys[index] = key;
+    structures[index] = structure;
+    return structure;
+  }
+
+  /** Return the number of positions answered from the cache */
+  public long getHits() {
+    return hits;
+  }
+
+  /** Return the number of positions analyzed because the cache did not have them */
+  public long getMisses() {
+    return misses;
+  }
+
+  /** Return the share of the positions answered from the cache (0 to 1) */
+  public double getHitRate() {
+    long total = hits + misses;
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  /** Set the hit and miss counts back to zero, keeping the cache */
+  public void resetCounters() {
+    hits = 0;
+    misses = 0;
+  }
+
+  /** Empty the cache and set the counts back to zero */
+  public void clear() {
+    Arrays.fill(structures, null);
+    resetCounters();
+  }
+
+  /** Return the number of entries of the cache */
+  public int getSize() {
+    return size;
+  }
+
+  /*
+   * Return the rows of the pieces of one class of each side on each column, as a bit set of rows
+   * (indexed by side ordinal, then column)
+   * @param board: the board
+   * @param type: the class of the pieces
+   */
+  private static int[][] rowsByColumn(ChessBoard board, Class<? extends ChessPiece> type) {
+    int[][] rows = new int[ChessGame.Side.values().length][board.numColumns()];
+    for (int i = 0; i < board.numRows(); i++) {
+      for (int j = 0; j < board.numColumns(); j++) {
+        ChessPiece piece = board.getPiece(i, j);
+        if (type.isInstance(piece)) {
+          rows[piece.getSide().ordinal()][j] |= 1 << i;
+        }
+      }
+    }
+    return rows;
+  }
+
+  /*
+   * Return the number of pieces behind another one of their side on the same column
+   * @param rows: the rows of the pieces of a side on each column
+   */
+  private static int doubled(int[] rows) {
+    int count = 0;
+    for (int column : rows) {
+      count += Math.max(Integer.bitCount(column) - 1, 0);
+    }
+    return count;
+  }
+
+  /*
+   * Find the features of the european pawns of a board
+   * @param board: the board
+   */
+  private static PawnStructure analyzePawns(ChessBoard board) {
+    int sides = ChessGame.Side.values().length;
+    int[] doubled = new int[sides];
+    int[] isolated = new int[sides];
+    int[] backward = new int[sides];
+    int[] passed = new int[sides];
+    int[][] rows = rowsByColumn(board, PawnPiece.class);
+    int numColumns = board.numColumns();
+    for (ChessGame.Side side : new ChessGame.Side[] {ChessGame.Side.NORTH, ChessGame.Side.SOUTH}) {
+      int us = side.ordinal();
+      int[] own = rows[us];
+      int[] enemy = rows[side == ChessGame.Side.NORTH ? ChessGame.Side.SOUTH.ordinal() : ChessGame.Side.NORTH.ordinal()];
+      // NORTH pawns move towards row 0, SOUTH pawns towards the last row
+      int forward = side == ChessGame.Side.NORTH ? -1 : 1;
+      doubled[us] = doubled(own);
+      for (int column = 0; column < numColumns; column++) {
+        int left = column > 0 ? own[column - 1] : 0;
+        int right = column < numColumns - 1 ? own[column + 1] : 0;
+        int enemyLeft = column > 0 ? enemy[column - 1] : 0;
+        int enemyRight = column < numColumns - 1 ? enemy[column + 1] : 0;
+        int enemyNear = enemyLeft | enemy[column] | enemyRight;
+        for (int pawns = own[column]; pawns != 0; pawns &= pawns - 1) {
+          int row = Integer.numberOfTrailingZeros(pawns);
+          // the rows ahead of the pawn and the rows level with it or behind it
+          int ahead = forward < 0 ? (1 << row) - 1 : ~((2 << row) - 1);
+          int behind = ~ahead;
+          if ((left | right) == 0) {
+            isolated[us]++;
+          } else {
+            // no neighbour to cover its next square, and an enemy pawn guards that square
+            int stop = row + forward;
+            int guard = stop + forward;
+            if ((left & behind) == 0 && (right & behind) == 0 && guard >= 0 && guard < board.numRows()
+                && ((enemyLeft | enemyRight) & (1 << guard)) != 0) {
+              backward[us]++;
+            }
+          }
+          if ((enemyNear & ahead) == 0) {
+            passed[us]++;
+          }
+        }
+      }
+    }
+    return new PawnStructure(doubled, isolated, backward, passed, new int[sides], new int[sides], new int[sides]);
+  }
+
+  /*
+   * Find the features of the xiangqi soldiers of a board
+   * @param board: the board
+   */
+  private static PawnStructure analyzeSoldiers(ChessBoard board) {
+    int sides = ChessGame.Side.values().length;
+    int[] doubled = new int[sides];
+    int[] crossed = new int[sides];
+    int[] linked = new int[sides];
+    int[] longestChain = new int[sides];
+    int[][] rows = rowsByColumn(board, SoldierPiece.class);
+    int numColumns = board.numColumns();
+    for (ChessGame.Side side : new ChessGame.Side[] {ChessGame.Side.NORTH, ChessGame.Side.SOUTH}) {
+      int us = side.ordinal();
+      doubled[us] = doubled(rows[us]);
+      // NORTH soldiers cross the river into rows 0 to 4, SOUTH soldiers into rows 5 to 9
+      int river = side == ChessGame.Side.NORTH ? 0x1F : 0x1F << 5;
+      int[] across = new int[numColumns];
+      for (int column = 0; column < numColumns; column++) {
+        across[column] = rows[us][column] & river;
+        crossed[us] += Integer.bitCount(across[column]);
+      }
+      // take the chains of soldiers standing next to each other off one at a time
+      for (int column = 0; column < numColumns; column++) {
+        while (across[column] != 0) {
+          int chain = takeChain(across, column, Integer.numberOfTrailingZeros(across[column]));
+          if (chain > 1) linked[us] += chain;
+          longestChain[us] = Math.max(longestChain[us], chain);
+        }
+      }
+    }
+    return new PawnStructure(doubled, new int[sides], new int[sides], new int[sides], crossed, linked, longestChain);
+  }
+
+  /*
+   * Take a soldier and every soldier linked to it off a set of soldiers and return how many were taken
+   * @param across: the rows of the soldiers on each column, changed
+   * @param column: the column of the soldier
+   * @param row: the row of the soldier
+   */
+  private static int takeChain(int[] across, int column, int row) {
+    if (column < 0 || column >= across.length || row < 0 || (across[column] & (1 << row)) == 0) return 0;
+    across[column] &= ~(1 << row);
+    return 1 + takeChain(across, column - 1, row) + takeChain(across, column + 1, row)
+      + takeChain(across, column, row - 1) + takeChain(across, column, row + 1);
+  }
+
+  /** Main method to annotate a game of random moves and print how often the pawn cache answered */
+  public static void main(String[] args) {
+    int length = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    String fen = args.length > 1 ? args[1] : Fen.EUROPEAN_START;
+    HeadlessChessBoard board = Fen.read(fen);
+    PawnStructureAnalyzer analyzer = new PawnStructureAnalyzer(1 << 12);
+    Random random = new Random(1);
+    int[] moves = new int[MoveGenerator.MAX_MOVES];
+    System.out.println(analyzer.analyze(board));
+    for (int ply = 0; ply < length; ply++) {
+      ChessGame.Side side = ((Chess) board.getGameRules()).getProperSide();
+      int legal = MoveGenerator.generateLegalMoves(board, side, moves);
+      if (legal == 0) break;
+      board.makeMove(moves[random.nextInt(legal)]);
+      analyzer.analyze(board);
+    }
+    System.out.println(analyzer.analyze(board));
+    System.out.println("hits: " + analyzer.getHits() + "  misses: " + analyzer.getMisses()
+                         + "  hit rate: " + Math.round(analyzer.getHitRate() * 100) + "%");
+  }
+}
@@ -0,0 +1,155 @@
+import java.io.PrintStream;
+
+/*
+ * Counts the leaf nodes of the move tree of a position to a fixed depth (perft).
+ * The counts check the move generation of the pieces against published numbers, and the time they take
+ * measures its speed.  Run with:
+ *   java Perft european|xiangqi|"<fen>" <depth> [divide]
+ *   java Perft suite
+ * @author: Nhien Phan
+ */
+public final class Perft {
+  // the reference positions, the depth of each check and the number of leaf nodes published for it
+  // (the depths stop before the published counts include en passant captures, which the rules of the project do not have)
+  private static final String[] SUITE_FEN = {
+    Fen.EUROPEAN_START,
+    Fen.EUROPEAN_START,
+    Fen.EUROPEAN_START,
+    Fen.EUROPEAN_START,
+    // "position 3" of the chess programming wiki
+    "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+    // "position 4", promotions and castles
+    "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+    "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+    // "position 5"
+    "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+    "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+    "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+    // castling through a square attacked by a pawn, counted by hand
+    "4k3/8/8/8/8/8/4p3/4K2R w K - 0 1",
+    Fen.XIANGQI_START,
+    Fen.XIANGQI_START,
+    Fen.XIANGQI_START,
+    Fen.XIANGQI_START,
+  };
+  private static final int[] SUITE_DEPTH = {1, 2, 3, 4, 2, 1, 2, 1, 2, 3, 1, 1, 2, 3, 4};
+  private static final long[] SUITE_NODES = {20, 400, 8902, 197281, 191, 6, 264, 44, 1486, 62379, 12, 44, 1920, 79666, 3290240};
+
+  // this class only holds static helpers
+  private Perft() {
+  }
+
+  /*
+   * Count the leaf nodes of the legal move tree of a board for the side to play of its rules
+   * @param board: the board, back in the same position when the count returns
+   * @param depth: the number of plies
+   */
+  public static long perft(HeadlessChessBoard board, int depth) {
+    return count(board, depth, new int[Math.max(depth, 1)][MoveGenerator.MAX_MOVES]);
+  }
+
+  /*
+   * Count the leaf nodes below each root move and print them, one line per move, then the total
+   * @param board: the board
+   * @param depth: the number of plies
+   * @param out: the stream to print to
+   * return the total number of leaf nodes
+   */
+  public static long divide(HeadlessChessBoard board, int depth, PrintStream out) {
+    int[][] buffers = new int[Math.max(depth, 1)][MoveGenerator.MAX_MOVES];
+    ChessGame.Side side = ((Chess) board.getGameRules()).getProperSide();
+    int count = MoveGenerator.generateLegalMoves(board, side, buffers[0]);
+    long total = 0;
+    for (int i = 0; i < count; i++) {
+      int move = buffers[0][i];
+      board.makeMove(move);
+      long nodes = depth <= 1 ? 1 : count(board, depth - 1, buffers, 1);
+      board.unmakeMove();
+      out.println(PackedMove.toString(move) + ": " + nodes);
+      total += nodes;
+    }
+    out.println("total: " + total);
+    return total;
+  }
+
+  /*
+   * Count the leaf nodes with the move buffers of each ply
+   * @param board: the board
+   * @param depth: the number of plies
+   * @param buffers: a move buffer for each ply
+   */
+  private static long count(HeadlessChessBoard board, int depth, int[][] buffers) {
+    return count(board, depth, buffers, 0);
+  }
+
+  /*
+   * Count the leaf nodes below a ply
+   * @param board: the board
+   * @param depth: the number of plies left
+   * @param buffers: a move buffer for each ply
+   * @param ply: the distance from the root
+   */
+  private static long count(HeadlessChessBoard board, int depth, int[][] buffers, int ply) {
+    if (depth == 0) return 1;
+    ChessGame.Side side = ((Chess) board.getGameRules()).getProperSide();
+    int[] moves = buffers[ply];
+    int count = MoveGenerator.generateLegalMoves(board, side, moves);
+    // the last ply only needs the legal moves counted
+    if (depth == 1) return count;
+    long nodes = 0;
+    for (int i = 0; i < count; i++) {
+      board.makeMove(moves[i]);
+      nodes += count(board, depth - 1, buffers, ply + 1);
+      board.unmakeMove();
+    }
+    return nodes;
+  }
+
+  /*
+   * Run every position of the reference suite and print the count, the expected count and the speed
+   * @param out: the stream to print to
+   * return true if every count is right
+   */
+  public static boolean runSuite(PrintStream out) {
+    boolean passed = true;
+    for (int i = 0; i < SUITE_FEN.length; i++) {
+      HeadlessChessBoard board = Fen.read(SUITE_FEN[i]);
+      long start = System.nanoTime();
+      long nodes = perft(board, SUITE_DEPTH[i]);
+      long time = System.nanoTime() - start;
+      boolean right = nodes == SUITE_NODES[i];
+      passed &= right;
+      out.println((right ? "ok   " : "FAIL ") + SUITE_FEN[i] + " depth " + SUITE_DEPTH[i] + ": " + nodes
+                    + " (expected " + SUITE_NODES[i] + ") " + nodesPerSecond(nodes, time) + " nodes/s");
+    }
+    return passed;
+  }
+
+  /*
+   * Return the number of nodes per second
+   * @param nodes: the number of nodes
+   * @param nanos: the time in nanoseconds
+   */
+  private static long nodesPerSecond(long nodes, long nanos) {
+    return nanos == 0 ? 0 : nodes * 1000000000L / nanos;
+  }
+
+  /** Main method to count the nodes of a position or run the reference suite */
+  public static void main(String[] args) {
+    if (args.length == 1 && args[0].equals("suite")) {
+      System.exit(runSuite(System.out) ? 0 : 1);
+    }
+    if (args.length < 2) {
+      System.out.println("usage: java Perft european|xiangqi|\"<fen>\" <depth> [divide]");
+      System.out.println("       java Perft suite");
+      return;
+    }
+    String fen = args[0].equals("european") ? Fen.EUROPEAN_START : args[0].equals("xiangqi") ? Fen.XIANGQI_START : args[0];
+    HeadlessChessBoard board = Fen.read(fen);
+    int depth = Integer.parseInt(args[1]);
+    long start = System.nanoTime();
+    long nodes = args.length > 2 && args[2].equals("divide") ? divide(board, depth, System.out) : perft(board, depth);
+    long time = System.nanoTime() - start;
+    System.out.println("nodes: " + nodes + "  time: " + time / 1000000 + " ms  speed: " + nodesPerSecond(nodes, time) + " nodes/s");
+  }
+}
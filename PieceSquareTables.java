@@ -0,0 +1,359 @@
+/*
+ * Material and piece-square tables of both games, for a midgame and an endgame score of each side.
+ * The tables are written from the side of NORTH, whose pieces start on the last rows: the first row of a table is
+ * the row the SOUTH pieces start on.  A SOUTH piece looks its square up with the row turned around.
+ * The boards add the values of a piece when it is put on a square and take them off when it leaves, so the
+ * scores are always up to date, and the game phase (the heavy pieces left) blends the two scores.
+ * @author: Nhien Phan
+ */
+public final class PieceSquareTables {
+  // the phase of a european piece (indexed by EuropeanPieceType ordinal) and of the full set of pieces
+  public static final int[] EUROPEAN_PHASE = {0, 2, 1, 1, 4, 0};
+  public static final int EUROPEAN_MAX_PHASE = 24;
+  // the phase of a xiangqi piece (indexed by XiangQiPieceType ordinal) and of the full set of pieces
+  public static final int[] XIANGQI_PHASE = {0, 0, 0, 1, 2, 1, 0};
+  public static final int XIANGQI_MAX_PHASE = 16;
+
+  // the european tables (indexed by EuropeanPieceType ordinal, then row * 8 + column), based on the PeSTO tables
+  private static final int[][] EUROPEAN_MIDGAME = {
+    // pawn
+    {
+        0,   0,   0,   0,   0,   0,   0,   0,
+       98, 134,  61,  95,  68, 126,  34, -11,
+       -6,   7,  26,  31,  65,  56,  25, -20,
+      -14,  13,   6,  21,  23,  12,  17, -23,
+      -27,  -2,  -5,  12,  17,   6,  10, -25,
+      -26,  -4,  -4, -10,   3,   3,  33, -12,
+      -35,  -1, -20, -23, -15,  24,  38, -22,
+        0,   0,   0,   0,   0,   0,   0,   0,
+    },
+    // rook
+    {
+       32,  42,  32,  51,  63,   9,  31,  43,
+       27,  32,  58,  62,  80,  67,  26,  44,
+       -5,  19,  26,  36,  17,  45,  61,  16,
+      -24, -11,   7,  26,  24,  35,  -8, -20,
+      -36, -26, -12,  -1,   9,  -7,   6, -23,
+      -45, -25, -16, -17,   3,   0,  -5, -33,
+      -44, -16, -20,  -9,  -1,  11,  -6, -71,
+      -19, -13,   1,  17,  16,   7, -37, -26,
+    },
+    // knight
+    {
+      -167, -89, -34, -49,  61, -97, -15, -107,
+       -73, -41,  72,  36,  23,  62,   7,  -17,
+       -47,  60,  37,  65,  84, 129,  73,   44,
+        -9,  17,  19,  53,  37,  69,  18,   22,
+       -13,   4,  16,  13,  28,  19,  21,   -8,
+       -23,  -9,  12,  10,  19,  17,  25,  -16,
+       -29, -53, -12,  -3,  -1,  18, -14,  -19,
+      -105, -21, -58, -33, -17, -28, -19,  -23,
+    },
+    // bishop
+    {
+      -29,   4, -82, -37, -25, -42,   7,  -8,
+      -26,  16, -18, -13,  30,  59,  18, -47,
+      -16,  37,  43,  40,  35,  50,  37,  -2,
+       -4,   5,  19,  50,  37,  37,   7,  -2,
+       -6,  13,  13,  26,  34,  12,  10,   4,
+        0,  15,  15,  15,  14,  27,  18,  10,
+        4,  15,  16,   0,   7,  21,  33,   1,
+      -33,  -3, -14, -21, -13, -12, -39, -21,
+    },
+    // queen
+    {
+      -28,   0,  29,  12,  59,  44,  43,  45,
+      -24, -39,  -5,   1, -16,  57,  28,  54,
+      -13, -17,   7,   8,  29,  56,  47,  57,
+      -27, -27, -16, -16,  -1,  17,  -2,   1,
+       -9, -26,  -9, -10,  -2,  -4,   3,  -3,
+      -14,   2, -11,  -2,  -5,   2,  14,   5,
+      -35,  -8,  11,   2,   8,  15,  -3,   1,
+       -1, -18,  -9,  10, -15, -25, -31, -50,
+    },
+    // king
+    {
+      -65,  23,  16, -15, -56, -34,   2,  13,
+       29,  -1, -20,  -7,  -8,  -4, -38, -29,
+       -9,  24,   2, -16, -20,   6,  22, -22,
+      -17, -20, -12, -27, -30, -25, -14, -36,
+      -49,  -1, -27, -39, -46, -44, -33, -51,
+      -14, -14, -22, -46, -44, -30, -15, -27,
+        1,   7,  -8, -64, -43, -16,   9,   8,
+      -15,  36,  12, -54,   8, -28,  24,  14,
+    },
+  };
+  private static final int[][] EUROPEAN_ENDGAME = {
+    // pawn
+    {
+        0,   0,   0,   0,   0,   0,   0,   0,
+      178, 173, 158, 134, 147, 132, 165, 187,
+       94, 100,  85,  67,  56,  53,  82,  84,
+       32,  24,  13,   5,  -2,   4,  17,  17,
+       13,   9,  -3,  -7,  -7,  -8,   3,  -1,
+        4,   7,  -6,   1,   0,  -5,  -1,  -8,
+       13,   8,   8,  10,  13,   0,   2,  -7,
+        0,   0,   0,   0,   0,   0,   0,   0,
+    },
+    // rook
+    {
+       13,  10,  18,  15,  12,  12,   8,   5,
+       11,  13,  13,  11,  -3,   3,   8,   3,
+        7,   7,   7,   5,   4,  -3,  -5,  -3,
+        4,   3,  13,   1,   2,   1,  -1,   2,
+        3,   5,   8,   4,  -5,  -6,  -8, -11,
+       -4,   0,  -5,  -1,  -7, -12,  -8, -16,
+       -6,  -6,   0,   2,  -9,  -9, -11,  -3,
+       -9,   2,   3,  -1,  -5, -13,   4, -20,
+    },
+    // knight
+    {
+      -58, -38, -13, -28, -31, -27, -63, -99,
+      -25,  -8, -25,  -2,  -9, -25, -24, -52,
+      -24, -20,  10,   9,  -1,  -9, -19, -41,
+      -17,   3,  22,  22,  22,  11,   8, -18,
+      -18,  -6,  16,  25,  16,  17,   4, -18,
+      -23,  -3,  -1,  15,  10,  -3, -20, -22,
+      -42, -20, -10,  -5,  -2, -20, -23, -44,
+      -29, -51, -23, -15, -22, -18, -50, -64,
+    },
+    // bishop
+    {
+      -14, -21, -11,  -8,  -7,  -9, -17, -24,
+       -8,  -4,   7, -12,  -3, -13,  -4, -14,
+        2,  -8,   0,  -1,  -2,   6,   0,   4,
+       -3,   9,  12,   9,  14,  10,   3,   2,
+       -6,   3,  13,  19,   7,  10,  -3,  -9,
+      -12,  -3,   8,  10,  13,   3,  -7, -15,
+      -14, -18,  -7,  -1,   4,  -9, -15, -27,
+      -23,  -9, -23,  -5,  -9, -16,  -5, -17,
+    },
+    // queen
+    {
+       -9,  22,  22,  27,  27,  19,  10,  20,
+      -17,  20,  32,  41,  58,  25,  30,   0,
+      -20,   6,   9,  49,  47,  35,  19,   9,
+        3,  22,  24,  45,  57,  40,  57,  36,
+      -18,  28,  19,  47,  31,  34,  39,  23,
+      -16, -27,  15,   6,   9,  17,  10,   5,
+      -22, -23, -30, -16, -16, -23, -36, -32,
+      -33, -28, -22, -43,  -5, -32, -20, -41,
+    },
+    // king
+    {
+      -74, -35, -18, -18, -11,  15,   4, -17,
+      -12,  17,  14,  17,  17,  38,  23,  11,
+       10,  17,  23,  15,  20,  45,  44,  13,
+       -8,  22,  24,  27,  26,  33,  26,   3,
+      -18,  -4,  21,  24,  27,  23,   9, -11,
+      -19,  -3,  11,  21,  23,  16,   7,  -9,
+      -27, -11,   4,  13,  14,   4,  -5, -17,
+      -53, -34, -21, -11, -28, -14, -24, -43,
+    },
+  };
+
+  // the xiangqi tables (indexed by XiangQiPieceType ordinal, then row * 9 + column)
+  private static final int[][] XIANGQI_MIDGAME = {
+    // king: the safest square is the middle of the back row of the palace
+    {
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0, -24, -20, -24,   0,   0,   0,
+        0,   0,   0, -14,  -8, -14,   0,   0,   0,
+        0,   0,   0,  -4,   0,  -4,   0,   0,   0,
+    },
+    // guard: the middle of the palace covers the king best, the front corners leave it open
+    {
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,  -4,   0,  -4,   0,   0,   0,
+        0,   0,   0,   0,   6,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+    },
+    // elephant
+    {
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,  -2,   0,   0,   0,  -2,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+       -4,   0,   0,   0,   8,   0,   0,   0,  -4,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+    },
+    // horse
+    {
+        4,   8,  16,  12,   4,  12,  16,   8,   4,
+        4,  10,  28,  16,   8,  16,  28,  10,   4,
+       12,  14,  16,  20,  18,  20,  16,  14,  12,
+        8,  24,  18,  24,  20,  24,  18,  24,   8,
+        6,  16,  14,  18,  16,  18,  14,  16,   6,
+        4,  12,  16,  14,  12,  14,  16,  12,   4,
+        2,   6,   8,   6,  10,   6,   8,   6,   2,
+        4,   2,   8,   8,   4,   8,   8,   2,   4,
+        0,   2,   4,   4,  -2,   4,   4,   2,   0,
+        0,  -4,   0,   0,   0,   0,   0,  -4,   0,
+    },
+    // rook
+    {
+       14,  14,  12,  18,  16,  18,  12,  14,  14,
+       16,  20,  18,  24,  26,  24,  18,  20,  16,
+       12,  12,  12,  18,  18,  18,  12,  12,  12,
+       12,  18,  16,  22,  22,  22,  16,  18,  12,
+       12,  14,  12,  18,  18,  18,  12,  14,  12,
+       12,  16,  14,  20,  20,  20,  14,  16,  12,
+        6,  10,   8,  14,  14,  14,   8,  10,   6,
+        4,   8,   6,  14,  12,  14,   6,   8,   4,
+        8,   4,   8,  16,   8,  16,   8,   4,   8,
+       -2,  10,   6,  14,  12,  14,   6,  10,  -2,
+    },
+    // cannon: strongest on the middle file, behind a screen of its own side
+    {
+        6,   4,   0, -10, -12, -10,   0,   4,   6,
+        2,   2,   0,  -4, -14,  -4,   0,   2,   2,
+        2,   2,   0, -10,  -8, -10,   0,   2,   2,
+        0,   0,  -2,   4,  10,   4,  -2,   0,   0,
+        0,   0,   0,   2,   8,   2,   0,   0,   0,
+       -2,   0,   4,   2,   6,   2,   4,   0,  -2,
+        0,   0,   0,   2,   4,   2,   0,   0,   0,
+        4,   0,   8,   6,  10,   6,   8,   0,   4,
+        0,   2,   4,   6,   6,   6,   4,   2,   0,
+        0,   0,   2,   6,   6,   6,   2,   0,   0,
+    },
+    // soldier: worth little before the river, more with every row past it, least on the last row
+    {
+        0,   0,   0,   2,   4,   2,   0,   0,   0,
+       20,  40,  60,  80, 100,  80,  60,  40,  20,
+       20,  36,  50,  60,  70,  60,  50,  36,  20,
+       14,  24,  34,  40,  44,  40,  34,  24,  14,
+       10,  16,  20,  26,  28,  26,  20,  16,  10,
+        0,   0,  -2,   0,   6,   0,  -2,   0,   0,
+        0,   0,  -2,   0,   4,   0,  -2,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+        0,   0,   0,   0,   0,   0,   0,   0,   0,
+    },
+  };
+  // the endgame tables of the king and the soldier, the other pieces use half their midgame table plus a shift
+  private static final int[] XIANGQI_KING_ENDGAME = {
+      0,   0,   0,   0,   0,   0,   0,   0,   0,
+      0,   0,   0,   0,   0,   0,   0,   0,   0,
+      0,   0,   0,   0,   0,   0,   0,   0,   0,
+      0,   0,   0,   0,   0,   0,   0,   0,   0,
+      0,   0,   0,   0,   0,   0,   0,   0,   0,
+      0,   0,   0,   0,   0,   0,   0,   0,   0,
+      0,   0,   0,   0,   0,   0,   0,   0,   0,
+      0,   0,   0,  -8,  -6,  -8,   0,   0,   0,
+      0,   0,   0,  -2,   2,  -2,   0,   0,   0,
+      0,   0,   0,  -4,   0,  -4,   0,   0,   0,
+  };
+  private static final int[] XIANGQI_SOLDIER_ENDGAME = {
+     10,  10,  14,  20,  24,  20,  14,  10,  10,
+     40,  60,  80, 100, 120, 100,  80,  60,  40,
+     40,  56,  70,  80,  90,  80,  70,  56,  40,
+     36,  44,  54,  60,  64,  60,  54,  44,  36,
+     30,  34,  40,  46,  50,  46,  40,  34,  30,
+      0,   0,   4,   0,   8,   0,   4,   0,   0,
+      0,   0,   0,   0,   4,   0,   0,   0,   0,
+      0,   0,   0,   0,   0,   0,   0,   0,   0,
+      0,   0,   0,   0,   0,   0,   0,   0,   0,
+      0,   0,   0,   0,   0,   0,   0,   0,   0,
+  };
+  // the endgame shift of each xiangqi piece: the horse gains as the board empties, the cannon loses its screens
+  private static final int[] XIANGQI_ENDGAME_SHIFT = {0, 0, 0, 20, 0, -30, 0};
+  private static final int[][] XIANGQI_ENDGAME = new int[XiangQiPieceType.values().length][];
+
+  static {
+    for (XiangQiPieceType type : XiangQiPieceType.values()) {
+      int[] table = new int[XiangqiMasks.SQUARES];
+      for (int square = 0; square < table.length; square++) {
+        table[square] = XIANGQI_MIDGAME[type.ordinal()][square] / 2 + XIANGQI_ENDGAME_SHIFT[type.ordinal()];
+      }
+      XIANGQI_ENDGAME[type.ordinal()] = table;
+    }
+    XIANGQI_ENDGAME[XiangQiPieceType.X.ordinal()] = XIANGQI_KING_ENDGAME;
+    XIANGQI_ENDGAME[XiangQiPieceType.S.ordinal()] = XIANGQI_SOLDIER_ENDGAME;
+  }
+
+  // this class only holds tables
+  private PieceSquareTables() {
+  }
+
+  /*
+   * Return the midgame value of a european piece on a square, material included
+   * @param type: the type of the piece
+   * @param side: the side of the piece
+   * @param row: the row of the square
+   * @param column: the column of the square
+   */
+  public static int europeanMidgame(EuropeanPieceType type, ChessGame.Side side, int row, int column) {
+    return type.value + EUROPEAN_MIDGAME[type.ordinal()][europeanIndex(side, row, column)];
+  }
+
+  /*
+   * Return the endgame value of a european piece on a square, material included
+   * @param type: the type of the piece
+   * @param side: the side of the piece
+   * @param row: the row of the square
+   * @param column: the column of the square
+   */
+  public static int europeanEndgame(EuropeanPieceType type, ChessGame.Side side, int row, int column) {
+    return type.value + EUROPEAN_ENDGAME[type.ordinal()][europeanIndex(side, row, column)];
+  }
+
+  /*
+   * Return the midgame value of a xiangqi piece on a square, material included
+   * @param type: the type of the piece
+   * @param side: the side of the piece
+   * @param row: the row of the square
+   * @param column: the column of the square
+   */
+  public static int xiangqiMidgame(XiangQiPieceType type, ChessGame.Side side, int row, int column) {
+    return type.value + XIANGQI_MIDGAME[type.ordinal()][xiangqiIndex(side, row, column)];
+  }
+
+  /*
+   * Return the endgame value of a xiangqi piece on a square, material included
+   * @param type: the type of the piece
+   * @param side: the side of the piece
+   * @param row: the row of the square
+   * @param column: the column of the square
+   */
+  public static int xiangqiEndgame(XiangQiPieceType type, ChessGame.Side side, int row, int column) {
+    return type.value + XIANGQI_ENDGAME[type.ordinal()][xiangqiIndex(side, row, column)];
+  }
+
+  /*
+   * Blend a midgame and an endgame score by the phase of the game
+   * @param midgame: the midgame score
+   * @param endgame: the endgame score
+   * @param phase: the phase of the pieces on the board (more than the maximum after a promotion)
+   * @param maxPhase: the phase of the full set of pieces
+   */
+  public static int taper(int midgame, int endgame, int phase, int maxPhase) {
+    int weight = Math.min(phase, maxPhase);
+    return (midgame * weight + endgame * (maxPhase - weight)) / maxPhase;
+  }
+
+  // return the index of a european square in the tables, seen from the side of NORTH
+  private static int europeanIndex(ChessGame.Side side, int row, int column) {
+    return (side == ChessGame.Side.NORTH ? row : 7 - row) * 8 + column;
+  }
+
+  // return the index of a xiangqi square in the tables, seen from the side of NORTH
+  private static int xiangqiIndex(ChessGame.Side side, int row, int column) {
+    return (side == ChessGame.Side.NORTH ? row : XiangqiMasks.ROWS - 1 - row) * XiangqiMasks.COLUMNS + column;
+  }
+}
@@ -0,0 +1,249 @@
+import java.util.Arrays;
+
+/*
+ * An immutable copy of a position of either game packed into a few longs: 48 bytes for european chess and
+ * 72 bytes for xiangqi, against dozens of piece objects with their labels, move lists and board references.
+ * A snapshot shares nothing with the board it was taken from, so it can be handed between threads, kept by the
+ * million, compared and hashed.  The first move status of every piece is kept, which holds the castle rights and
+ * the double step of the pawns.
+ * The longs are laid out as:
+ *   header: bit 0 set for xiangqi, bit 1 set when SOUTH is to play
+ *   one nibble per square (row * columns + column), 16 to a long: 8 for a SOUTH piece plus the piece code
+ *     (the ordinal of its EuropeanPieceType or XiangQiPieceType plus one, 0 for an empty square)
+ *   one bit per square, 64 to a long: set when the piece on the square has not moved
+ * @author: Nhien Phan
+ */
+public final class PositionSnapshot {
+  // the flags of the header
+  private static final long XIANGQI = 1L;
+  private static final long SOUTH_TO_PLAY = 2L;
+  // the bit of a nibble that marks a SOUTH piece
+  private static final int SOUTH = 8;
+
+  // the packed position
+  private final long[] words;
+  // the size of the board
+  private final int numRows;
+  private final int numColumns;
+
+  // constructor, the words are owned by the snapshot
+  private PositionSnapshot(long[] words) {
+    this.words = words;
+    boolean xiangqi = (words[0] & XIANGQI) != 0;
+    this.numRows = xiangqi ? XiangqiMasks.ROWS : 8;
+    this.numColumns = xiangqi ? XiangqiMasks.COLUMNS : 8;
+  }
+
+  /*
+   * Take a snapshot of a board with the side to play of its rules (NORTH if the rules are not a Chess game)
+   * @param board: the board
+   */
+  public static PositionSnapshot of(ChessBoard board) {
+    ChessGame rules = board.getGameRules();
+    return of(board, rules instanceof Chess ? ((Chess) rules).getProperSide() : ChessGame.Side.NORTH);
+  }
+
+  /*
+   * Take a snapshot of a board in one pass over its squares.  Pieces that belong to neither game are left out.
+   * @param board: the board, 8 by 8 or 10 by 9 squares
+   * @param sideToPlay: the side to play
+   */
+  public static PositionSnapshot of(ChessBoard board, ChessGame.Side sideToPlay) {
+    boolean xiangqi = board.getGameRules() instanceof XiangqiChess || board.numRows() == XiangqiMasks.ROWS;
+    int squares = xiangqi ? XiangqiMasks.SQUARES : 64;
+    if (board.numRows() * board.numColumns() != squares) {
+      throw new IllegalArgumentException("A snapshot needs a board of 8 by 8 or 10 by 9 squares");
+    }
+    long[] words = new long[wordCount(squares)];
+    words[0] = (xiangqi ? XIANGQI : 0L) | (sideToPlay == ChessGame.Side.SOUTH ? SOUTH_TO_PLAY : 0L);
+    int firstMoveWord = 1 + nibbleWords(squares);
+    for (int i = 0; i < board.numRows(); i++) {
+      for (int j = 0; j < board.numColumns(); j++) {
+        ChessPiece piece = board.getPiece(i, j);
+        int code = code(piece, xiangqi);
+        if (code == 0) continue;
+        int square = i * board.numColumns() + j;
+        int nibble = code | (piece.getSide() == ChessGame.Side.SOUTH ? SOUTH : 0);
+        words[1 + (square >>> 4)] |= (long) nibble << ((square & 15) << 2);
+        if (piece.getFirstMoveStatus()) {
+          words[firstMoveWord + (square >>> 6)] |= 1L << (square & 63);
+        }
+      }
+    }
+    return new PositionSnapshot(words);
+  }
+
+  /*
+   * Return a snapshot from the longs of toLongs.  Every nibble is checked, so a snapshot read back always puts
+   * pieces of its own game on a board: a SOUTH bit needs a piece code, a code needs a piece type of the game, and
+   * the nibbles past the last square are empty.
+   * @param words: the packed position (copied)
+   */
+  public static PositionSnapshot fromLongs(long[] words) {
+    int squares = words.length == 0 ? 0 : (words[0] & XIANGQI) != 0 ? XiangqiMasks.SQUARES : 64;
+    if (words.length == 0 || words.length != wordCount(squares) || (words[0] & ~(XIANGQI | SOUTH_TO_PLAY)) != 0) {
+      throw new IllegalArgumentException("Not a packed position: " + Arrays.toString(words));
+    }
+    PositionSnapshot snapshot = new PositionSnapshot(words.clone());
+    int pieceTypes = snapshot.isXiangqi() ? XiangQiPieceType.values().length : EuropeanPieceType.values().length;
+    for (int square = 0; square < nibbleWords(squares) * 16; square++) {
+      int nibble = snapshot.nibble(square);
+      int code = nibble & (SOUTH - 1);
+      if (nibble != 0 && (square >= squares || code == 0 || code > pieceTypes)) {
+        throw new IllegalArgumentException("Not a packed position, square " + square + " holds " + nibble);
+      }
+    }
+    return snapshot;
+  }
+
+  /** Return the packed position, to be read back by fromLongs */
+  public long[] toLongs() {
+    return words.clone();
+  }
+
+  /** Check if the position is a xiangqi position */
+  public boolean isXiangqi() {
+    return (words[0] & XIANGQI) != 0;
+  }
+
+  /** Return the side to play */
+  public ChessGame.Side getSideToPlay() {
+    return (words[0] & SOUTH_TO_PLAY) != 0 ? ChessGame.Side.SOUTH : ChessGame.Side.NORTH;
+  }
+
+  /** Return the number of rows of the board */
+  public int numRows() {
+    return numRows;
+  }
+
+  /** Return the number of columns of the board */
+  public int numColumns() {
+    return numColumns;
+  }
+
+  /*
+   * Return the code of the piece on a square (see PackedMove.pieceCode, 0 for an empty square)
+   * @param row: the row of the square
+   * @param column: the column of the square
+   */
+  public int getPieceCode(int row, int column) {
+    return nibble(row * numColumns + column) & (SOUTH - 1);
+  }
+
+  /*
+   * Return the side of the piece on a square (null for an empty square)
+   * @param row: the row of the square
+   * @param column: the column of the square
+   */
+  public ChessGame.Side getSide(int row, int column) {
+    int nibble = nibble(row * numColumns + column);
+    return nibble == 0 ? null : (nibble & SOUTH) != 0 ? ChessGame.Side.SOUTH : ChessGame.Side.NORTH;
+  }
+
+  /*
+   * Check if the piece on a square has not moved yet
+   * @param row: the row of the square
+   * @param column: the column of the square
+   */
+  public boolean getFirstMoveStatus(int row, int column) {
+    int square = row * numColumns + column;
+    return (words[1 + nibbleWords(numRows * numColumns) + (square >>> 6)] & (1L << (square & 63))) != 0;
+  }
+
+  /** Return the position on a new headless board with new rules whose side to play is the side of the snapshot */
+  public HeadlessChessBoard toBoard() {
+    Chess rules = isXiangqi() ? new XiangqiChess() : new EuropeanChess();
+    HeadlessChessBoard board = isXiangqi() ? new XiangqiBitboardChessBoard(rules) : new BitboardChessBoard(rules);
+    copyTo(board);
+    return board;
+  }
+
+  /*
+   * Put the position on a board in one pass over its squares, replacing the pieces on it, and set the side to play
+   * of its rules if they are a Chess game.  A piece already on its square with the same side and first move status
+   * is kept, so a board reused for many positions (see GameSession) only changes the squares that differ.
+   * @param board: the board, the size of the board of the snapshot
+   */
+  public void copyTo(ChessBoard board) {
+    if (board.numRows() != numRows || board.numColumns() != numColumns) {
+      throw new IllegalArgumentException("The snapshot is of a board of " + numRows + " by " + numColumns + " squares");
+    }
+    for (int i = 0; i < numRows; i++) {
+      for (int j = 0; j < numColumns; j++) {
+        int nibble = nibble(i * numColumns + j);
+        ChessPiece old = board.getPiece(i, j);
+        if (old != null) {
+          int oldNibble = code(old, isXiangqi()) | (old.getSide() == ChessGame.Side.SOUTH ? SOUTH : 0);
+          if (oldNibble == nibble && old.getFirstMoveStatus() == getFirstMoveStatus(i, j)) continue;
+          board.removePiece(i, j);
+        }
+        if (nibble == 0) continue;
+        ChessGame.Side side = (nibble & SOUTH) != 0 ? ChessGame.Side.SOUTH : ChessGame.Side.NORTH;
+        int code = nibble & (SOUTH - 1);
+        ChessPiece piece = isXiangqi()
+          ? XiangQiPieceType.values()[code - 1].newPiece(side, board)
+          : EuropeanPieceType.values()[code - 1].newPiece(side, board);
+        // the first move status is set before the piece goes on the board, so the hash of the board sees it
+        piece.setFirstMoveStatus(getFirstMoveStatus(i, j));
+        board.addPiece(piece, i, j);
+      }
+    }
+    if (board.getGameRules() instanceof Chess) {
+      ((Chess) board.getGameRules()).setProperSide(getSideToPlay());
+    }
+  }
+
+  /** Check if another object is a snapshot of the same position */
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof PositionSnapshot && Arrays.equals(words, ((PositionSnapshot) other).words);
+  }
+
+  /** Return a hash of the position */
+  @Override
+  public int hashCode() {
+    long hash = 0;
+    for (long word : words) {
+      hash = (hash ^ word) * 0x9E3779B97F4A7C15L;
+    }
+    return (int) (hash ^ (hash >>> 32));
+  }
+
+  /** Return the position as a FEN text */
+  @Override
+  public String toString() {
+    return Fen.write(toBoard(), getSideToPlay());
+  }
+
+  /*
+   * Return the nibble of a square
+   * @param square: the square (row * columns + column)
+   */
+  private int nibble(int square) {
+    return (int) (words[1 + (square >>> 4)] >>> ((square & 15) << 2)) & 15;
+  }
+
+  /*
+   * Return the code of a piece in the game of a snapshot (0 for no piece or a piece of the other game)
+   * @param piece: the piece
+   * @param xiangqi: true for a xiangqi snapshot
+   */
+  private static int code(ChessPiece piece, boolean xiangqi) {
+    if (xiangqi) {
+      XiangQiPieceType type = XiangQiPieceType.of(piece);
+      return type == null ? 0 : type.ordinal() + 1;
+    }
+    EuropeanPieceType type = EuropeanPieceType.of(piece);
+    return type == null ? 0 : type.ordinal() + 1;
+  }
+
+  // return the number of longs holding the nibbles of a board
+  private static int nibbleWords(int squares) {
+    return (squares + 15) >>> 4;
+  }
+
+  // return the number of longs of a snapshot of a board: the header, the nibbles and the first move bits
+  private static int wordCount(int squares) {
+    return 1 + nibbleWords(squares) + ((squares + 63) >>> 6);
+  }
+}
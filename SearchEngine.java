@@ -0,0 +1,476 @@
+import java.util.Arrays;
+
+/*
+ * An alpha-beta search that chooses a move for european chess and xiangqi.
+ * It runs negamax with iterative deepening and principal variation search on a headless board,
+ * so it never touches the board of a window, and it stops when its time or node budget is spent.
+ * @author: Nhien Phan
+ */
+public class SearchEngine {
+  // the score of a checkmate, higher than any material score
+  public static final int MATE = 100000;
+  // the deepest ply the search can reach, quiescence included
+  public static final int MAX_PLY = 64;
+  // the number of entries of the transposition table (a power of two)
+  private static final int TABLE_SIZE = 1 << 20;
+  // the kinds of score stored in the transposition table
+  private static final int EXACT = 0;
+  private static final int LOWER_BOUND = 1;
+  private static final int UPPER_BOUND = 2;
+  // the nodes searched between two looks at the clock
+  private static final int CHECK_INTERVAL = 1023;
+  // the time between two reports of a search in progress, in nanoseconds
+  private static final long PROGRESS_INTERVAL = 1000000000L;
+
+  /** What a search in progress tells the thread that started it */
+  public interface Progress {
+    /*
+     * Called on the thread of the search after each iteration it finishes, and about once a second between them
+     * @param iterationDone: true after an iteration (see getDepth, getScore and getPrincipalVariation), false between
+     *                       two iterations (see getNodes)
+     */
+    void report(boolean iterationDone);
+  }
+
+  // the budget of a search (0 means no limit)
+  private long timeLimitMillis;
+  private long nodeLimit;
+  // set by another thread to end the search in progress
+  private volatile boolean stopRequested;
+  // a move buffer and the ordering scores of its moves for each ply
+  private final int[][] moves = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+  private final int[][] orderScores = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+  // two quiet moves that caused a cutoff at each ply
+  private final int[][] killers = new int[MAX_PLY][2];
+  // the principal variation found from each ply (pvLength is the ply after its last move)
+  private final int[][] pv = new int[MAX_PLY][MAX_PLY];
+  private final int[] pvLength = new int[MAX_PLY];
+  // the transposition table: the position hash and the packed move, score, depth and bound of each entry
+  private final long[] tableKeys = new long[TABLE_SIZE];
+  private final long[] tableData = new long[TABLE_SIZE];
+  // the results kept on disk between runs (null if there is none)
+  private AnalysisCache analysisCache;
+  // told about the search in progress (null if nobody listens) and the time of its next report between iterations
+  private Progress progress;
+  private long nextProgress;
+
+  // the board and rules being searched
+  private HeadlessChessBoard board;
+  private Chess rules;
+  // the material value of each piece code of the game being searched
+  private int[] codeValues;
+  // true when a side without legal moves loses even if it is not in check (xiangqi)
+  private boolean stalemateLoses;
+  // the state of the current search
+  private long nodes;
+  private long deadline;
+  private boolean stopped;
+  private int completedDepth;
+  private int bestMove;
+  private int bestScore;
+  private int[] principalVariation = new int[0];
+
+  /*
+   * Constructor
+   * @param timeLimitMillis: the time a search may take in milliseconds (0 for no limit)
+   * @param nodeLimit: the number of nodes a search may visit (0 for no limit)
+   */
+  public SearchEngine(long timeLimitMillis, long nodeLimit) {
+    this.timeLimitMillis = timeLimitMillis;
+    this.nodeLimit = nodeLimit;
+  }
+
+  /*
+   * Search a copy of a position and return the best move found (0 if the side has no legal move)
+   * @param position: the board to search, it is not changed
+   * @param sideToPlay: the side to choose a move for
+   * @param maxDepth: the deepest iteration to search
+   */
+  public int search(ChessBoard position, ChessGame.Side sideToPlay, int maxDepth) {
+    return search(HeadlessChessBoard.copyOf(position, sideToPlay), maxDepth);
+  }
+
+  /*
+   * Search a headless board for the side to play of its rules and return the best move found (0 if there is none).
+   * The board is back in the same position when the search returns.
+   * @param board: the board to search
+   * @param maxDepth: the deepest iteration to search
+   */
+  public int search(HeadlessChessBoard board, int maxDepth) {
+    this.board = board;
+    this.rules = (Chess) board.getGameRules();
+    this.stalemateLoses = rules instanceof XiangqiChess;
+    this.codeValues = new int[16];
+    if (stalemateLoses) {
+      for (XiangQiPieceType type : XiangQiPieceType.values()) codeValues[type.ordinal() + 1] = type.value;
+    } else {
+      for (EuropeanPieceType type : EuropeanPieceType.values()) codeValues[type.ordinal() + 1] = type.value;
+    }
+    nodes = 0;
+    stopped = false;
+    stopRequested = false;
+    completedDepth = 0;
+    bestMove = 0;
+    bestScore = 0;
+    principalVariation = new int[0];
+    deadline = System.nanoTime() + timeLimitMillis * 1000000L;
+    nextProgress = System.nanoTime() + PROGRESS_INTERVAL;
+    for (int[] killer : killers) {
+      killer[0] = 0;
+      killer[1] = 0;
+    }
+    // a position analysed deep enough before is answered from the cache
+    long key = board.getHash();
+    if (analysisCache != null) {
+      long stored = analysisCache.probe(key);
+      if (stored != AnalysisCache.MISS && AnalysisCache.depth(stored) >= maxDepth) {
+        bestMove = AnalysisCache.move(stored);
+        bestScore = AnalysisCache.score(stored);
+        completedDepth = AnalysisCache.depth(stored);
+        principalVariation = bestMove == 0 ? new int[0] : new int[] {bestMove};
+        return bestMove;
+      }
+    }
+
+    for (int depth = 1; depth <= Math.min(maxDepth, MAX_PLY - 1); depth++) {
+      int score = negamax(depth, -MATE - 1, MATE + 1, 0);
+      // an iteration cut short by the budget is not trusted
+      if (stopped) break;
+      completedDepth = depth;
+      bestScore = score;
+      bestMove = pvLength[0] > 0 ? pv[0][0] : 0;
+      principalVariation = Arrays.copyOf(pv[0], pvLength[0]);
+      if (progress != null) {
+        progress.report(true);
+        nextProgress = System.nanoTime() + PROGRESS_INTERVAL;
+      }
+      if (bestMove == 0 || Math.abs(score) >= MATE - MAX_PLY) break;
+    }
+    if (analysisCache != null && completedDepth > 0) {
+      analysisCache.store(key, bestMove, bestScore, completedDepth);
+    }
+    return bestMove;
+  }
+
+  /*
+   * Keep the results of the searches in a cache on disk, and answer positions already searched deep enough from it
+   * @param analysisCache: the cache (null to stop using one)
+   */
+  public void setAnalysisCache(AnalysisCache analysisCache) {
+    this.analysisCache = analysisCache;
+  }
+
+  /*
+   * Be told about the next searches while they run, to show their progress
+   * @param progress: called after each iteration and about once a second between them (null to stop)
+   */
+  public void setProgress(Progress progress) {
+    this.progress = progress;
+  }
+
+  /*
+   * Change the budget of the next searches
+   * @param timeLimitMillis: the time a search may take in milliseconds (0 for no limit)
+   * @param nodeLimit: the number of nodes a search may visit (0 for no limit)
+   */
+  public void setLimits(long timeLimitMillis, long nodeLimit) {
+    this.timeLimitMillis = timeLimitMillis;
+    this.nodeLimit = nodeLimit;
+  }
+
+  /** Ask the search in progress on another thread to stop, it returns once its first iteration is done */
+  public void stop() {
+    stopRequested = true;
+  }
+
+  /** Return the best move of the last search (0 if there was none) */
+  public int getBestMove() {
+    return bestMove;
+  }
+
+  /** Return the score of the best move of the last search for the side that played it */
+  public int getScore() {
+    return bestScore;
+  }
+
+  /** Return the depth of the last iteration the last search finished */
+  public int getDepth() {
+    return completedDepth;
+  }
+
+  /** Return the number of nodes visited by the last search, or so far by the search in progress */
+  public long getNodes() {
+    return nodes;
+  }
+
+  /** Return the moves the last search expects both sides to play, starting with the best move */
+  public int[] getPrincipalVariation() {
+    return principalVariation.clone();
+  }
+
+  /** Forget the positions stored by earlier searches */
+  public void clearTable() {
+    Arrays.fill(tableKeys, 0L);
+    Arrays.fill(tableData, 0L);
+  }
+
+  /*
+   * Return the score of the position for the side to play
+   * @param depth: the number of plies left to search
+   * @param alpha: the score the side to play is already sure of
+   * @param beta: the score the other side is already sure of
+   * @param ply: the distance from the root
+   */
+  private int negamax(int depth, int alpha, int beta, int ply) {
+    pvLength[ply] = ply;
+    if (depth <= 0 || ply >= MAX_PLY - 1) {
+      return quiesce(alpha, beta, ply);
+    }
+    if ((++nodes & CHECK_INTERVAL) == 0) {
+      checkBudget();
+    }
+    if (stopped) return 0;
+
+    // use what an earlier search stored about this position
+    long key = board.getHash();
+    int index = (int) key & (TABLE_SIZE - 1);
+    int tableMove = 0;
+    if (tableKeys[index] == key) {
+      long data = tableData[index];
+      tableMove = (int) data;
+      if (ply > 0 && entryDepth(data) >= depth) {
+        int score = fromTable(entryScore(data), ply);
+        int bound = entryBound(data);
+        if (bound == EXACT
+              || (bound == LOWER_BOUND && score >= beta)
+              || (bound == UPPER_BOUND && score <= alpha)) {
+          return score;
+        }
+      }
+    }
+
+    ChessGame.Side side = rules.getProperSide();
+    int[] list = moves[ply];
+    int count = MoveGenerator.generateMoves(board, side, list);
+    scoreMoves(ply, count, tableMove);
+    int startAlpha = alpha;
+    int best = -MATE - 1;
+    int localBest = 0;
+    int legalMoves = 0;
+    for (int i = 0; i < count; i++) {
+      int move = nextMove(ply, i, count);
+      board.makeMove(move);
+      if (board.isInCheck(side)) {
+        board.unmakeMove();
+        continue;
+      }
+      legalMoves++;
+      int score;
+      if (legalMoves == 1) {
+        score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+      } else {
+        // prove the move is no better than the first one with a null window, and search it again if it is
+        score = -negamax(depth - 1, -alpha - 1, -alpha, ply + 1);
+        if (score > alpha && score < beta) {
+          score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+        }
+      }
+      board.unmakeMove();
+      if (stopped) return 0;
+
+      if (score > best) {
+        best = score;
+        localBest = move;
+        if (score > alpha) {
+          alpha = score;
+          pv[ply][ply] = move;
+          for (int j = ply + 1; j < pvLength[ply + 1]; j++) {
+            pv[ply][j] = pv[ply + 1][j];
+          }
+          pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+          if (alpha >= beta) {
+            if (PackedMove.captured(move) == 0 && killers[ply][0] != move) {
+              killers[ply][1] = killers[ply][0];
+              killers[ply][0] = move;
+            }
+            break;
+          }
+        }
+      }
+    }
+
+    if (legalMoves == 0) {
+      // checkmate, or stalemate which is a draw in european chess and a loss in xiangqi
+      return board.isInCheck(side) || stalemateLoses ? -MATE + ply : 0;
+    }
+
+    int bound = best >= beta ? LOWER_BOUND : best > startAlpha ? EXACT : UPPER_BOUND;
+    tableKeys[index] = key;
+    tableData[index] = entry(localBest, toTable(best, ply), depth, bound);
+    return best;
+  }
+
+  /*
+   * Return the score of the position for the side to play once the captures are played out
+   * @param alpha: the score the side to play is already sure of
+   * @param beta: the score the other side is already sure of
+   * @param ply: the distance from the root
+   */
+  private int quiesce(int alpha, int beta, int ply) {
+    pvLength[ply] = ply;
+    if ((++nodes & CHECK_INTERVAL) == 0) {
+      checkBudget();
+    }
+    if (stopped) return 0;
+
+    ChessGame.Side side = rules.getProperSide();
+    // the side to play may also stop capturing
+    int standPat = evaluate(side);
+    if (standPat >= beta || ply >= MAX_PLY - 1) return standPat;
+    if (standPat > alpha) alpha = standPat;
+
+    int[] list = moves[ply];
+    int count = MoveGenerator.generateMoves(board, side, list);
+    // keep only captures and promotions
+    int captures = 0;
+    for (int i = 0; i < count; i++) {
+      if ((PackedMove.flags(list[i]) & (PackedMove.CAPTURE | PackedMove.PROMOTION)) != 0) {
+        list[captures++] = list[i];
+      }
+    }
+    scoreMoves(ply, captures, 0);
+    for (int i = 0; i < captures; i++) {
+      int move = nextMove(ply, i, captures);
+      board.makeMove(move);
+      if (board.isInCheck(side)) {
+        board.unmakeMove();
+        continue;
+      }
+      int score = -quiesce(-beta, -alpha, ply + 1);
+      board.unmakeMove();
+      if (stopped) return 0;
+      if (score >= beta) return score;
+      if (score > alpha) alpha = score;
+    }
+    return alpha;
+  }
+
+  /*
+   * Return the material and piece-square balance of the board for a side, kept up to date by the board
+   * @param side: the side to score for
+   */
+  private int evaluate(ChessGame.Side side) {
+    return board.evaluate(side);
+  }
+
+  /*
+   * Give every move of a ply an ordering score: the table move first, then captures of the most valuable
+   * pieces by the least valuable ones, then the killer moves, then the other moves
+   * @param ply: the ply of the moves
+   * @param count: the number of moves
+   * @param tableMove: the best move stored in the transposition table (0 if none)
+   */
+  private void scoreMoves(int ply, int count, int tableMove) {
+    int[] list = moves[ply];
+    int[] scores = orderScores[ply];
+    for (int i = 0; i < count; i++) {
+      int move = list[i];
+      if (move == tableMove) {
+        scores[i] = 1 << 30;
+      } else if ((PackedMove.flags(move) & (PackedMove.CAPTURE | PackedMove.PROMOTION)) != 0) {
+        int attacker = PackedMove.pieceCode(board.getPiece(PackedMove.fromRow(move), PackedMove.fromColumn(move)));
+        scores[i] = (1 << 24) + codeValues[PackedMove.captured(move)] * 16 + codeValues[PackedMove.promotion(move)] * 16
+          - codeValues[attacker] / 16;
+      } else if (move == killers[ply][0]) {
+        scores[i] = 1 << 23;
+      } else if (move == killers[ply][1]) {
+        scores[i] = (1 << 23) - 1;
+      } else {
+        scores[i] = 0;
+      }
+    }
+  }
+
+  /*
+   * Move the move with the best ordering score among the moves not yet searched to a position and return it
+   * @param ply: the ply of the moves
+   * @param index: the position of the next move to search
+   * @param count: the number of moves
+   */
+  private int nextMove(int ply, int index, int count) {
+    int[] list = moves[ply];
+    int[] scores = orderScores[ply];
+    int best = index;
+    for (int i = index + 1; i < count; i++) {
+      if (scores[i] > scores[best]) best = i;
+    }
+    int move = list[best];
+    list[best] = list[index];
+    list[index] = move;
+    int score = scores[best];
+    scores[best] = scores[index];
+    scores[index] = score;
+    return move;
+  }
+
+  // report the search in progress when it is time to, and stop it when the time or the nodes are spent or a stop is
+  // asked for, but never before the first iteration is done
+  private void checkBudget() {
+    if (progress != null && System.nanoTime() >= nextProgress) {
+      nextProgress += PROGRESS_INTERVAL;
+      progress.report(false);
+    }
+    if (completedDepth == 0) return;
+    if (stopRequested || (nodeLimit > 0 && nodes >= nodeLimit) || (timeLimitMillis > 0 && System.nanoTime() >= deadline)) {
+      stopped = true;
+    }
+  }
+
+  /*
+   * Make a mate score relative to the position stored instead of the root
+   * @param score: the score
+   * @param ply: the distance of the position from the root
+   */
+  private static int toTable(int score, int ply) {
+    if (score >= MATE - MAX_PLY) return score + ply;
+    if (score <= -MATE + MAX_PLY) return score - ply;
+    return score;
+  }
+
+  /*
+   * Make a mate score read from the table relative to the root again
+   * @param score: the score stored
+   * @param ply: the distance of the position from the root
+   */
+  private static int fromTable(int score, int ply) {
+    if (score >= MATE - MAX_PLY) return score - ply;
+    if (score <= -MATE + MAX_PLY) return score + ply;
+    return score;
+  }
+
+  /*
+   * Pack an entry of the transposition table: the move in bits 0-31, the score in bits 32-52,
+   * the depth in bits 53-58 and the bound in bits 59-60
+   */
+  private static long entry(int move, int score, int depth, int bound) {
+    return (move & 0xFFFFFFFFL)
+      | ((long) (score + (1 << 20)) << 32)
+      | ((long) depth << 53)
+      | ((long) bound << 59);
+  }
+
+  /** Return the score of a packed table entry */
+  private static int entryScore(long data) {
+    return (int) ((data >>> 32) & 0x1FFFFF) - (1 << 20);
+  }
+
+  /** Return the depth of a packed table entry */
+  private static int entryDepth(long data) {
+    return (int) ((data >>> 53) & 0x3F);
+  }
+
+  /** Return the bound of a packed table entry */
+  private static int entryBound(long data) {
+    return (int) ((data >>> 59) & 0x3);
+  }
+}
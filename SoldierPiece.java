@@ -63,6 +63,34 @@ public class SoldierPiece extends ChessPiece {
     return possibleMoves;
   }
   
+  /*
+   * Write the packed moves of this soldier into a buffer without allocating (see PackedMove)
+   * @param moves: the buffer to write the moves into
+   * @param count: the number of moves already in the buffer
+   */
+  @Override
+  public int generateMoves(int[] moves, int count) {
+    int step = this.getSide() == ChessGame.Side.NORTH ? -1 : 1;
+    // the soldier always can move forward
+    if (onBoard(this.getRow() + step, this.getColumn())) {
+      count = addMove(moves, count, this.getRow() + step, this.getColumn());
+    }
+    // check if this is the only piece between two xiangqi king
+    if (super.kingFacingKing()) {
+      return count;
+    }
+    // once the soldier crossed the river it can also move horizontally
+    if (!XiangqiMasks.atHome(this.getSide(), this.getRow(), this.getColumn())) {
+      if (onBoard(this.getRow(), this.getColumn() - 1)) {
+        count = addMove(moves, count, this.getRow(), this.getColumn() - 1);
+      }
+      if (onBoard(this.getRow(), this.getColumn() + 1)) {
+        count = addMove(moves, count, this.getRow(), this.getColumn() + 1);
+      }
+    }
+    return count;
+  }
+  
   /*
    * Check if this move is a legal move (return true if it is legal (false if illegal)
    * @param toRow: the destination's row
@@ -70,14 +98,17 @@ public class SoldierPiece extends ChessPiece {
    */
   @Override
   public boolean isLegalMove(int toRow, int toColumn) {
-    Cell targetSquare = new Cell(toRow, toColumn);
-    move(this.getChessBoard(), this.getRow(), this.getColumn());
-    for (Cell possibleMove : possibleMoves) {
-      if ((possibleMove.compareTo(targetSquare) == 0)
-            && (super.isLegalMove(toRow, toColumn))) return true;
-    }
-    return false;
+    int step = this.getSide() == ChessGame.Side.NORTH ? -1 : 1;
+    if (!canLandOn(toRow, toColumn)) return false;
+    // the soldier always can move forward
+    if (toRow == this.getRow() + step && toColumn == this.getColumn()) return true;
+    // once the soldier crossed the river it can also move horizontally, unless it is the only piece between the kings
+    return toRow == this.getRow()
+      && Math.abs(toColumn - this.getColumn()) == 1
+      && !XiangqiMasks.atHome(this.getSide(), this.getRow(), this.getColumn())
+      && !super.kingFacingKing();
   }
+
   
   /*
    * Check if this move is a legal non-capture move (return true if it is legal (false if illegal)
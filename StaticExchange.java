@@ -0,0 +1,309 @@
+/*
+ * Static exchange evaluation: the material a side wins on one square when both sides keep recapturing there with
+ * their least valuable attacker, and either side may stop when going on would lose.
+ * The exchange is played on a copy of the occupancy mask of the board, never on the board itself, so pieces that
+ * were used up uncover the rooks, bishops and queens behind them, change the screen of a xiangqi cannon and free
+ * the leg of a horse or the eye of an elephant.  The bitboard boards are evaluated without allocating; other boards
+ * are copied onto a bitboard board first.  Pins and the promotion of a capturing pawn are not looked at.
+ * @author: Nhien Phan
+ */
+public final class StaticExchange {
+  // the value of a king in an exchange, more than all the other pieces together so it is never traded
+  public static final int KING_VALUE = 20000;
+
+  // this class only holds static helpers
+  private StaticExchange() {
+  }
+
+  /*
+   * Return the material won by a move once the exchange on its square is over, from the side of the moving piece
+   * (negative if the moving piece is lost for less, 0 for a quiet move to a square that is safe)
+   * @param board: the board, it is not changed
+   * @param move: the packed move (see PackedMove)
+   */
+  public static int evaluate(ChessBoard board, int move) {
+    if ((PackedMove.flags(move) & PackedMove.CASTLE) != 0) return 0;
+    int fromRow = PackedMove.fromRow(move);
+    int fromColumn = PackedMove.fromColumn(move);
+    int toRow = PackedMove.toRow(move);
+    int toColumn = PackedMove.toColumn(move);
+    ChessPiece piece = board.getPiece(fromRow, fromColumn);
+    if (piece == null) {
+      throw new IllegalArgumentException("No piece moves from " + fromRow + "," + fromColumn);
+    }
+    ChessGame.Side other = opponent(piece.getSide());
+    int captured = value(board.getPiece(toRow, toColumn));
+    if (board instanceof BitboardChessBoard) {
+      BitboardChessBoard bitboard = (BitboardChessBoard) board;
+      long occupied = bitboard.getOccupied() & ~(1L << BitboardChessBoard.square(fromRow, fromColumn));
+      return captured - europeanExchange(bitboard, BitboardChessBoard.square(toRow, toColumn), other, value(piece), occupied);
+    }
+    if (board instanceof XiangqiBitboardChessBoard) {
+      XiangqiBitboardChessBoard xiangqiBoard = (XiangqiBitboardChessBoard) board;
+      int from = XiangqiMasks.square(fromRow, fromColumn);
+      long low = xiangqiBoard.getOccupiedLow() & ~XiangqiMasks.lowBit(from);
+      long high = xiangqiBoard.getOccupiedHigh() & ~XiangqiMasks.highBit(from);
+      return captured - xiangqiExchange(xiangqiBoard, XiangqiMasks.square(toRow, toColumn), other, value(piece), low, high);
+    }
+    return evaluate(HeadlessChessBoard.copyOf(board, piece.getSide()), move);
+  }
+
+  /*
+   * Return the material a side wins by starting the exchange on an occupied square (0 if it has no capture there
+   * that wins, or the square is empty or holds its own piece)
+   * @param board: the board, it is not changed
+   * @param row: the row of the square
+   * @param column: the column of the square
+   * @param side: the side that captures first
+   */
+  public static int evaluateSquare(ChessBoard board, int row, int column, ChessGame.Side side) {
+    ChessPiece target = board.getPiece(row, column);
+    if (target == null || target.getSide() == side) return 0;
+    if (board instanceof BitboardChessBoard) {
+      BitboardChessBoard bitboard = (BitboardChessBoard) board;
+      return europeanExchange(bitboard, BitboardChessBoard.square(row, column), side, value(target), bitboard.getOccupied());
+    }
+    if (board instanceof XiangqiBitboardChessBoard) {
+      XiangqiBitboardChessBoard xiangqiBoard = (XiangqiBitboardChessBoard) board;
+      return xiangqiExchange(xiangqiBoard, XiangqiMasks.square(row, column), side, value(target),
+                             xiangqiBoard.getOccupiedLow(), xiangqiBoard.getOccupiedHigh());
+    }
+    return evaluateSquare(HeadlessChessBoard.copyOf(board, side), row, column, side);
+  }
+
+  /*
+   * Check if a capture wins material once the exchange on its square is over
+   * @param board: the board, it is not changed
+   * @param move: the packed move
+   */
+  public static boolean isWinning(ChessBoard board, int move) {
+    return evaluate(board, move) > 0;
+  }
+
+  /*
+   * Check if a move does not lose material once the exchange on its square is over
+   * @param board: the board, it is not changed
+   * @param move: the packed move
+   */
+  public static boolean isSafe(ChessBoard board, int move) {
+    return evaluate(board, move) >= 0;
+  }
+
+  /*
+   * Return the exchange value of a piece (0 for no piece or a piece of neither game)
+   * @param piece: the piece
+   */
+  public static int value(ChessPiece piece) {
+    if (piece == null) return 0;
+    EuropeanPieceType europeanType = EuropeanPieceType.of(piece);
+    if (europeanType != null) return europeanType == EuropeanPieceType.K ? KING_VALUE : europeanType.value;
+    XiangQiPieceType xiangqiType = XiangQiPieceType.of(piece);
+    if (xiangqiType != null) return xiangqiType == XiangQiPieceType.X ? KING_VALUE : xiangqiType.value;
+    return 0;
+  }
+
+  /*
+   * Return what a side wins by capturing on a european square with its least valuable attacker, if it wants to
+   * @param board: the board
+   * @param square: the bit index of the square
+   * @param side: the side to capture
+   * @param target: the value of the piece on the square
+   * @param occupied: the squares still occupied in the exchange
+   */
+  private static int europeanExchange(BitboardChessBoard board, int square, ChessGame.Side side, int target, long occupied) {
+    int attacker = europeanAttacker(board, square, side, occupied);
+    if (attacker < 0) return 0;
+    long rest = occupied & ~(1L << (attacker & 0xFF));
+    return Math.max(0, target - europeanExchange(board, square, opponent(side), attacker >>> 8, rest));
+  }
+
+  /*
+   * Return the least valuable attacker of a side on a european square, as its value << 8 | its bit index (-1 if none)
+   * @param board: the board
+   * @param square: the bit index of the square
+   * @param side: the attacking side
+   * @param occupied: the squares still occupied in the exchange
+   */
+  private static int europeanAttacker(BitboardChessBoard board, int square, ChessGame.Side side, long occupied) {
+    int row = square >> 3;
+    int column = square & 7;
+    // a pawn attacks forward diagonally, so it stands one row behind the square
+    long pawns = board.getPieces(side, EuropeanPieceType.P) & occupied;
+    int pawnRow = side == ChessGame.Side.NORTH ? row + 1 : row - 1;
+    if (pawns != 0 && pawnRow >= 0 && pawnRow < 8) {
+      if (column > 0 && (pawns & (1L << BitboardChessBoard.square(pawnRow, column - 1))) != 0) {
+        return attacker(EuropeanPieceType.P.value, BitboardChessBoard.square(pawnRow, column - 1));
+      }
+      if (column < 7 && (pawns & (1L << BitboardChessBoard.square(pawnRow, column + 1))) != 0) {
+        return attacker(EuropeanPieceType.P.value, BitboardChessBoard.square(pawnRow, column + 1));
+      }
+    }
+    long knights = BitboardChessBoard.KNIGHT_ATTACKS[square] & board.getPieces(side, EuropeanPieceType.N) & occupied;
+    if (knights != 0) return attacker(EuropeanPieceType.N.value, Long.numberOfTrailingZeros(knights));
+
+    // the first piece on each line, found once for the bishops, the rooks and the queens
+    long bishops = board.getPieces(side, EuropeanPieceType.B) & occupied;
+    long rooks = board.getPieces(side, EuropeanPieceType.R) & occupied;
+    long queens = board.getPieces(side, EuropeanPieceType.Q) & occupied;
+    if ((bishops | rooks | queens) != 0) {
+      long straight = 0;
+      long diagonal = 0;
+      for (int i = 0; i < BitboardChessBoard.LINE_ROW.length; i++) {
+        int r = row + BitboardChessBoard.LINE_ROW[i];
+        int c = column + BitboardChessBoard.LINE_COLUMN[i];
+        while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+          long bit = 1L << BitboardChessBoard.square(r, c);
+          if ((occupied & bit) != 0) {
+            if (i < 4) straight |= bit;
+            else diagonal |= bit;
+            break;
+          }
+          r += BitboardChessBoard.LINE_ROW[i];
+          c += BitboardChessBoard.LINE_COLUMN[i];
+        }
+      }
+      if ((diagonal & bishops) != 0) {
+        return attacker(EuropeanPieceType.B.value, Long.numberOfTrailingZeros(diagonal & bishops));
+      }
+      if ((straight & rooks) != 0) {
+        return attacker(EuropeanPieceType.R.value, Long.numberOfTrailingZeros(straight & rooks));
+      }
+      if (((straight | diagonal) & queens) != 0) {
+        return attacker(EuropeanPieceType.Q.value, Long.numberOfTrailingZeros((straight | diagonal) & queens));
+      }
+    }
+    long kings = BitboardChessBoard.KING_ATTACKS[square] & board.getPieces(side, EuropeanPieceType.K) & occupied;
+    if (kings != 0) return attacker(KING_VALUE, Long.numberOfTrailingZeros(kings));
+    return -1;
+  }
+
+  /*
+   * Return what a side wins by capturing on a xiangqi square with its least valuable attacker, if it wants to
+   * @param board: the board
+   * @param square: the square (see XiangqiMasks.square)
+   * @param side: the side to capture
+   * @param target: the value of the piece on the square
+   * @param low: the low long of the squares still occupied in the exchange
+   * @param high: the high long of the squares still occupied in the exchange
+   */
+  private static int xiangqiExchange(XiangqiBitboardChessBoard board, int square, ChessGame.Side side, int target,
+                                     long low, long high) {
+    int attacker = xiangqiAttacker(board, square, side, low, high);
+    if (attacker < 0) return 0;
+    int from = attacker & 0xFF;
+    return Math.max(0, target - xiangqiExchange(board, square, opponent(side), attacker >>> 8,
+                                                low & ~XiangqiMasks.lowBit(from), high & ~XiangqiMasks.highBit(from)));
+  }
+
+  /*
+   * Return the least valuable attacker of a side on a xiangqi square, as its value << 8 | its square (-1 if none)
+   * @param board: the board
+   * @param square: the square
+   * @param side: the attacking side
+   * @param low: the low long of the squares still occupied in the exchange
+   * @param high: the high long of the squares still occupied in the exchange
+   */
+  private static int xiangqiAttacker(XiangqiBitboardChessBoard board, int square, ChessGame.Side side, long low, long high) {
+    int row = square / XiangqiMasks.COLUMNS;
+    int column = square % XiangqiMasks.COLUMNS;
+    // a soldier attacks forward, and sideways once it crossed the river
+    int soldierRow = side == ChessGame.Side.NORTH ? row + 1 : row - 1;
+    int from = XiangqiMasks.square(soldierRow, column);
+    if (has(board, side, XiangQiPieceType.S, from, low, high)) return attacker(XiangQiPieceType.S.value, from);
+    if (!XiangqiMasks.atHome(side, row, column)) {
+      for (int step = -1; step <= 1; step += 2) {
+        from = XiangqiMasks.square(row, column + step);
+        if (has(board, side, XiangQiPieceType.S, from, low, high)) return attacker(XiangQiPieceType.S.value, from);
+      }
+    }
+    // the guards stay inside their palace
+    if (XiangqiMasks.inPalace(side, row, column)) {
+      for (int i = 4; i < 8; i++) {
+        from = XiangqiMasks.square(row + XiangqiBitboardChessBoard.LINE_ROW[i], column + XiangqiBitboardChessBoard.LINE_COLUMN[i]);
+        if (has(board, side, XiangQiPieceType.G, from, low, high)) return attacker(XiangQiPieceType.G.value, from);
+      }
+    }
+    // the elephants stay on their side of the river and need an empty eye
+    if (XiangqiMasks.atHome(side, row, column)) {
+      for (int i = 0; i < 4; i++) {
+        from = XiangqiMasks.ELEPHANT_TARGET[square][i];
+        if (has(board, side, XiangQiPieceType.E, from, low, high)
+              && !XiangqiMasks.contains(low, high, XiangqiMasks.ELEPHANT_EYE[square][i])) {
+          return attacker(XiangQiPieceType.E.value, from);
+        }
+      }
+    }
+    // a horse is blocked by the piece next to it on the long side of its move
+    for (int i = 0; i < XiangqiBitboardChessBoard.HORSE_ROW.length; i++) {
+      int horseRow = row + XiangqiBitboardChessBoard.HORSE_ROW[i];
+      int horseColumn = column + XiangqiBitboardChessBoard.HORSE_COLUMN[i];
+      from = XiangqiMasks.square(horseRow, horseColumn);
+      if (has(board, side, XiangQiPieceType.H, from, low, high)) {
+        int leg = Math.abs(XiangqiBitboardChessBoard.HORSE_ROW[i]) == 2
+          ? XiangqiMasks.square(row + XiangqiBitboardChessBoard.HORSE_ROW[i] / 2, horseColumn)
+          : XiangqiMasks.square(horseRow, column + XiangqiBitboardChessBoard.HORSE_COLUMN[i] / 2);
+        if (!XiangqiMasks.contains(low, high, leg)) return attacker(XiangQiPieceType.H.value, from);
+      }
+    }
+    // rooks hit the first piece of a line and cannons the piece after the screen, found in one walk of each line
+    int rook = -1;
+    for (int i = 0; i < 4; i++) {
+      int screens = 0;
+      int r = row + XiangqiBitboardChessBoard.LINE_ROW[i];
+      int c = column + XiangqiBitboardChessBoard.LINE_COLUMN[i];
+      while (r >= 0 && r < XiangqiMasks.ROWS && c >= 0 && c < XiangqiMasks.COLUMNS) {
+        from = XiangqiMasks.square(r, c);
+        if (XiangqiMasks.contains(low, high, from)) {
+          if (screens == 0 && rook < 0 && has(board, side, XiangQiPieceType.R, from, low, high)) rook = from;
+          if (screens == 1) {
+            if (has(board, side, XiangQiPieceType.C, from, low, high)) return attacker(XiangQiPieceType.C.value, from);
+            break;
+          }
+          screens++;
+        }
+        r += XiangqiBitboardChessBoard.LINE_ROW[i];
+        c += XiangqiBitboardChessBoard.LINE_COLUMN[i];
+      }
+    }
+    if (rook >= 0) return attacker(XiangQiPieceType.R.value, rook);
+    // the king stays inside its palace
+    if (XiangqiMasks.inPalace(side, row, column)) {
+      for (int i = 0; i < 4; i++) {
+        from = XiangqiMasks.square(row + XiangqiBitboardChessBoard.LINE_ROW[i], column + XiangqiBitboardChessBoard.LINE_COLUMN[i]);
+        if (has(board, side, XiangQiPieceType.X, from, low, high)) return attacker(KING_VALUE, from);
+      }
+    }
+    return -1;
+  }
+
+  /*
+   * Check if a piece of one side and type is on a square that is still occupied in the exchange
+   * @param board: the board
+   * @param side: the side of the piece
+   * @param type: the type of the piece
+   * @param square: the square (-1 when outside the board)
+   * @param low: the low long of the squares still occupied
+   * @param high: the high long of the squares still occupied
+   */
+  private static boolean has(XiangqiBitboardChessBoard board, ChessGame.Side side, XiangQiPieceType type, int square,
+                             long low, long high) {
+    return XiangqiMasks.contains(board.getPiecesLow(side, type) & low, board.getPiecesHigh(side, type) & high, square);
+  }
+
+  /*
+   * Pack an attacker
+   * @param value: the exchange value of the attacker
+   * @param square: the square of the attacker
+   */
+  private static int attacker(int value, int square) {
+    return value << 8 | square;
+  }
+
+  /*
+   * Return the other side of a two player game
+   * @param side: a side
+   */
+  private static ChessGame.Side opponent(ChessGame.Side side) {
+    return side == ChessGame.Side.NORTH ? ChessGame.Side.SOUTH : ChessGame.Side.NORTH;
+  }
+}
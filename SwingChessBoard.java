@@ -24,6 +24,8 @@ public class SwingChessBoard implements ChessBoard {
     private ChessPiece[][] pieces;                 // stores the pieces
     private ChessGame gameRules;                   // global rules for this particular game
     private ChessBoardDisplay boardDisplay;        // rules for how to draw the chess board
+    private AttackMap attackMap;                   // the squares attacked by each side
+    private LegalMoveCache legalMoves;             // the moves of the pieces in the current position
 
     /**
      * Builds a board of the desired size, the display parameters, and the rules for the chess game.
@@ -54,6 +56,8 @@ public class SwingChessBoard implements ChessBoard {
         this.boardDisplay = boardDisplay;
         pieces = new ChessPiece[numRows][numColumns];
         squares = new JButton[numRows][numColumns];
+        attackMap = new AttackMap(this);
+        legalMoves = new LegalMoveCache(this);
 
         // create the board visuals on the event dispatch thread
         try {
@@ -135,6 +139,8 @@ public class SwingChessBoard implements ChessBoard {
 
         pieces[row][col] = piece;
         piece.setLocation(row, col);
+        attackMap.squareChanged(row, col);
+        legalMoves.positionChanged();
 
         Runnable addPiece = new Runnable() {
             public void run() {
@@ -166,6 +172,8 @@ public class SwingChessBoard implements ChessBoard {
         // and run the display code on the event dispatch thread
         ChessPiece save = pieces[row][col];
         pieces[row][col] = null;
+        attackMap.squareChanged(row, col);
+        legalMoves.positionChanged();
 
         Runnable removePiece = new Runnable() {
             public void run() {
@@ -217,14 +225,7 @@ public class SwingChessBoard implements ChessBoard {
      * @return true if the square can be attacked by a piece of an opposing side as the parameter piece
      */
     public boolean squareThreatened(int row, int column, ChessPiece piece) {
-        for (int i = 0; i < squares.length; i++) {
-            for (int j = 0; j < squares[i].length; j++) {
-                if (hasPiece(i, j) && getPiece(i, j).getSide() != piece.getSide() &&
-                        getPiece(i, j).isLegalMove(row, column))
-                    return true;
-            }
-        }
-        return false;
+        return attackMap.isThreatened(row, column, piece.getSide());
     }
 
     /**
@@ -243,18 +244,34 @@ public class SwingChessBoard implements ChessBoard {
          */
         private void processFirstSelection(int row, int col) {
             if ((pieces[row][col] != null) &&
-                    (getGameRules() == null || getGameRules().legalPieceToPlay(pieces[row][col], row, col))) {
+                    (getGameRules() == null || getGameRules().legalPieceToPlay(pieces[row][col], row, col)) &&
+                    legalMoves.hasMoves(row, col)) {
                 /*
-                 * if this is the first pick and a square with a piece was picked,
-                 * remember the piece's location and highlight the square.
+                 * if this is the first pick and a square with a piece that can move was picked,
+                 * remember the piece's location and highlight the square and the squares it can move to.
                  */
                 pieceRow = row;
                 pieceCol = col;
                 boardDisplay.highlightSquare(true, squares[row][col], row, col, pieces[row][col]);
+                highlightDestinations(true);
                 firstPick = false;
             }
         }
 
+        /**
+         * Highlight the squares the selected piece can move to, or take the highlight off them.
+         *
+         * @param highlight do we want the highlight on (true) or off (false)?
+         */
+        private void highlightDestinations(boolean highlight) {
+            for (int i = 0; i < squares.length; i++) {
+                for (int j = 0; j < squares[i].length; j++) {
+                    if (legalMoves.isLegal(pieceRow, pieceCol, i, j))
+                        boardDisplay.highlightSquare(highlight, squares[i][j], i, j, pieces[i][j]);
+                }
+            }
+        }
+
         /**
          * What we do when the user chooses the square to move the piece to.
          *
@@ -265,10 +282,18 @@ public class SwingChessBoard implements ChessBoard {
             if (row == pieceRow && col == pieceCol)
                 return;
 
-            boolean moveMade = getGameRules().makeMove(pieces[pieceRow][pieceCol], row, col);
+            // a move that is not in the moves of the position is refused without asking the rules
+            boolean legal = legalMoves.isLegal(pieceRow, pieceCol, row, col);
+            // the highlights come off while the destinations still belong to this position
+            if (legal)
+                highlightDestinations(false);
+            // the cache already checked the move, so it is made without asking the piece again
+            boolean moveMade = legal && getGameRules().makeLegalMove(pieces[pieceRow][pieceCol], row, col);
 
             // if the move was made or if it was not made and the user select a new piece, then reset to choose a new move
             if (moveMade || getGameRules().canChangeSelection(pieces[pieceRow][pieceCol], pieceRow, pieceCol)) {
+                if (!legal)
+                    highlightDestinations(false);
                 boardDisplay.highlightSquare(false, squares[pieceRow][pieceCol], pieceRow, pieceCol, pieces[pieceRow][pieceCol]);
                 firstPick = true;
             }
@@ -0,0 +1,73 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+
+/*
+ * A UCCI (Universal Chinese Chess Protocol) front-end for xiangqi, so xiangqi GUIs can play the search engine
+ * (see SearchEngine) over stdin and stdout, without a window (see EngineProtocol).  It also answers the UCI dialect
+ * with xiangqi FEN that some of them speak: "uci" instead of "ucci", and wtime and btime in "go".
+ * Squares are written in ICCS coordinates: files a to i from the left, ranks 0 to 9 from the side of NORTH
+ * (red), so the first move of a cannon to the middle is "h2e2".  Capital letters are taken as well.
+ * The times of "go time <t> increment <i>" are in milliseconds.
+ * Run with:
+ *   java Ucci    (or java XiangqiChess ucci)
+ * @author: Nhien Phan
+ */
+public class Ucci extends EngineProtocol {
+  // true once the GUI greeted with "ucci", which is answered with "bye" at the end
+  private boolean ucci;
+
+  /*
+   * Constructor
+   * @param in: the stream the commands come from
+   * @param out: the stream the answers go to
+   */
+  public Ucci(InputStream in, PrintStream out) {
+    super(in, out);
+  }
+
+  /** Answer "ucci" or "uci" with the name of the engine */
+  protected boolean greet() {
+    if (reader.is(0, "ucci")) {
+      ucci = true;
+    } else if (!reader.is(0, "uci")) {
+      return false;
+    }
+    out.println("id name Chess-Chinese-Chess-Game");
+    out.println("id author Nhien Phan");
+    out.println(ucci ? "ucciok" : "uciok");
+    return true;
+  }
+
+  /** Say "bye" when the protocol is UCCI */
+  protected void quit() {
+    if (ucci) {
+      out.println("bye");
+    }
+  }
+
+  /** Return the starting position of xiangqi */
+  protected String startPosition() {
+    return Fen.XIANGQI_START;
+  }
+
+  /** Return the 10 rows of a xiangqi board */
+  protected int numRows() {
+    return XiangqiMasks.ROWS;
+  }
+
+  /** Return the row of a rank from '0' (the back row of NORTH) to '9' */
+  protected int row(int rank) {
+    return '9' - rank;
+  }
+
+  /** Return the rank of a row */
+  protected char rank(int row) {
+    return (char) ('9' - row);
+  }
+
+  /** Main method to play over stdin and stdout */
+  public static void main(String[] args) throws IOException {
+    new Ucci(System.in, System.out).run();
+  }
+}
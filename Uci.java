@@ -0,0 +1,57 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+
+/*
+ * A UCI (Universal Chess Interface) front-end for european chess, so chess GUIs and tournament managers can play
+ * the search engine (see SearchEngine) over stdin and stdout, without a window (see EngineProtocol).
+ * Squares are written in algebraic coordinates: files a to h from the left, ranks 1 to 8 from the side of NORTH.
+ * Run with:
+ *   java Uci    (or java EuropeanChess uci)
+ * @author: Nhien Phan
+ */
+public class Uci extends EngineProtocol {
+
+  /*
+   * Constructor
+   * @param in: the stream the commands come from
+   * @param out: the stream the answers go to
+   */
+  public Uci(InputStream in, PrintStream out) {
+    super(in, out);
+  }
+
+  /** Answer "uci" with the name of the engine */
+  protected boolean greet() {
+    if (!reader.is(0, "uci")) return false;
+    out.println("id name Chess-Chinese-Chess-Game");
+    out.println("id author Nhien Phan");
+    out.println("uciok");
+    return true;
+  }
+
+  /** Return the starting position of european chess */
+  protected String startPosition() {
+    return Fen.EUROPEAN_START;
+  }
+
+  /** Return the 8 rows of a european board */
+  protected int numRows() {
+    return 8;
+  }
+
+  /** Return the row of a rank from '1' (the back row of NORTH) to '8' */
+  protected int row(int rank) {
+    return '8' - rank;
+  }
+
+  /** Return the rank of a row */
+  protected char rank(int row) {
+    return (char) ('8' - row);
+  }
+
+  /** Main method to play over stdin and stdout */
+  public static void main(String[] args) throws IOException {
+    new Uci(System.in, System.out).run();
+  }
+}
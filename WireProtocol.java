@@ -0,0 +1,295 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * A compact binary protocol for clients on slow links, in place of the JSON of MoveValidationServer.
+ * Everything is sent in frames of a type byte, a length byte and the payload:
+ *   MOVE   2 bytes: the move packed in a short (see packMove)
+ *   DELTA  a flag byte, then 2 bytes for each square changed: the square (row * columns + column) and what is on it,
+ *          the nibble of PositionSnapshot (8 for a SOUTH piece plus the piece code, 0 for an empty square) with
+ *          NOT_MOVED added when the piece has not moved yet
+ * The flags of a delta are SOUTH_TO_PLAY, XIANGQI and FULL.  A delta holds the squares changed by addPiece and
+ * removePiece on the board since the last delta, and a FULL delta holds every piece and clears the other squares,
+ * to start a client off.  A usual move is then a frame of 4 bytes one way and a delta of 7 bytes the other way
+ * (11 for castling, which changes four squares), where a JSON answer carries the whole FEN text.
+ * A move packs its from square, its to square and its promotion: in european chess into 6 and 6 bits and a
+ * nibble for the code of the promotion piece (0 for none).  Xiangqi squares need 7 bits and there is no
+ * promotion, so a xiangqi move is 7 and 7 bits.
+ * The encoder and the decoder work on ByteBuffers, direct ones for sockets, and allocate nothing.
+ * Run with:
+ *   java WireProtocol [games]   (checks the deltas and compares the bytes of both protocols over random games)
+ * @author: Nhien Phan
+ */
+public final class WireProtocol {
+  // the types of frames
+  public static final int MOVE = 1;
+  public static final int DELTA = 2;
+  // the flags of a delta
+  public static final int SOUTH_TO_PLAY = 1;
+  public static final int XIANGQI = 2;
+  public static final int FULL = 4;
+  // the bits of a square of a delta besides the piece code
+  public static final int SOUTH = 8;
+  public static final int NOT_MOVED = 16;
+  // the bytes of a frame before its payload
+  private static final int HEADER = 2;
+
+  // all static
+  private WireProtocol() {
+  }
+
+  /*
+   * Pack a move into a short
+   * @param xiangqi: true for a xiangqi move
+   * @param from: the square the piece moves from (row * columns + column)
+   * @param to: the square the piece moves to
+   * @param promotion: the code of the piece a pawn promotes to (0 if the move is not a promotion)
+   */
+  public static short packMove(boolean xiangqi, int from, int to, int promotion) {
+    return (short) (xiangqi ? from | to << 7 : from | to << 6 | promotion << 12);
+  }
+
+  /*
+   * Pack a move of MoveGenerator into a short
+   * @param xiangqi: true for a xiangqi move
+   * @param move: the packed move (see PackedMove)
+   */
+  public static short fromPackedMove(boolean xiangqi, int move) {
+    int columns = xiangqi ? XiangqiMasks.COLUMNS : 8;
+    boolean promotes = (PackedMove.flags(move) & PackedMove.PROMOTION) != 0;
+    return packMove(xiangqi, PackedMove.fromRow(move) * columns + PackedMove.fromColumn(move),
+                    PackedMove.toRow(move) * columns + PackedMove.toColumn(move),
+                    promotes ? PackedMove.promotion(move) : 0);
+  }
+
+  /** Return the square a move of packMove is from */
+  public static int moveFrom(boolean xiangqi, short move) {
+    return move & (xiangqi ? 0x7F : 0x3F);
+  }
+
+  /** Return the square a move of packMove is to */
+  public static int moveTo(boolean xiangqi, short move) {
+    return xiangqi ? (move >>> 7) & 0x7F : (move >>> 6) & 0x3F;
+  }
+
+  /** Return the code of the promotion piece of a move of packMove (0 if it is not a promotion) */
+  public static int movePromotion(boolean xiangqi, short move) {
+    return xiangqi ? 0 : (move >>> 12) & 0xF;
+  }
+
+  /*
+   * Write a move frame
+   * @param out: the buffer
+   * @param move: the move (see packMove)
+   */
+  public static void putMove(ByteBuffer out, short move) {
+    out.put((byte) MOVE).put((byte) 2).putShort(move);
+  }
+
+  /*
+   * Write a delta frame of the squares changed on a board since the last delta, and forget them
+   * @param out: the buffer
+   * @param board: the board
+   * @param sideToPlay: the side to play
+   */
+  public static void putDelta(ByteBuffer out, HeadlessChessBoard board, ChessGame.Side sideToPlay) {
+    int start = beginDelta(out, board, sideToPlay, 0);
+    int columns = board.numColumns();
+    for (int index = 0; index < 2; index++) {
+      for (long bits = board.getChanges(index); bits != 0; bits &= bits - 1) {
+        int square = index << 6 | Long.numberOfTrailingZeros(bits);
+        out.put((byte) square).put((byte) squareContent(board.getPiece(square / columns, square % columns)));
+      }
+    }
+    out.put(start + 1, (byte) (out.position() - start - HEADER));
+    board.clearChanges();
+  }
+
+  /*
+   * Write a FULL delta frame of every piece of a board, and forget the changed squares
+   * @param out: the buffer
+   * @param board: the board
+   * @param sideToPlay: the side to play
+   */
+  public static void putPosition(ByteBuffer out, HeadlessChessBoard board, ChessGame.Side sideToPlay) {
+    int start = beginDelta(out, board, sideToPlay, FULL);
+    for (int row = 0; row < board.numRows(); row++) {
+      for (int column = 0; column < board.numColumns(); column++) {
+        ChessPiece piece = board.getPiece(row, column);
+        if (piece != null) {
+          out.put((byte) (row * board.numColumns() + column)).put((byte) squareContent(piece));
+        }
+      }
+    }
+    out.put(start + 1, (byte) (out.position() - start - HEADER));
+    board.clearChanges();
+  }
+
+  // write the header and the flags of a delta, return the position of the frame
+  private static int beginDelta(ByteBuffer out, HeadlessChessBoard board, ChessGame.Side sideToPlay, int flags) {
+    int start = out.position();
+    flags |= (board.numRows() == XiangqiMasks.ROWS ? XIANGQI : 0)
+      | (sideToPlay == ChessGame.Side.SOUTH ? SOUTH_TO_PLAY : 0);
+    out.put((byte) DELTA).put((byte) 0).put((byte) flags);
+    return start;
+  }
+
+  /*
+   * Return what a delta holds for a square with a piece on it (0 for an empty square)
+   * @param piece: the piece, or null
+   */
+  static int squareContent(ChessPiece piece) {
+    int code = PackedMove.pieceCode(piece);
+    if (code == 0) return 0;
+    return code | (piece.getSide() == ChessGame.Side.SOUTH ? SOUTH : 0) | (piece.getFirstMoveStatus() ? NOT_MOVED : 0);
+  }
+
+  /*
+   * Return the type of the frame at the position of a buffer, 0 if the frame has not fully arrived
+   * @param in: the buffer
+   */
+  public static int frameType(ByteBuffer in) {
+    int position = in.position();
+    if (in.remaining() < HEADER || in.remaining() < HEADER + (in.get(position + 1) & 0xFF)) return 0;
+    return in.get(position);
+  }
+
+  /*
+   * Read a move frame
+   * @param in: the buffer, at a whole move frame
+   */
+  public static short getMove(ByteBuffer in) {
+    if (in.get() != MOVE || in.get() != 2) {
+      throw new IllegalArgumentException("Not a move frame at " + (in.position() - 2));
+    }
+    return in.getShort();
+  }
+
+  /*
+   * Read a delta frame and apply it to the squares of a client, which hold what a delta holds
+   * return the flags of the delta
+   * @param in: the buffer, at a whole delta frame
+   * @param squares: the squares of the client (row * columns + column)
+   */
+  public static int getDelta(ByteBuffer in, byte[] squares) {
+    int type = in.get();
+    int length = in.get() & 0xFF;
+    if (type != DELTA || length % 2 == 0) {
+      throw new IllegalArgumentException("Not a delta frame at " + (in.position() - 2));
+    }
+    int flags = in.get();
+    if ((flags & FULL) != 0) {
+      Arrays.fill(squares, (byte) 0);
+    }
+    for (int i = 1; i < length; i += 2) {
+      int square = in.get() & 0xFF;
+      if (square >= squares.length) {
+        throw new IllegalArgumentException("No square " + square + " in a delta for " + squares.length + " squares");
+      }
+      squares[square] = in.get();
+    }
+    return flags;
+  }
+
+  /*
+   * Main method to check the protocol over random games of both kinds and compare its bytes with JSON.
+   * The JSON baseline sends {"move": ...} one way and answers {"move": ..., "fen": ...} with the FEN text of
+   * the endpoint; the binary protocol sends a move frame one way and a delta the other way.  The time to encode
+   * and decode both is measured by WireProtocolBenchmark of the benchmarks module.
+   * @param args: the number of games (200 if none)
+   */
+  public static void main(String[] args) {
+    int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    Random random = new Random(7);
+    ByteBuffer binary = ByteBuffer.allocate(200 * 32 + 256);
+    ByteBuffer json = ByteBuffer.allocate(200 * 256);
+    JsonWriter writer = new JsonWriter();
+    byte[] squares = new byte[XiangqiMasks.SQUARES];
+    long moves = 0;
+    long[] sent = new long[2];
+    long[] answered = new long[2];
+    int mismatches = 0;
+    for (int game = 0; game < games; game++) {
+      boolean xiangqi = game % 2 == 1;
+      int[] played = randomGame(xiangqi, random);
+      moves += played.length;
+      HeadlessChessBoard board = Fen.read(xiangqi ? Fen.XIANGQI_START : Fen.EUROPEAN_START);
+      binary.clear();
+      json.clear();
+      putPosition(binary, board, ChessGame.Side.NORTH);
+      answered[0] += binary.position();
+      for (int move : played) {
+        board.makeMove(move);
+        ChessGame.Side sideToPlay = ((Chess) board.getGameRules()).getProperSide();
+        int start = binary.position();
+        putMove(binary, fromPackedMove(xiangqi, move));
+        sent[0] += binary.position() - start;
+        start = binary.position();
+        putDelta(binary, board, sideToPlay);
+        answered[0] += binary.position() - start;
+        start = json.position();
+        writeJsonMove(writer.reset(json).beginObject(), move, xiangqi).endObject();
+        sent[1] += json.position() - start;
+        start = json.position();
+        writeJsonMove(writer.reset(json).beginObject(), move, xiangqi).name("fen").fen(board, sideToPlay).endObject();
+        answered[1] += json.position() - start;
+      }
+      // a client following the frames must end with the board of the server
+      binary.flip();
+      for (int type = frameType(binary); type != 0; type = frameType(binary)) {
+        if (type == MOVE) {
+          getMove(binary);
+        } else {
+          getDelta(binary, squares);
+        }
+      }
+      int columns = board.numColumns();
+      for (int square = 0; square < board.numRows() * columns; square++) {
+        if (squares[square] != squareContent(board.getPiece(square / columns, square % columns))) {
+          mismatches++;
+        }
+      }
+    }
+    System.out.printf("%d games, %d moves, client boards %s (%d mismatches)%n", games, moves,
+                      mismatches == 0 ? "in step" : "out of step", mismatches);
+    System.out.printf("binary: %.1f bytes a move (%.1f sent, %.1f answered, with the start positions)%n",
+                      (double) (sent[0] + answered[0]) / moves, (double) sent[0] / moves, (double) answered[0] / moves);
+    System.out.printf("json:   %.1f bytes a move (%.1f sent, %.1f answered)%n",
+                      (double) (sent[1] + answered[1]) / moves, (double) sent[1] / moves, (double) answered[1] / moves);
+    System.out.printf("binary / json: %.1f%% of the bytes%n",
+                      100.0 * (sent[0] + answered[0]) / (sent[1] + answered[1]));
+  }
+
+  /*
+   * Play a random game of legal moves and return its moves
+   * @param xiangqi: true for xiangqi
+   * @param random: the random numbers
+   */
+  private static int[] randomGame(boolean xiangqi, Random random) {
+    HeadlessChessBoard board = Fen.read(xiangqi ? Fen.XIANGQI_START : Fen.EUROPEAN_START);
+    Chess rules = (Chess) board.getGameRules();
+    int[] moves = new int[MoveGenerator.MAX_MOVES];
+    int[] played = new int[200];
+    int ply = 0;
+    while (ply < played.length) {
+      int legal = MoveGenerator.generateLegalMoves(board, rules.getProperSide(), moves);
+      if (legal == 0) break;
+      played[ply] = moves[random.nextInt(legal)];
+      board.makeMove(played[ply++]);
+    }
+    return Arrays.copyOf(played, ply);
+  }
+
+  // write the "move" member of the JSON baseline
+  private static JsonWriter writeJsonMove(JsonWriter json, int move, boolean xiangqi) {
+    int top = xiangqi ? '9' : '8';
+    json.name("move").beginString()
+      .character((char) ('a' + PackedMove.fromColumn(move))).character((char) (top - PackedMove.fromRow(move)))
+      .character((char) ('a' + PackedMove.toColumn(move))).character((char) (top - PackedMove.toRow(move)));
+    if ((PackedMove.flags(move) & PackedMove.PROMOTION) != 0) {
+      json.character("prnbqk".charAt(PackedMove.promotion(move) - 1));
+    }
+    return json.endString();
+  }
+}
@@ -4,17 +4,59 @@
  */
 public enum XiangQiPieceType {
   
-  X("Xiangqi king"),
-  G("Guard"),
-  E("Elephant"),
-  H("Horse"),
-  R("Rook"),
-  C("Cannon"),
-  S("Soldier");
+  X("Xiangqi king", 0),
+  G("Guard", 200),
+  E("Elephant", 200),
+  H("Horse", 400),
+  R("Rook", 900),
+  C("Cannon", 450),
+  S("Soldier", 100);
   
   public final String name;
+  // the material value of the piece in hundredths of a soldier (the king is never traded)
+  public final int value;
   
-  XiangQiPieceType(String name) {
+  XiangQiPieceType(String name, int value) {
     this.name = name;
+    this.value = value;
+  }
+  
+  /*
+   * Create a new piece of this type
+   * @param side: the side of the piece
+   * @param board: the board the piece is on
+   */
+  public ChessPiece newPiece(ChessGame.Side side, ChessBoard board) {
+    switch (this) {
+      case X:
+        return new XiangqiKingPiece(side, name, board);
+      case G:
+        return new GuardPiece(side, name, board);
+      case E:
+        return new ElephantPiece(side, name, board);
+      case H:
+        return new HorsePiece(side, name, board);
+      case R:
+        return new XiangqiRookPiece(side, name, board);
+      case C:
+        return new CannonPiece(side, name, board);
+      default:
+        return new SoldierPiece(side, name, board);
+    }
+  }
+  
+  /*
+   * Return the type of a xiangqi piece (null if the piece is not a xiangqi piece)
+   * @param piece: the piece to check
+   */
+  public static XiangQiPieceType of(ChessPiece piece) {
+    if (piece instanceof XiangqiKingPiece) return X;
+    if (piece instanceof GuardPiece) return G;
+    if (piece instanceof ElephantPiece) return E;
+    if (piece instanceof HorsePiece) return H;
+    if (piece instanceof XiangqiRookPiece) return R;
+    if (piece instanceof CannonPiece) return C;
+    if (piece instanceof SoldierPiece) return S;
+    return null;
   }
 }
@@ -0,0 +1,237 @@
+/*
+ * A headless xiangqi board that stores the position as square masks.
+ * The 90 squares do not fit in one long, so every mask is a pair of longs (see XiangqiMasks).
+ * @author: Nhien Phan
+ */
+public class XiangqiBitboardChessBoard extends HeadlessChessBoard {
+  // the low and high longs of the mask of each side and each type of piece
+  private final long[][] pieceLow = new long[ChessGame.Side.values().length][XiangQiPieceType.values().length];
+  private final long[][] pieceHigh = new long[ChessGame.Side.values().length][XiangQiPieceType.values().length];
+  // the low and high longs of the mask of all pieces of each side
+  private final long[] sideLow = new long[ChessGame.Side.values().length];
+  private final long[] sideHigh = new long[ChessGame.Side.values().length];
+  // the low and high longs of the mask of all occupied squares
+  private long occupiedLow;
+  private long occupiedHigh;
+  
+  // the four lines then the four diagonals around a square
+  static final int[] LINE_ROW = {-1, 1, 0, 0, -1, -1, 1, 1};
+  static final int[] LINE_COLUMN = {0, 0, -1, 1, -1, 1, -1, 1};
+  // where a horse stands relative to a square it attacks
+  static final int[] HORSE_ROW = {-2, -2, -1, -1, 1, 1, 2, 2};
+  static final int[] HORSE_COLUMN = {-1, 1, -2, 2, -2, 2, -1, 1};
+
+  /*
+   * Constructor
+   * @param gameRules: the rules of the game played on this board
+   */
+  public XiangqiBitboardChessBoard(ChessGame gameRules) {
+    super(gameRules, XiangqiMasks.ROWS, XiangqiMasks.COLUMNS);
+  }
+
+  /*
+   * Return the low long of the mask of one type of piece of one side
+   * @param side: the side of the pieces
+   * @param type: the type of the pieces
+   */
+  public long getPiecesLow(ChessGame.Side side, XiangQiPieceType type) {
+    return pieceLow[sideIndex(side)][type.ordinal()];
+  }
+
+  /*
+   * Return the high long of the mask of one type of piece of one side
+   * @param side: the side of the pieces
+   * @param type: the type of the pieces
+   */
+  public long getPiecesHigh(ChessGame.Side side, XiangQiPieceType type) {
+    return pieceHigh[sideIndex(side)][type.ordinal()];
+  }
+
+  /*
+   * Return the low long of the mask of all pieces of one side
+   * @param side: the side of the pieces
+   */
+  public long getPiecesLow(ChessGame.Side side) {
+    return sideLow[sideIndex(side)];
+  }
+
+  /*
+   * Return the high long of the mask of all pieces of one side
+   * @param side: the side of the pieces
+   */
+  public long getPiecesHigh(ChessGame.Side side) {
+    return sideHigh[sideIndex(side)];
+  }
+
+  /** Return the low long of the mask of all occupied squares */
+  public long getOccupiedLow() {
+    return occupiedLow;
+  }
+
+  /** Return the high long of the mask of all occupied squares */
+  public long getOccupiedHigh() {
+    return occupiedHigh;
+  }
+
+  /** Return the phase of the full set of xiangqi pieces */
+  public int getMaxPhase() {
+    return PieceSquareTables.XIANGQI_MAX_PHASE;
+  }
+
+  /*
+   * Check if a square is empty using the occupancy mask
+   * @param square: the square index (see XiangqiMasks.square)
+   */
+  public boolean isEmpty(int square) {
+    return !XiangqiMasks.contains(occupiedLow, occupiedHigh, square);
+  }
+
+  /*
+   * Check if a square is attacked by a piece of a side
+   * @param row: the row of the square
+   * @param col: the column of the square
+   * @param side: the attacking side
+   */
+  public boolean isAttackedBy(int row, int col, ChessGame.Side side) {
+    int index = sideIndex(side);
+    // rooks hit the first piece of a line and cannons the piece after the screen
+    for (int i = 0; i < 4; i++) {
+      int screens = 0;
+      int r = row + LINE_ROW[i];
+      int c = col + LINE_COLUMN[i];
+      while (r >= 0 && r < XiangqiMasks.ROWS && c >= 0 && c < XiangqiMasks.COLUMNS) {
+        int square = XiangqiMasks.square(r, c);
+        if (!isEmpty(square)) {
+          if (screens == 0 && has(index, XiangQiPieceType.R, square)) return true;
+          if (screens == 1) {
+            if (has(index, XiangQiPieceType.C, square)) return true;
+            break;
+          }
+          screens++;
+        }
+        r += LINE_ROW[i];
+        c += LINE_COLUMN[i];
+      }
+    }
+    // a horse is blocked by the piece next to it on the long side of its move
+    for (int i = 0; i < HORSE_ROW.length; i++) {
+      int horseRow = row + HORSE_ROW[i];
+      int horseColumn = col + HORSE_COLUMN[i];
+      if (has(index, XiangQiPieceType.H, XiangqiMasks.square(horseRow, horseColumn))) {
+        int leg = Math.abs(HORSE_ROW[i]) == 2
+          ? XiangqiMasks.square(row + HORSE_ROW[i] / 2, horseColumn)
+          : XiangqiMasks.square(horseRow, col + HORSE_COLUMN[i] / 2);
+        if (isEmpty(leg)) return true;
+      }
+    }
+    // a soldier attacks forward, and sideways once it crossed the river
+    int soldierRow = side == ChessGame.Side.NORTH ? row + 1 : row - 1;
+    if (has(index, XiangQiPieceType.S, XiangqiMasks.square(soldierRow, col))) return true;
+    if (!XiangqiMasks.atHome(side, row, col)
+          && (has(index, XiangQiPieceType.S, XiangqiMasks.square(row, col - 1))
+                || has(index, XiangQiPieceType.S, XiangqiMasks.square(row, col + 1)))) {
+      return true;
+    }
+    // the guards and the king stay inside their palace
+    if (XiangqiMasks.inPalace(side, row, col)) {
+      for (int i = 0; i < 4; i++) {
+        if (has(index, XiangQiPieceType.X, XiangqiMasks.square(row + LINE_ROW[i], col + LINE_COLUMN[i]))
+              || has(index, XiangQiPieceType.G, XiangqiMasks.square(row + LINE_ROW[i + 4], col + LINE_COLUMN[i + 4]))) {
+          return true;
+        }
+      }
+    }
+    // the elephants stay on their side of the river and need an empty eye
+    if (XiangqiMasks.atHome(side, row, col)) {
+      for (int i = 4; i < 8; i++) {
+        if (has(index, XiangQiPieceType.E, XiangqiMasks.square(row + 2 * LINE_ROW[i], col + 2 * LINE_COLUMN[i]))
+              && isEmpty(XiangqiMasks.square(row + LINE_ROW[i], col + LINE_COLUMN[i]))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+  
+  /*
+   * Check if a piece of one side and type is on a square
+   * @param side: the index of the side
+   * @param type: the type of the piece
+   * @param square: the square (-1 when outside the board)
+   */
+  private boolean has(int side, XiangQiPieceType type, int square) {
+    return XiangqiMasks.contains(pieceLow[side][type.ordinal()], pieceHigh[side][type.ordinal()], square);
+  }
+  
+  /*
+   * Check if the king of a side is attacked or faces the other king on an open column
+   * @param side: the side of the king
+   */
+  @Override
+  public boolean isInCheck(ChessGame.Side side) {
+    return super.isInCheck(side) || kingsFacing();
+  }
+  
+  // check if the two kings are on the same column with no piece between them
+  private boolean kingsFacing() {
+    int south = getKingSquare(ChessGame.Side.SOUTH);
+    int north = getKingSquare(ChessGame.Side.NORTH);
+    if (south < 0 || north < 0 || south % XiangqiMasks.COLUMNS != north % XiangqiMasks.COLUMNS) return false;
+    for (int square = Math.min(south, north) + XiangqiMasks.COLUMNS; square < Math.max(south, north); square += XiangqiMasks.COLUMNS) {
+      if (!isEmpty(square)) return false;
+    }
+    return true;
+  }
+  
+  /*
+   * Set the bits of the piece's square
+   * @param piece: the piece added
+   * @param row: the row of the piece
+   * @param col: the column of the piece
+   */
+  protected void pieceAdded(ChessPiece piece, int row, int col) {
+    int square = XiangqiMasks.square(row, col);
+    long low = XiangqiMasks.lowBit(square);
+    long high = XiangqiMasks.highBit(square);
+    int side = sideIndex(piece.getSide());
+    XiangQiPieceType type = XiangQiPieceType.of(piece);
+    if (type != null) {
+      pieceLow[side][type.ordinal()] |= low;
+      pieceHigh[side][type.ordinal()] |= high;
+      addMaterial(piece.getSide(), type.value);
+      addPieceSquare(piece.getSide(), PieceSquareTables.xiangqiMidgame(type, piece.getSide(), row, col),
+                     PieceSquareTables.xiangqiEndgame(type, piece.getSide(), row, col),
+                     PieceSquareTables.XIANGQI_PHASE[type.ordinal()]);
+    }
+    sideLow[side] |= low;
+    sideHigh[side] |= high;
+    occupiedLow |= low;
+    occupiedHigh |= high;
+  }
+
+  /*
+   * Clear the bits of the piece's square
+   * @param piece: the piece removed
+   * @param row: the row the piece was on
+   * @param col: the column the piece was on
+   */
+  protected void pieceRemoved(ChessPiece piece, int row, int col) {
+    int square = XiangqiMasks.square(row, col);
+    long low = ~XiangqiMasks.lowBit(square);
+    long high = ~XiangqiMasks.highBit(square);
+    int side = sideIndex(piece.getSide());
+    XiangQiPieceType type = XiangQiPieceType.of(piece);
+    if (type != null) {
+      pieceLow[side][type.ordinal()] &= low;
+      pieceHigh[side][type.ordinal()] &= high;
+      addMaterial(piece.getSide(), -type.value);
+      addPieceSquare(piece.getSide(), -PieceSquareTables.xiangqiMidgame(type, piece.getSide(), row, col),
+                     -PieceSquareTables.xiangqiEndgame(type, piece.getSide(), row, col),
+                     -PieceSquareTables.XIANGQI_PHASE[type.ordinal()]);
+    }
+    sideLow[side] &= low;
+    sideHigh[side] &= high;
+    occupiedLow &= low;
+    occupiedHigh &= high;
+  }
+}
@@ -4,8 +4,12 @@
  */
 public class XiangqiChess extends Chess {
   
-  /** Main method to begin playing */
-  public static void main(String[] args) {
+  /** Main method to begin playing, or to play over UCCI without a window when the argument is "ucci" */
+  public static void main(String[] args) throws java.io.IOException {
+    if (args.length > 0 && args[0].equals("ucci")) {
+      new Ucci(System.in, System.out).run();
+      return;
+    }
     XiangqiChess xiangqi = new XiangqiChess();
     XiangqiChessDisplay ecd = new XiangqiChessDisplay();
     SwingChessBoard board = new SwingChessBoard(ecd, xiangqi);
@@ -75,6 +75,14 @@ public class XiangqiKingPiece extends ChessPiece {
    * @param cell: the cell to check
    */
   public boolean checkFacingKing(Cell cell) {
+    return checkFacingKing(cell.getCol());
+  }
+  
+  /*
+   * Check if the moving the xiangqi to a column will create facing kings situation
+   * @param column: the column to check
+   */
+  public boolean checkFacingKing(int column) {
     // count the empty cells and the king in column
     int countEmpty = 0;
     int countKing = 0;
@@ -83,12 +91,12 @@ public class XiangqiKingPiece extends ChessPiece {
     if (this.getSide() == ChessGame.Side.SOUTH) {
       for (int i = this.getRow(); i < getChessBoard().numRows(); i++) {
         // check if other king is in the same column
-        if (!getChessBoard().hasPiece(i, cell.getCol())) {
+        if (!getChessBoard().hasPiece(i, column)) {
           countEmpty++;
         }
         // count empty cells in the same column
-        if ((getChessBoard().getPiece(i, cell.getCol()) instanceof XiangqiKingPiece)
-              && (getChessBoard().getPiece(i, cell.getCol()).getSide() != this.getSide())) {
+        if ((getChessBoard().getPiece(i, column) instanceof XiangqiKingPiece)
+              && (getChessBoard().getPiece(i, column).getSide() != this.getSide())) {
           countKing++;
         }
         // return true if there is a king of other side and all other cells are empty
@@ -101,12 +109,12 @@ public class XiangqiKingPiece extends ChessPiece {
     if (this.getSide() == ChessGame.Side.NORTH) {
       for (int k = this.getRow(); k >= 0; k--) {
         // check if other king is in the same column
-        if (!getChessBoard().hasPiece(k, cell.getCol())) {
+        if (!getChessBoard().hasPiece(k, column)) {
           countEmpty++;
         }
         // count empty cells in the same column
-        if ((getChessBoard().getPiece(k, cell.getCol()) instanceof XiangqiKingPiece)
-              && (getChessBoard().getPiece(k, cell.getCol()).getSide() != this.getSide())) {
+        if ((getChessBoard().getPiece(k, column) instanceof XiangqiKingPiece)
+              && (getChessBoard().getPiece(k, column).getSide() != this.getSide())) {
           countKing++;
         }
         // return true if there is a king of other side and all other cells are empty
@@ -119,6 +127,24 @@ public class XiangqiKingPiece extends ChessPiece {
     return false;
   }
   
+  /*
+   * Write the packed moves of this king into a buffer without allocating (see PackedMove)
+   * @param moves: the buffer to write the moves into
+   * @param count: the number of moves already in the buffer
+   */
+  @Override
+  public int generateMoves(int[] moves, int count) {
+    for (int i = 0; i < 4; i++) {
+      // the four cells around the king: up, down, left, right
+      int toRow = this.getRow() + (i == 0 ? -1 : i == 1 ? 1 : 0);
+      int toColumn = this.getColumn() + (i == 2 ? -1 : i == 3 ? 1 : 0);
+      if (XiangqiMasks.inPalace(this.getSide(), toRow, toColumn) && !checkFacingKing(toColumn)) {
+        count = addMove(moves, count, toRow, toColumn);
+      }
+    }
+    return count;
+  }
+  
   /*
    * Check if this move is a legal move (return true if it is legal (false if illegal)
    * @param row: the destination's row
@@ -126,13 +152,15 @@ public class XiangqiKingPiece extends ChessPiece {
    */
   @Override
   public boolean isLegalMove(int toRow, int toColumn) {
-    Cell targetSquare = new Cell(toRow, toColumn);
-    move(this.getChessBoard(), this.getRow(), this.getColumn());
-    for (Cell possibleMove : possibleMoves) {
-      if ((possibleMove.compareTo(targetSquare) == 0)
-            && (super.isLegalMove(toRow, toColumn))) return true;
-    }
-    return false;
+    int from = XiangqiMasks.square(this.getRow(), this.getColumn());
+    int to = XiangqiMasks.square(toRow, toColumn);
+    // the king steps one square orthogonally and stays inside its own palace
+    return from >= 0
+      && XiangqiMasks.contains(XiangqiMasks.KING_STEP_LOW[from], XiangqiMasks.KING_STEP_HIGH[from], to)
+      && XiangqiMasks.inPalace(this.getSide(), toRow, toColumn)
+      && (!getChessBoard().hasPiece(toRow, toColumn)
+            || getChessBoard().getPiece(toRow, toColumn).getSide() != this.getSide())
+      && !checkFacingKing(toColumn);
   }
   
   /*
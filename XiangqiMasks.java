@@ -0,0 +1,210 @@
+/*
+ * Precomputed square masks for the 10x9 xiangqi board.
+ * The board has 90 squares, which does not fit in a long, so every mask is a pair of longs:
+ * the low long holds squares 0 to 63 and the high long holds squares 64 to 89.
+ * The square of (row, column) is row * 9 + column.
+ * @author: Nhien Phan
+ */
+public final class XiangqiMasks {
+  // the size of the xiangqi board
+  public static final int ROWS = 10;
+  public static final int COLUMNS = 9;
+  public static final int SQUARES = ROWS * COLUMNS;
+
+  // the palace of each side (indexed by side ordinal)
+  public static final long[] PALACE_LOW = new long[ChessGame.Side.values().length];
+  public static final long[] PALACE_HIGH = new long[ChessGame.Side.values().length];
+  // the half of the board on each side of the river (indexed by side ordinal)
+  public static final long[] HOME_LOW = new long[ChessGame.Side.values().length];
+  public static final long[] HOME_HIGH = new long[ChessGame.Side.values().length];
+
+  // squares one orthogonal step away (king moves) of each square
+  public static final long[] KING_STEP_LOW = new long[SQUARES];
+  public static final long[] KING_STEP_HIGH = new long[SQUARES];
+  // squares one diagonal step away inside a palace (guard moves) of each square
+  public static final long[] GUARD_STEP_LOW = new long[SQUARES];
+  public static final long[] GUARD_STEP_HIGH = new long[SQUARES];
+  // squares two diagonal steps away (elephant moves) of each square
+  public static final long[] ELEPHANT_STEP_LOW = new long[SQUARES];
+  public static final long[] ELEPHANT_STEP_HIGH = new long[SQUARES];
+  // squares a horse jump away of each square
+  public static final long[] HORSE_STEP_LOW = new long[SQUARES];
+  public static final long[] HORSE_STEP_HIGH = new long[SQUARES];
+
+  // for each square and each of the four diagonals: the elephant target and the elephant eye that blocks it (-1 if off board)
+  public static final int[][] ELEPHANT_TARGET = new int[SQUARES][4];
+  public static final int[][] ELEPHANT_EYE = new int[SQUARES][4];
+  // for each square and each of the eight jumps: the horse target and the horse leg that blocks it (-1 if off board)
+  public static final int[][] HORSE_TARGET = new int[SQUARES][8];
+  public static final int[][] HORSE_LEG = new int[SQUARES][8];
+
+  // the row and column changes of the eight horse jumps and the matching leg steps
+  private static final int[] HORSE_ROW = {-2, -2, 2, 2, -1, 1, -1, 1};
+  private static final int[] HORSE_COLUMN = {-1, 1, -1, 1, -2, -2, 2, 2};
+  private static final int[] LEG_ROW = {-1, -1, 1, 1, 0, 0, 0, 0};
+  private static final int[] LEG_COLUMN = {0, 0, 0, 0, -1, -1, 1, 1};
+  // the row and column changes of the four diagonals
+  private static final int[] DIAGONAL_ROW = {-1, -1, 1, 1};
+  private static final int[] DIAGONAL_COLUMN = {-1, 1, -1, 1};
+
+  static {
+    int north = ChessGame.Side.NORTH.ordinal();
+    int south = ChessGame.Side.SOUTH.ordinal();
+    for (int row = 0; row < ROWS; row++) {
+      for (int column = 0; column < COLUMNS; column++) {
+        int square = square(row, column);
+        // south owns rows 0 to 4 and north owns rows 5 to 9
+        int home = row < 5 ? south : north;
+        HOME_LOW[home] |= lowBit(square);
+        HOME_HIGH[home] |= highBit(square);
+        if (column >= 3 && column <= 5 && (row <= 2 || row >= 7)) {
+          PALACE_LOW[home] |= lowBit(square);
+          PALACE_HIGH[home] |= highBit(square);
+        }
+      }
+    }
+
+    for (int row = 0; row < ROWS; row++) {
+      for (int column = 0; column < COLUMNS; column++) {
+        int from = square(row, column);
+        // king steps
+        addStep(KING_STEP_LOW, KING_STEP_HIGH, from, square(row - 1, column));
+        addStep(KING_STEP_LOW, KING_STEP_HIGH, from, square(row + 1, column));
+        addStep(KING_STEP_LOW, KING_STEP_HIGH, from, square(row, column - 1));
+        addStep(KING_STEP_LOW, KING_STEP_HIGH, from, square(row, column + 1));
+        for (int i = 0; i < 4; i++) {
+          // guard steps stay inside the palace the guard is in
+          int guardTo = square(row + DIAGONAL_ROW[i], column + DIAGONAL_COLUMN[i]);
+          if (inPalace(from) && guardTo >= 0 && inPalace(guardTo)) {
+            addStep(GUARD_STEP_LOW, GUARD_STEP_HIGH, from, guardTo);
+          }
+          // elephant steps and the eye in the middle
+          int elephantTo = square(row + 2 * DIAGONAL_ROW[i], column + 2 * DIAGONAL_COLUMN[i]);
+          ELEPHANT_TARGET[from][i] = elephantTo;
+          ELEPHANT_EYE[from][i] = elephantTo < 0 ? -1 : square(row + DIAGONAL_ROW[i], column + DIAGONAL_COLUMN[i]);
+          addStep(ELEPHANT_STEP_LOW, ELEPHANT_STEP_HIGH, from, elephantTo);
+        }
+        // horse jumps and the leg next to the horse
+        for (int i = 0; i < 8; i++) {
+          int horseTo = square(row + HORSE_ROW[i], column + HORSE_COLUMN[i]);
+          HORSE_TARGET[from][i] = horseTo;
+          HORSE_LEG[from][i] = horseTo < 0 ? -1 : square(row + LEG_ROW[i], column + LEG_COLUMN[i]);
+          addStep(HORSE_STEP_LOW, HORSE_STEP_HIGH, from, horseTo);
+        }
+      }
+    }
+  }
+
+  // this class only holds tables
+  private XiangqiMasks() {
+  }
+
+  /*
+   * Return the square index of a location (-1 if the location is off the board)
+   * @param row: the row of the square
+   * @param column: the column of the square
+   */
+  public static int square(int row, int column) {
+    if (row < 0 || row >= ROWS || column < 0 || column >= COLUMNS) return -1;
+    return row * COLUMNS + column;
+  }
+
+  /*
+   * Return the bit of a square in the low long of a mask (0 if the square is in the high long)
+   * @param square: the square index
+   */
+  public static long lowBit(int square) {
+    return square < 64 ? 1L << square : 0L;
+  }
+
+  /*
+   * Return the bit of a square in the high long of a mask (0 if the square is in the low long)
+   * @param square: the square index
+   */
+  public static long highBit(int square) {
+    return square < 64 ? 0L : 1L << (square - 64);
+  }
+
+  /*
+   * Check if a square is set in a mask
+   * @param low: the low long of the mask
+   * @param high: the high long of the mask
+   * @param square: the square index (-1 is never set)
+   */
+  public static boolean contains(long low, long high, int square) {
+    if (square < 0) return false;
+    return square < 64 ? (low & (1L << square)) != 0 : (high & (1L << (square - 64))) != 0;
+  }
+
+  /*
+   * Check if a square is inside the palace of a side
+   * @param side: the side of the palace
+   * @param row: the row of the square
+   * @param column: the column of the square
+   */
+  public static boolean inPalace(ChessGame.Side side, int row, int column) {
+    return contains(PALACE_LOW[side.ordinal()], PALACE_HIGH[side.ordinal()], square(row, column));
+  }
+
+  /*
+   * Check if a square is on the side's half of the river
+   * @param side: the side of the half
+   * @param row: the row of the square
+   * @param column: the column of the square
+   */
+  public static boolean atHome(ChessGame.Side side, int row, int column) {
+    return contains(HOME_LOW[side.ordinal()], HOME_HIGH[side.ordinal()], square(row, column));
+  }
+
+  /*
+   * Return the square an elephant eye must be empty for a move (-1 if it is not an elephant move)
+   * @param from: the square of the elephant
+   * @param to: the square the elephant moves to
+   */
+  public static int elephantEye(int from, int to) {
+    for (int i = 0; i < 4; i++) {
+      if (ELEPHANT_TARGET[from][i] == to) return ELEPHANT_EYE[from][i];
+    }
+    return -1;
+  }
+
+  /*
+   * Return the square the horse leg must be empty for a move (-1 if it is not a horse move)
+   * @param from: the square of the horse
+   * @param to: the square the horse moves to
+   */
+  public static int horseLeg(int from, int to) {
+    for (int i = 0; i < 8; i++) {
+      if (HORSE_TARGET[from][i] == to) return HORSE_LEG[from][i];
+    }
+    return -1;
+  }
+
+  /*
+   * Check if a square of a board is empty, using the occupancy masks when the board keeps them
+   * @param board: the board to check
+   * @param square: the square index
+   */
+  public static boolean isEmpty(ChessBoard board, int square) {
+    if (square < 0) return false;
+    if (board instanceof XiangqiBitboardChessBoard) {
+      return ((XiangqiBitboardChessBoard) board).isEmpty(square);
+    }
+    return !board.hasPiece(square / COLUMNS, square % COLUMNS);
+  }
+
+  // check if a square is in either palace
+  private static boolean inPalace(int square) {
+    int north = ChessGame.Side.NORTH.ordinal();
+    int south = ChessGame.Side.SOUTH.ordinal();
+    return contains(PALACE_LOW[north], PALACE_HIGH[north], square)
+      || contains(PALACE_LOW[south], PALACE_HIGH[south], square);
+  }
+
+  // add a target square to the masks of a starting square
+  private static void addStep(long[] low, long[] high, int from, int to) {
+    if (to < 0) return;
+    low[from] |= lowBit(to);
+    high[from] |= highBit(to);
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Zobrist keys that give a position of either board a 64-bit identity.
+ * The hash of a position is the xor of one key per piece (side, type and cell) and the side key when SOUTH is to play.
+ * Kings and rooks that have not moved have their own keys, so the castle rights are part of the hash.
+ * The keys come from a fixed seed, so hashes are the same in every run and can be stored on disk.  A file of hashes
+ * records VERSION and FINGERPRINT, so hashes of another scheme or of other keys are not read as this one.
+ * @author: Nhien Phan
+ */
+public final class Zobrist {
+  // the largest number of rows and columns of a board
+  private static final int MAX_ROWS = 10;
+  private static final int MAX_COLUMNS = 16;
+  // the number of piece codes (see PackedMove.pieceCode), twice over for kings and rooks that can still castle
+  private static final int CODES = 16;
+  private static final int UNMOVED = 8;
+
+  // the key of each side, piece code and cell (row * 16 + column)
+  private static final long[] PIECE_KEYS = new long[ChessGame.Side.values().length * CODES * MAX_ROWS * MAX_COLUMNS];
+  // the key xored in when SOUTH is to play
+  public static final long SIDE_KEY;
+  // the version of the way a position is hashed, raised when the same position gets another hash
+  // (2: kings and rooks that have not moved have their own keys)
+  public static final int VERSION = 2;
+  // a hash of every key, which changes when any key does
+  public static final long FINGERPRINT;
+
+  static {
+    long seed = 0x5DEECE66DL;
+    for (int i = 0; i < PIECE_KEYS.length; i++) {
+      seed += 0x9E3779B97F4A7C15L;
+      PIECE_KEYS[i] = mix(seed);
+    }
+    seed += 0x9E3779B97F4A7C15L;
+    SIDE_KEY = mix(seed);
+    long fingerprint = mix(SIDE_KEY ^ PIECE_KEYS.length);
+    for (long key : PIECE_KEYS) {
+      fingerprint = mix(fingerprint ^ key);
+    }
+    FINGERPRINT = fingerprint;
+  }
+
+  // this class only holds static helpers
+  private Zobrist() {
+  }
+
+  /*
+   * Return the key of a piece on a cell
+   * @param piece: the piece
+   * @param row: the row of the cell
+   * @param column: the column of the cell
+   */
+  public static long pieceKey(ChessPiece piece, int row, int column) {
+    int code = PackedMove.pieceCode(piece);
+    // a king or rook that has not moved can still castle, so it does not hash like one that has
+    if ((piece instanceof KingPiece || piece instanceof RookPiece) && piece.getFirstMoveStatus()) {
+      code += UNMOVED;
+    }
+    return pieceKey(piece.getSide(), code, row, column);
+  }
+
+  /*
+   * Return the key of a piece on a cell
+   * @param side: the side of the piece
+   * @param code: the piece code (see PackedMove.pieceCode)
+   * @param row: the row of the cell
+   * @param column: the column of the cell
+   */
+  public static long pieceKey(ChessGame.Side side, int code, int row, int column) {
+    return PIECE_KEYS[((side.ordinal() * CODES + code) * MAX_ROWS + row) * MAX_COLUMNS + column];
+  }
+
+  /*
+   * Compute the hash of a board from scratch, with the side to play of the rules of the board
+   * @param board: the board (its rules must be a Chess game)
+   */
+  public static long hash(ChessBoard board) {
+    return hash(board, ((Chess) board.getGameRules()).getProperSide());
+  }
+
+  /*
+   * Compute the hash of a board from scratch
+   * @param board: the board
+   * @param sideToPlay: the side to play
+   */
+  public static long hash(ChessBoard board, ChessGame.Side sideToPlay) {
+    long hash = sideToPlay == ChessGame.Side.SOUTH ? SIDE_KEY : 0L;
+    for (int i = 0; i < board.numRows(); i++) {
+      for (int j = 0; j < board.numColumns(); j++) {
+        if (board.hasPiece(i, j)) {
+          hash ^= pieceKey(board.getPiece(i, j), i, j);
+        }
+      }
+    }
+    return hash;
+  }
+
+  /*
+   * Compute the hash of the pawns and soldiers of a board from scratch: the xor of their piece keys alone
+   * @param board: the board
+   */
+  public static long pawnHash(ChessBoard board) {
+    long hash = 0L;
+    for (int i = 0; i < board.numRows(); i++) {
+      for (int j = 0; j < board.numColumns(); j++) {
+        if (board.hasPiece(i, j) && isPawn(board.getPiece(i, j))) {
+          hash ^= pieceKey(board.getPiece(i, j), i, j);
+        }
+      }
+    }
+    return hash;
+  }
+
+  /*
+   * Check if a piece is a pawn of either game
+   * @param piece: the piece to check
+   */
+  public static boolean isPawn(ChessPiece piece) {
+    return piece instanceof PawnPiece || piece instanceof SoldierPiece;
+  }
+
+  // the finalizer of the splitmix64 generator
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
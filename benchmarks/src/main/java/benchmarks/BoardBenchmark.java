@@ -0,0 +1,98 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+ * Benchmarks of the threat checks of a board.
+ * squareThreatened runs the same attack map code as SwingChessBoard on a headless board, so no display is needed.
+ * The map is only rebuilt after a change of the board, so each check is measured both on an unchanged board
+ * and right after a move, and against isAttackedBy, which looks from the square without a map.
+ * @author: Nhien Phan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+  // the game of the board
+  @Param({"european", "xiangqi"})
+  public String game;
+
+  private Object board;
+  // a piece of the side to play, whose opponent threatens the cells
+  private Object piece;
+  private Object opponent;
+  // a legal move of the side to play
+  private int move;
+  private int rows;
+  private int columns;
+
+  /** Set up the board after a few moves of a recorded game */
+  @Setup
+  public void setUp() {
+    String fen = game.equals("xiangqi") ? Repo.XIANGQI_START : Repo.EUROPEAN_START;
+    int[] opening = Repo.randomGame(fen, 13, 1L);
+    board = Repo.read(fen);
+    for (int i = 0; i < opening.length - 1; i++) {
+      Repo.makePackedMove(board, opening[i]);
+    }
+    move = opening[opening.length - 1];
+    piece = Repo.getPiece(board, Repo.fromRow(move), Repo.fromColumn(move));
+    rows = game.equals("xiangqi") ? 10 : 8;
+    columns = game.equals("xiangqi") ? 9 : 8;
+    // the opponent is the side of the piece that just moved
+    Repo.makePackedMove(board, move);
+    opponent = Repo.sideToPlay(board);
+    Repo.unmakePackedMove(board);
+  }
+
+  /** squareThreatened for every cell of an unchanged board */
+  @Benchmark
+  public void squareThreatened(Blackhole hole) {
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < columns; column++) {
+        hole.consume(Repo.squareThreatened(board, row, column, piece));
+      }
+    }
+  }
+
+  /** squareThreatened for one cell right after a move, which makes the board update its attack map */
+  @Benchmark
+  public boolean squareThreatenedAfterMove() {
+    Repo.makePackedMove(board, move);
+    Repo.unmakePackedMove(board);
+    return Repo.squareThreatened(board, Repo.toRow(move), Repo.toColumn(move), piece);
+  }
+
+  /** isAttackedBy for every cell of the board */
+  @Benchmark
+  public void isAttackedBy(Blackhole hole) {
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < columns; column++) {
+        hole.consume(Repo.isAttackedBy(board, row, column, opponent));
+      }
+    }
+  }
+
+  /** isAttackedBy for one cell right after a move, the baseline of squareThreatenedAfterMove */
+  @Benchmark
+  public boolean isAttackedByAfterMove() {
+    Repo.makePackedMove(board, move);
+    Repo.unmakePackedMove(board);
+    return Repo.isAttackedBy(board, Repo.toRow(move), Repo.toColumn(move), opponent);
+  }
+}
@@ -0,0 +1,32 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Runs the benchmarks with the options of the command line, as the JMH main class does, with the allocation
+ * profiler (-prof gc) always on so every result shows the bytes allocated per operation.
+ * @author: Nhien Phan
+ */
+public final class Main {
+  // this class only holds the main method
+  private Main() {
+  }
+
+  /** Main method to run the benchmarks */
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions options = new CommandLineOptions(args);
+    if (options.shouldHelp()) {
+      options.showHelp();
+      return;
+    }
+    Runner runner = new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build());
+    if (options.shouldList()) {
+      runner.list();
+      return;
+    }
+    runner.run();
+  }
+}
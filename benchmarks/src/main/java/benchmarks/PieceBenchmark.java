@@ -0,0 +1,74 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+ * Benchmarks of the move rules of single pieces: the move lists of the cannon and the queen, and the legal
+ * move check of the european king, castle moves included.
+ * @author: Nhien Phan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PieceBenchmark {
+  // a middle game position with an open queen on d3 and both castle rights of the white king on e1
+  static final String QUEEN_POSITION = "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/3Q1N2/PPPP1PPP/RNB1K2R w KQkq - 0 1";
+
+  // the xiangqi start and its left red cannon
+  private Object xiangqiBoard;
+  private Object cannon;
+  // the middle game position, its queen and its king
+  private Object europeanBoard;
+  private Object queen;
+  private Object king;
+  private int columns;
+  private int rows;
+
+  /** Set up the boards and find the pieces */
+  @Setup
+  public void setUp() {
+    xiangqiBoard = Repo.read(Repo.XIANGQI_START);
+    cannon = Repo.getPiece(xiangqiBoard, 7, 1);
+    europeanBoard = Repo.read(QUEEN_POSITION);
+    queen = Repo.getPiece(europeanBoard, 5, 3);
+    king = Repo.getPiece(europeanBoard, 7, 4);
+    rows = 8;
+    columns = 8;
+  }
+
+  /** CannonPiece.move from the starting square */
+  @Benchmark
+  public Object cannonMove() {
+    return Repo.move(cannon, xiangqiBoard, 7, 1);
+  }
+
+  /** QueenPiece.move in the middle of the board */
+  @Benchmark
+  public Object queenMove() {
+    return Repo.move(queen, europeanBoard, 5, 3);
+  }
+
+  /** KingPiece.isLegalMove for every cell of the board */
+  @Benchmark
+  public void kingIsLegalMove(Blackhole hole) {
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < columns; column++) {
+        hole.consume(Repo.isLegalMove(king, row, column));
+      }
+    }
+  }
+}
@@ -0,0 +1,473 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * The bridge from the benchmarks to the game classes.
+ * The game classes are in the default package, which a class in a package cannot name, and JMH only runs
+ * benchmarks that are in a package.  So the benchmarks reach the game through method handles held in static
+ * final fields, which the JIT compiles to direct calls, and hold the game objects as Object.
+ * @author: Nhien Phan
+ */
+final class Repo {
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+  // the game classes used
+  static final Class<?> CHESS_BOARD = type("ChessBoard");
+  static final Class<?> CHESS_GAME = type("ChessGame");
+  static final Class<?> CHESS = type("Chess");
+  static final Class<?> CHESS_PIECE = type("ChessPiece");
+  static final Class<?> HEADLESS_BOARD = type("HeadlessChessBoard");
+  static final Class<?> SIDE = type("ChessGame$Side");
+  static final Class<?> JSON_WRITER = type("JsonWriter");
+
+  // the starting positions
+  static final String EUROPEAN_START = (String) constant("Fen", "EUROPEAN_START");
+  static final String XIANGQI_START = (String) constant("Fen", "XIANGQI_START");
+  // the move flags and the size of a move buffer
+  static final int CASTLE = (Integer) constant("PackedMove", "CASTLE");
+  static final int PROMOTION = (Integer) constant("PackedMove", "PROMOTION");
+  static final int MAX_MOVES = (Integer) constant("MoveGenerator", "MAX_MOVES");
+
+  // Fen.read(String): HeadlessChessBoard
+  private static final MethodHandle READ = findStatic("Fen", "read", HEADLESS_BOARD, String.class);
+  // ChessBoard.getPiece(int, int): ChessPiece
+  private static final MethodHandle GET_PIECE = findVirtual(CHESS_BOARD, "getPiece", CHESS_PIECE, int.class, int.class);
+  // ChessBoard.squareThreatened(int, int, ChessPiece): boolean
+  private static final MethodHandle SQUARE_THREATENED =
+    findVirtual(CHESS_BOARD, "squareThreatened", boolean.class, int.class, int.class, CHESS_PIECE);
+  // ChessBoard.getGameRules(): ChessGame
+  private static final MethodHandle GET_GAME_RULES = findVirtual(CHESS_BOARD, "getGameRules", CHESS_GAME);
+  // ChessPiece.move(ChessBoard, int, int): ArrayList<Cell>
+  private static final MethodHandle MOVE =
+    findVirtual(CHESS_PIECE, "move", java.util.ArrayList.class, CHESS_BOARD, int.class, int.class);
+  // ChessPiece.isLegalMove(int, int): boolean
+  private static final MethodHandle IS_LEGAL_MOVE = findVirtual(CHESS_PIECE, "isLegalMove", boolean.class, int.class, int.class);
+  // ChessPiece.getSide(): ChessGame.Side
+  private static final MethodHandle GET_SIDE = findVirtual(CHESS_PIECE, "getSide", SIDE);
+  // ChessGame.makeMove(ChessPiece, int, int): boolean
+  private static final MethodHandle MAKE_MOVE =
+    findVirtual(CHESS_GAME, "makeMove", boolean.class, CHESS_PIECE, int.class, int.class);
+  // Chess.getProperSide(): ChessGame.Side
+  private static final MethodHandle GET_PROPER_SIDE = findVirtual(CHESS, "getProperSide", SIDE);
+  // HeadlessChessBoard.isAttackedBy(int, int, ChessGame.Side): boolean
+  private static final MethodHandle IS_ATTACKED_BY =
+    findVirtual(HEADLESS_BOARD, "isAttackedBy", boolean.class, int.class, int.class, SIDE);
+  // HeadlessChessBoard.makeMove(int), unmakeMove() and isInCheck(ChessGame.Side): boolean
+  private static final MethodHandle MAKE_PACKED_MOVE = findVirtual(HEADLESS_BOARD, "makeMove", void.class, int.class);
+  private static final MethodHandle UNMAKE_PACKED_MOVE = findVirtual(HEADLESS_BOARD, "unmakeMove", void.class);
+  private static final MethodHandle IS_IN_CHECK = findVirtual(HEADLESS_BOARD, "isInCheck", boolean.class, SIDE);
+  // MoveGenerator.generateMoves(ChessBoard, ChessGame.Side, int[]): int
+  private static final MethodHandle GENERATE_MOVES =
+    findStatic("MoveGenerator", "generateMoves", int.class, CHESS_BOARD, SIDE, int[].class);
+  // WireProtocol.fromPackedMove(boolean, int): short, putMove(ByteBuffer, short), putDelta and putPosition
+  // (ByteBuffer, HeadlessChessBoard, ChessGame.Side)
+  private static final MethodHandle WIRE_MOVE = findStatic("WireProtocol", "fromPackedMove", short.class,
+                                                           boolean.class, int.class);
+  private static final MethodHandle PUT_MOVE = findStatic("WireProtocol", "putMove", void.class, ByteBuffer.class,
+                                                          short.class);
+  private static final MethodHandle PUT_DELTA = findStatic("WireProtocol", "putDelta", void.class, ByteBuffer.class,
+                                                           HEADLESS_BOARD, SIDE);
+  private static final MethodHandle PUT_POSITION = findStatic("WireProtocol", "putPosition", void.class,
+                                                              ByteBuffer.class, HEADLESS_BOARD, SIDE);
+  // WireProtocol.frameType(ByteBuffer): int, getMove(ByteBuffer): short and getDelta(ByteBuffer, byte[]): int
+  private static final MethodHandle FRAME_TYPE = findStatic("WireProtocol", "frameType", int.class, ByteBuffer.class);
+  private static final MethodHandle GET_MOVE = findStatic("WireProtocol", "getMove", short.class, ByteBuffer.class);
+  private static final MethodHandle GET_DELTA = findStatic("WireProtocol", "getDelta", int.class, ByteBuffer.class,
+                                                           byte[].class);
+  // new JsonWriter(), and its reset(ByteBuffer), beginObject(), endObject(), name(String),
+  // fen(ChessBoard, ChessGame.Side), beginString(), character(char) and endString(), which return the writer
+  private static final MethodHandle NEW_JSON_WRITER = findConstructor(JSON_WRITER);
+  private static final MethodHandle JSON_RESET = findVirtual(JSON_WRITER, "reset", JSON_WRITER, ByteBuffer.class);
+  private static final MethodHandle JSON_BEGIN_OBJECT = findVirtual(JSON_WRITER, "beginObject", JSON_WRITER);
+  private static final MethodHandle JSON_END_OBJECT = findVirtual(JSON_WRITER, "endObject", JSON_WRITER);
+  private static final MethodHandle JSON_NAME = findVirtual(JSON_WRITER, "name", JSON_WRITER, String.class);
+  private static final MethodHandle JSON_FEN = findVirtual(JSON_WRITER, "fen", JSON_WRITER, CHESS_BOARD, SIDE);
+  private static final MethodHandle JSON_BEGIN_STRING = findVirtual(JSON_WRITER, "beginString", JSON_WRITER);
+  private static final MethodHandle JSON_CHARACTER = findVirtual(JSON_WRITER, "character", JSON_WRITER, char.class);
+  private static final MethodHandle JSON_END_STRING = findVirtual(JSON_WRITER, "endString", JSON_WRITER);
+
+  // this class only holds static helpers
+  private Repo() {
+  }
+
+  /** Return a new headless board with the position of a FEN text */
+  static Object read(String fen) {
+    try {
+      return (Object) READ.invokeExact((Object) fen);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Return the piece of a cell (null if the cell is empty) */
+  static Object getPiece(Object board, int row, int column) {
+    try {
+      return (Object) GET_PIECE.invokeExact(board, row, column);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Check if a cell is threatened by the other side of a piece through the attack map of the board */
+  static boolean squareThreatened(Object board, int row, int column, Object piece) {
+    try {
+      return (boolean) SQUARE_THREATENED.invokeExact(board, row, column, piece);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Check if a cell is attacked by a side, without the attack map */
+  static boolean isAttackedBy(Object board, int row, int column, Object side) {
+    try {
+      return (boolean) IS_ATTACKED_BY.invokeExact(board, row, column, side);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Return the rules of a board */
+  static Object getGameRules(Object board) {
+    try {
+      return (Object) GET_GAME_RULES.invokeExact(board);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Return the list of the moves of a piece (the list is owned by the piece) */
+  static Object move(Object piece, Object board, int row, int column) {
+    try {
+      return (Object) MOVE.invokeExact(piece, board, row, column);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Check if a piece may move to a cell */
+  static boolean isLegalMove(Object piece, int row, int column) {
+    try {
+      return (boolean) IS_LEGAL_MOVE.invokeExact(piece, row, column);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Return the side of a piece */
+  static Object getSide(Object piece) {
+    try {
+      return (Object) GET_SIDE.invokeExact(piece);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Move a piece through the rules of the game, return true if the move was made */
+  static boolean makeMove(Object rules, Object piece, int row, int column) {
+    try {
+      return (boolean) MAKE_MOVE.invokeExact(rules, piece, row, column);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Return the side to play of the rules of a board */
+  static Object sideToPlay(Object board) {
+    try {
+      return (Object) GET_PROPER_SIDE.invokeExact(getGameRules(board));
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Play a packed move on a headless board */
+  static void makePackedMove(Object board, int move) {
+    try {
+      MAKE_PACKED_MOVE.invokeExact(board, move);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Take back the last packed move of a headless board */
+  static void unmakePackedMove(Object board) {
+    try {
+      UNMAKE_PACKED_MOVE.invokeExact(board);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Check if the king of a side is attacked on a headless board */
+  static boolean isInCheck(Object board, Object side) {
+    try {
+      return (boolean) IS_IN_CHECK.invokeExact(board, side);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Write the pseudo-legal packed moves of a side into a buffer and return their number */
+  static int generateMoves(Object board, Object side, int[] moves) {
+    try {
+      return (int) GENERATE_MOVES.invokeExact(board, side, (Object) moves);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Return the move frame form (see WireProtocol.packMove) of a packed move */
+  static short wireMove(boolean xiangqi, int move) {
+    try {
+      return (short) WIRE_MOVE.invokeExact(xiangqi, move);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Write a move frame */
+  static void putMove(ByteBuffer out, short move) {
+    try {
+      PUT_MOVE.invokeExact((Object) out, move);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Write a delta frame of the cells changed on a headless board since the last delta */
+  static void putDelta(ByteBuffer out, Object board, Object sideToPlay) {
+    try {
+      PUT_DELTA.invokeExact((Object) out, board, sideToPlay);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Write a FULL delta frame of every piece of a headless board */
+  static void putPosition(ByteBuffer out, Object board, Object sideToPlay) {
+    try {
+      PUT_POSITION.invokeExact((Object) out, board, sideToPlay);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Return the type of the frame at the position of a buffer, 0 if there is no whole frame */
+  static int frameType(ByteBuffer in) {
+    try {
+      return (int) FRAME_TYPE.invokeExact((Object) in);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Read a move frame */
+  static short getMove(ByteBuffer in) {
+    try {
+      return (short) GET_MOVE.invokeExact((Object) in);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Read a delta frame into the cells of a client and return its flags */
+  static int getDelta(ByteBuffer in, byte[] squares) {
+    try {
+      return (int) GET_DELTA.invokeExact((Object) in, (Object) squares);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Return a new JSON writer */
+  static Object newJsonWriter() {
+    try {
+      return (Object) NEW_JSON_WRITER.invokeExact();
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Start writing JSON into a buffer at its position and start an object */
+  static void beginJsonObject(Object writer, ByteBuffer out) {
+    try {
+      Object reset = (Object) JSON_RESET.invokeExact(writer, (Object) out);
+      Object ignored = (Object) JSON_BEGIN_OBJECT.invokeExact(reset);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** End the JSON object being written */
+  static void endJsonObject(Object writer) {
+    try {
+      Object ignored = (Object) JSON_END_OBJECT.invokeExact(writer);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Write a member of the JSON object being written with the four or five letters of a move as its value */
+  static void jsonMove(Object writer, String name, char[] letters, int length) {
+    try {
+      Object ignored = (Object) JSON_NAME.invokeExact(writer, (Object) name);
+      ignored = (Object) JSON_BEGIN_STRING.invokeExact(writer);
+      for (int i = 0; i < length; i++) {
+        ignored = (Object) JSON_CHARACTER.invokeExact(writer, letters[i]);
+      }
+      ignored = (Object) JSON_END_STRING.invokeExact(writer);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /** Write a member of the JSON object being written with the FEN text of a board as its value */
+  static void jsonFen(Object writer, String name, Object board, Object sideToPlay) {
+    try {
+      Object ignored = (Object) JSON_NAME.invokeExact(writer, (Object) name);
+      ignored = (Object) JSON_FEN.invokeExact(writer, board, sideToPlay);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  // the fields of a packed move (see PackedMove)
+
+  /** Return the row a packed move starts from */
+  static int fromRow(int move) {
+    return (move >>> 4) & 0xF;
+  }
+
+  /** Return the column a packed move starts from */
+  static int fromColumn(int move) {
+    return move & 0xF;
+  }
+
+  /** Return the row a packed move goes to */
+  static int toRow(int move) {
+    return (move >>> 12) & 0xF;
+  }
+
+  /** Return the column a packed move goes to */
+  static int toColumn(int move) {
+    return (move >>> 8) & 0xF;
+  }
+
+  /*
+   * Record a game of random legal moves, without castle moves or promotions (a promotion through the rules asks
+   * the player for the piece in a dialog).  The game ends when a side has no such move or the length is reached.
+   * @param fen: the starting position
+   * @param length: the largest number of plies
+   * @param seed: the seed of the random moves
+   */
+  static int[] randomGame(String fen, int length, long seed) {
+    Object board = read(fen);
+    Random random = new Random(seed);
+    int[] game = new int[length];
+    int[] moves = new int[MAX_MOVES];
+    int plies = 0;
+    while (plies < length) {
+      Object side = sideToPlay(board);
+      int count = generateMoves(board, side, moves);
+      int legal = 0;
+      for (int i = 0; i < count; i++) {
+        if ((((moves[i] >>> 16) & 0xF) & (CASTLE | PROMOTION)) != 0) continue;
+        makePackedMove(board, moves[i]);
+        if (!isInCheck(board, side)) {
+          moves[legal++] = moves[i];
+        }
+        unmakePackedMove(board);
+      }
+      if (legal == 0) break;
+      game[plies] = moves[random.nextInt(legal)];
+      makePackedMove(board, game[plies++]);
+    }
+    return Arrays.copyOf(game, plies);
+  }
+
+  /*
+   * Return the class of the game with a name
+   * @param name: the binary name of the class
+   */
+  private static Class<?> type(String name) {
+    try {
+      return Class.forName(name);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException("The game classes are not on the class path: " + name, e);
+    }
+  }
+
+  /*
+   * Return the value of a public static field of a game class
+   * @param owner: the name of the class
+   * @param name: the name of the field
+   */
+  private static Object constant(String owner, String name) {
+    try {
+      return type(owner).getField(name).get(null);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("No field " + owner + "." + name, e);
+    }
+  }
+
+  /*
+   * Return a handle of a static method with its reference types erased to Object
+   * @param owner: the name of the class
+   * @param name: the name of the method
+   * @param result: the return type
+   * @param parameters: the parameter types
+   */
+  private static MethodHandle findStatic(String owner, String name, Class<?> result, Class<?>... parameters) {
+    try {
+      return LOOKUP.findStatic(type(owner), name, MethodType.methodType(result, parameters)).asType(
+        MethodType.methodType(result, parameters).erase());
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("No method " + owner + "." + name, e);
+    }
+  }
+
+  /*
+   * Return a handle of the constructor without parameters of a class, its result erased to Object
+   * @param owner: the class
+   */
+  private static MethodHandle findConstructor(Class<?> owner) {
+    try {
+      MethodHandle handle = LOOKUP.findConstructor(owner, MethodType.methodType(void.class));
+      return handle.asType(handle.type().erase());
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("No constructor " + owner.getName() + "()", e);
+    }
+  }
+
+  /*
+   * Return a handle of an instance method with its reference types, the receiver included, erased to Object
+   * @param owner: the class
+   * @param name: the name of the method
+   * @param result: the return type
+   * @param parameters: the parameter types
+   */
+  private static MethodHandle findVirtual(Class<?> owner, String name, Class<?> result, Class<?>... parameters) {
+    try {
+      MethodHandle handle = LOOKUP.findVirtual(owner, name, MethodType.methodType(result, parameters));
+      return handle.asType(handle.type().erase());
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("No method " + owner.getName() + "." + name, e);
+    }
+  }
+
+  /*
+   * Return an exception to throw for a throwable caught from a handle
+   * @param e: the throwable
+   */
+  private static RuntimeException rethrow(Throwable e) {
+    if (e instanceof RuntimeException) return (RuntimeException) e;
+    if (e instanceof Error) throw (Error) e;
+    return new IllegalStateException(e);
+  }
+}
@@ -0,0 +1,101 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Benchmarks of the rules: Chess.makeMove on a knight shuffle that comes back to the same position, and the
+ * replay of a whole recorded game through Chess.makeMove and through the packed moves of the headless board.
+ * @author: Nhien Phan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RulesBenchmark {
+  // the game played
+  @Param({"european", "xiangqi"})
+  public String game;
+
+  // the knight or horse moves out and back of both sides: from row, from column, to row, to column
+  private static final int[][] EUROPEAN_SHUFFLE = {{7, 6, 5, 5}, {0, 6, 2, 5}, {5, 5, 7, 6}, {2, 5, 0, 6}};
+  private static final int[][] XIANGQI_SHUFFLE = {{9, 1, 7, 2}, {0, 1, 2, 2}, {7, 2, 9, 1}, {2, 2, 0, 1}};
+
+  private String fen;
+  private int[][] shuffle;
+  // the board the shuffle is played on
+  private Object board;
+  private Object rules;
+  // the recorded game and the board it is replayed on by packed moves
+  private int[] recorded;
+  private Object packedBoard;
+
+  /** Set up the boards and record a game */
+  @Setup
+  public void setUp() {
+    fen = game.equals("xiangqi") ? Repo.XIANGQI_START : Repo.EUROPEAN_START;
+    shuffle = game.equals("xiangqi") ? XIANGQI_SHUFFLE : EUROPEAN_SHUFFLE;
+    board = Repo.read(fen);
+    rules = Repo.getGameRules(board);
+    recorded = Repo.randomGame(fen, 200, 2L);
+    packedBoard = Repo.read(fen);
+  }
+
+  /** Chess.makeMove for the four moves of the shuffle */
+  @Benchmark
+  public int makeMove() {
+    int made = 0;
+    for (int[] move : shuffle) {
+      Object piece = Repo.getPiece(board, move[0], move[1]);
+      if (Repo.makeMove(rules, piece, move[2], move[3])) {
+        made++;
+      }
+    }
+    if (made != shuffle.length) {
+      throw new IllegalStateException("The shuffle was refused by the rules");
+    }
+    return made;
+  }
+
+  /** Replay the recorded game on a new board through Chess.makeMove (reading the start position included) */
+  @Benchmark
+  public int replayGame() {
+    Object replay = Repo.read(fen);
+    Object replayRules = Repo.getGameRules(replay);
+    int made = 0;
+    for (int move : recorded) {
+      Object piece = Repo.getPiece(replay, Repo.fromRow(move), Repo.fromColumn(move));
+      if (Repo.makeMove(replayRules, piece, Repo.toRow(move), Repo.toColumn(move))) {
+        made++;
+      }
+    }
+    if (made != recorded.length) {
+      throw new IllegalStateException("The recorded game was refused by the rules");
+    }
+    return made;
+  }
+
+  /** Replay the recorded game by packed moves on the headless board, then take it back */
+  @Benchmark
+  public int replayPackedGame() {
+    for (int move : recorded) {
+      Repo.makePackedMove(packedBoard, move);
+    }
+    for (int i = 0; i < recorded.length; i++) {
+      Repo.unmakePackedMove(packedBoard);
+    }
+    return recorded.length;
+  }
+}
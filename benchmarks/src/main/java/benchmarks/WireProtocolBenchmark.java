@@ -0,0 +1,199 @@
+package benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Benchmarks of the binary protocol of WireProtocol against the JSON of MoveValidationServer over a recorded game:
+ * encoding a move frame and the delta of the position after it, against a {"move": ...} request and a
+ * {"move": ..., "fen": ...} answer, and decoding both back into the squares of a client.  The encoders replay the
+ * game on the headless board, so replayGame is their baseline; subtract it to get the cost of the encoding.
+ * @author: Nhien Phan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireProtocolBenchmark {
+  // the game played
+  @Param({"european", "xiangqi"})
+  public String game;
+
+  // the plies of the recorded game
+  private static final int GAME_LENGTH = 100;
+  // the letters of the pieces in the FEN of each game, by piece code - 1
+  private static final String EUROPEAN_LETTERS = "prnbqk";
+  private static final String XIANGQI_LETTERS = "kabnrcp";
+  // the bit of a square of a client for a SOUTH piece (WireProtocol.SOUTH)
+  private static final int SOUTH = 8;
+
+  private boolean xiangqi;
+  private int columns;
+  // the recorded game, its move frames and the letters of its moves in the JSON (no promotion in a recorded game)
+  private int[] recorded;
+  private short[] wireMoves;
+  private char[][] jsonMoves;
+  // the board the game is replayed on and the side to play first
+  private Object board;
+  private Object north;
+  // the buffers written by the encoders and the frames of the whole game read by the decoders
+  private ByteBuffer out;
+  private ByteBuffer binaryFrames;
+  private ByteBuffer jsonFrames;
+  private Object writer;
+  // the squares of the client (row * columns + column)
+  private byte[] squares;
+
+  /** Record a game and encode it once for the decoders */
+  @Setup
+  public void setUp() {
+    xiangqi = game.equals("xiangqi");
+    String fen = xiangqi ? Repo.XIANGQI_START : Repo.EUROPEAN_START;
+    columns = xiangqi ? 9 : 8;
+    recorded = Repo.randomGame(fen, GAME_LENGTH, 2L);
+    for (long seed = 3; recorded.length < GAME_LENGTH; seed++) {
+      recorded = Repo.randomGame(fen, GAME_LENGTH, seed);
+    }
+    wireMoves = new short[recorded.length];
+    jsonMoves = new char[recorded.length][];
+    int top = xiangqi ? '9' : '8';
+    for (int i = 0; i < recorded.length; i++) {
+      int move = recorded[i];
+      wireMoves[i] = Repo.wireMove(xiangqi, move);
+      jsonMoves[i] = new char[] {(char) ('a' + Repo.fromColumn(move)), (char) (top - Repo.fromRow(move)),
+                                 (char) ('a' + Repo.toColumn(move)), (char) (top - Repo.toRow(move))};
+    }
+    board = Repo.read(fen);
+    north = Repo.sideToPlay(board);
+    out = ByteBuffer.allocateDirect(1 << 16);
+    writer = Repo.newJsonWriter();
+    squares = new byte[90];
+    binaryEncode();
+    binaryFrames = copy(out);
+    jsonEncode();
+    jsonFrames = copy(out);
+  }
+
+  /** Replay the recorded game on the headless board with the side to play after each move, then take it back */
+  @Benchmark
+  public int replayGame() {
+    int northTurns = 0;
+    for (int move : recorded) {
+      Repo.makePackedMove(board, move);
+      if (Repo.sideToPlay(board) == north) northTurns++;
+    }
+    takeBack();
+    return northTurns;
+  }
+
+  /** Write the start position, then a move frame and a delta for each move of the recorded game */
+  @Benchmark
+  public int binaryEncode() {
+    out.clear();
+    Repo.putPosition(out, board, Repo.sideToPlay(board));
+    for (int i = 0; i < recorded.length; i++) {
+      Repo.makePackedMove(board, recorded[i]);
+      Repo.putMove(out, wireMoves[i]);
+      Repo.putDelta(out, board, Repo.sideToPlay(board));
+    }
+    takeBack();
+    return out.position();
+  }
+
+  /** Write a JSON request and a JSON answer with the FEN text for each move of the recorded game */
+  @Benchmark
+  public int jsonEncode() {
+    out.clear();
+    for (int i = 0; i < recorded.length; i++) {
+      Repo.makePackedMove(board, recorded[i]);
+      Repo.beginJsonObject(writer, out);
+      Repo.jsonMove(writer, "move", jsonMoves[i], 4);
+      Repo.endJsonObject(writer);
+      Repo.beginJsonObject(writer, out);
+      Repo.jsonMove(writer, "move", jsonMoves[i], 4);
+      Repo.jsonFen(writer, "fen", board, Repo.sideToPlay(board));
+      Repo.endJsonObject(writer);
+    }
+    takeBack();
+    return out.position();
+  }
+
+  /** Read the frames of the recorded game into the squares of the client */
+  @Benchmark
+  public int binaryDecode() {
+    binaryFrames.rewind();
+    int read = 0;
+    for (int type = Repo.frameType(binaryFrames); type != 0; type = Repo.frameType(binaryFrames)) {
+      read += type == 1 ? Repo.getMove(binaryFrames) : Repo.getDelta(binaryFrames, squares);
+    }
+    return read;
+  }
+
+  /** Read the JSON requests and answers of the recorded game, the FEN into the squares of the client */
+  @Benchmark
+  public int jsonDecode() {
+    jsonFrames.rewind();
+    int read = 0;
+    while (jsonFrames.hasRemaining()) {
+      read += readJson(jsonFrames);
+    }
+    return read;
+  }
+
+  // take back every move of the recorded game
+  private void takeBack() {
+    for (int i = 0; i < recorded.length; i++) {
+      Repo.unmakePackedMove(board);
+    }
+  }
+
+  // read a JSON object of the baseline as a client would, return the sum of what it read
+  private int readJson(ByteBuffer in) {
+    String letters = xiangqi ? XIANGQI_LETTERS : EUROPEAN_LETTERS;
+    int read = 0;
+    while (true) {
+      int letter = in.get();
+      if (letter == '}') return read;
+      if (letter != ':') continue;
+      int name = in.get(in.position() - 3);
+      in.get();
+      if (name == 'e') {
+        // "move": from and to, in letters and digits
+        read += in.get() + in.get() + in.get() + in.get();
+      } else if (name == 'n') {
+        // "fen": the placement, rank by rank
+        int square = 0;
+        for (int next = in.get(); next != ' '; next = in.get()) {
+          if (next >= '1' && next <= '9') {
+            for (int end = square + next - '0'; square < end; square++) {
+              squares[square] = 0;
+            }
+          } else if (next != '/') {
+            int code = letters.indexOf(next | 0x20) + 1;
+            squares[square++] = (byte) (code | (next >= 'a' ? SOUTH : 0));
+          }
+        }
+        read += square / columns;
+      }
+    }
+  }
+
+  // copy what was written into a buffer into a direct buffer of its own
+  private static ByteBuffer copy(ByteBuffer written) {
+    ByteBuffer frames = written.duplicate().flip();
+    return ByteBuffer.allocateDirect(frames.remaining()).put(frames).flip();
+  }
+}